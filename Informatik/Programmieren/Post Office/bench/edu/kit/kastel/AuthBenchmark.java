@@ -0,0 +1,114 @@
+package edu.kit.kastel;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures authentications per second with a growing number of concurrent sessions.
+ * Every round runs twice: cold, where every login opens a new session and runs the slow hash,
+ * and cached, where every thread logs in again and again in its own session.
+ * The throughput and the latency of every round are written to the standard output.
+ * @author unweb
+ */
+final class AuthBenchmark {
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Constructor of the class.
+     */
+    private AuthBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are {@code --customers}, {@code --threads 1,2,4,8}, {@code --seconds} per round
+     * and {@code --hash-iterations}.
+     * @param args the options
+     * @throws Validity when the customers cannot be registered
+     * @throws InterruptedException when waiting for a round is interrupted
+     */
+    public static void main(String[] args) throws Validity, InterruptedException {
+        int customers = 1_000;
+        String threads = "1,2,4,8";
+        long seconds = 3;
+        int hashIterations = CredentialStore.DEFAULT_ITERATIONS;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--customers" -> customers = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = args[i + 1];
+                case "--seconds" -> seconds = Long.parseLong(args[i + 1]);
+                case "--hash-iterations" -> hashIterations = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PostOffice postOffice = PostOffice.getInstance();
+        postOffice.setHashIterations(hashIterations);
+        long start = System.nanoTime();
+        Fixture.addCustomers(postOffice, customers);
+        System.out.println(String.format(Locale.US, "auth: %d customers, %d hash iterations, registered in %.3f s",
+                customers, hashIterations, (System.nanoTime() - start) / 1e9));
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count);
+            round(postOffice, customers, threadCount, seconds, false);
+            round(postOffice, customers, threadCount, seconds, true);
+        }
+    }
+
+    /**
+     * Runs one round of logins and logouts and writes its results.
+     * @param postOffice the post office
+     * @param customers the number of customers
+     * @param threadCount the number of concurrent sessions
+     * @param seconds the duration of the round
+     * @param cached true if every thread keeps its session, false if every login opens a new session
+     * @throws InterruptedException when waiting for the round is interrupted
+     */
+    private static void round(PostOffice postOffice, int customers, int threadCount, long seconds, boolean cached)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder logins = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Thread[] workers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            workers[t] = new Thread(() -> {
+                Session session = postOffice.openSession();
+                String username = Fixture.customer(random.nextInt(customers));
+                while (System.nanoTime() - end < 0) {
+                    if (!cached) {
+                        session = postOffice.openSession();
+                        username = Fixture.customer(random.nextInt(customers));
+                    }
+                    long begin = System.nanoTime();
+                    try {
+                        postOffice.authenticate(session, username, Fixture.PASSWORD);
+                        postOffice.logout(session);
+                    } catch (Validity e) {
+                        throw new IllegalStateException(e);
+                    }
+                    latency.record(System.nanoTime() - begin);
+                    logins.increment();
+                }
+            }, "auth-" + t);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.US,
+                "auth: %s, %d sessions, %.1f logins/s, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                cached ? "cached" : "cold", threadCount, logins.sum() / elapsed,
+                latency.getQuantile(0.5) / NANOS_PER_MILLI, latency.getQuantile(0.99) / NANOS_PER_MILLI,
+                latency.getMax() / NANOS_PER_MILLI));
+    }
+}
@@ -0,0 +1,106 @@
+package edu.kit.kastel;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulates the delivery of mails with a growing number of mailmen.
+ * Every round senders dispatch the same number of mails of random postal services to a fresh dispatcher,
+ * whose mailmen spend a fixed time on every delivery, like the walk to the mailbox.
+ * The round ends when the mailmen have delivered every mail and stopped.
+ * The delivered mails per second of every round are written to the standard output.
+ * @author unweb
+ */
+final class DeliveryBenchmark {
+    /**
+     * All postal services by ordinal.
+     */
+    private static final PostalService[] POSTAL_SERVICES = PostalService.values();
+
+    /**
+     * Constructor of the class.
+     */
+    private DeliveryBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are {@code --mails} per round, {@code --mailmen 1,2,4,8}, {@code --senders}
+     * and {@code --delivery-micros}, the simulated time of one delivery.
+     * @param args the options
+     * @throws InterruptedException when waiting for a round is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int mails = 50_000;
+        String mailmen = "1,2,4,8";
+        int senders = 2;
+        long deliveryMicros = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--mails" -> mails = Integer.parseInt(args[i + 1]);
+                case "--mailmen" -> mailmen = args[i + 1];
+                case "--senders" -> senders = Integer.parseInt(args[i + 1]);
+                case "--delivery-micros" -> deliveryMicros = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        double baseline = 0;
+        for (String count : mailmen.split(",")) {
+            int numberOfMailmen = Integer.parseInt(count);
+            double throughput = round(mails, numberOfMailmen, senders, TimeUnit.MICROSECONDS.toNanos(deliveryMicros));
+            if (baseline == 0) {
+                baseline = throughput / numberOfMailmen;
+            }
+            System.out.println(String.format(Locale.US, "delivery: %d mailmen, %.1f mails/s, speedup %.2f",
+                    numberOfMailmen, throughput, throughput / baseline));
+        }
+    }
+
+    /**
+     * Runs one round and checks that every mail has been delivered once.
+     * @param mails the number of mails
+     * @param numberOfMailmen the number of mailmen
+     * @param senders the number of sending threads
+     * @param deliveryNanos the simulated time of one delivery in nanoseconds
+     * @return the delivered mails per second
+     * @throws InterruptedException when waiting for the round is interrupted
+     */
+    private static double round(int mails, int numberOfMailmen, int senders, long deliveryNanos)
+            throws InterruptedException {
+        LongAdder delivered = new LongAdder();
+        DeliveryDispatcher dispatcher = new DeliveryDispatcher(mail -> {
+            if (deliveryNanos > 0) {
+                LockSupport.parkNanos(deliveryNanos);
+            }
+            delivered.increment();
+        });
+        dispatcher.start(numberOfMailmen);
+        Thread[] workers = new Thread[senders];
+        for (int t = 0; t < senders; t++) {
+            int first = t;
+            SplittableRandom random = new SplittableRandom(t);
+            workers[t] = new Thread(() -> {
+                for (int mail = first; mail < mails; mail += senders) {
+                    dispatcher.dispatch(mail, POSTAL_SERVICES[random.nextInt(POSTAL_SERVICES.length)]);
+                }
+            }, "sender-" + t);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        dispatcher.stop();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (delivered.sum() != mails) {
+            throw new IllegalStateException(delivered.sum() + " of " + mails + " mails delivered");
+        }
+        return mails / elapsed;
+    }
+}
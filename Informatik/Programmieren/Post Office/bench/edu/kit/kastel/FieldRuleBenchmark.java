@@ -0,0 +1,145 @@
+package edu.kit.kastel;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the field rules with the regular expressions they replaced.
+ * Every rule checks the same seeded mix of valid and invalid fields once through {@link FieldRule#check}
+ * and once through {@link String#matches}. Both paths must agree on every field.
+ * The time and the allocated bytes per check of both paths are written to the standard output.
+ * @author unweb
+ */
+final class FieldRuleBenchmark {
+    /**
+     * The characters the generated fields are made of, including the ones some rules forbid.
+     */
+    private static final String ALPHABET = "abcXYZ0123456789 -;,\né";
+    /**
+     * The number of letters and digits at the start of the alphabet.
+     */
+    private static final int ALPHANUMERIC = 16;
+    /**
+     * The position of the first digit in the alphabet.
+     */
+    private static final int FIRST_DIGIT = 6;
+    /**
+     * The maximal length of a generated field.
+     */
+    private static final int MAX_FIELD_LENGTH = 12;
+
+    /**
+     * Constructor of the class.
+     */
+    private FieldRuleBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are {@code --seed}, {@code --fields} per rule, {@code --rounds} over all fields
+     * and {@code --warmup} rounds that are not measured.
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        long seed = 42;
+        int fields = 10_000;
+        int rounds = 200;
+        int warmup = 100;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--fields" -> fields = Integer.parseInt(args[i + 1]);
+                case "--rounds" -> rounds = Integer.parseInt(args[i + 1]);
+                case "--warmup" -> warmup = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (FieldRule rule : FieldRule.values()) {
+            String regex = regex(rule);
+            String[] samples = new String[fields];
+            int valid = 0;
+            for (int i = 0; i < fields; i++) {
+                samples[i] = field(rule, random);
+                boolean matches = samples[i].matches(regex);
+                if (matches != (rule.check(samples[i]) == null)) {
+                    throw new IllegalStateException(rule + " disagrees with " + regex + " on " + samples[i]);
+                }
+                valid += matches ? 1 : 0;
+            }
+            measure(rule, null, samples, warmup);
+            measure(rule, regex, samples, warmup);
+            long[] ruleCost = measure(rule, null, samples, rounds);
+            long[] regexCost = measure(rule, regex, samples, rounds);
+            double checks = (double) fields * rounds;
+            System.out.println(String.format(Locale.US,
+                    "%s: %d%% valid, rule %.1f ns %.1f B, regex %.1f ns %.1f B per check, %.1fx faster",
+                    rule, valid * 100 / fields, ruleCost[0] / checks, ruleCost[1] / checks,
+                    regexCost[0] / checks, regexCost[1] / checks, (double) regexCost[0] / ruleCost[0]));
+        }
+    }
+
+    /**
+     * Checks all fields several times through one path.
+     * @param rule the rule
+     * @param regex the regular expression of the rule, or null to check through the rule
+     * @param samples the fields
+     * @param rounds the number of times all fields are checked
+     * @return the elapsed nanoseconds and the allocated bytes
+     */
+    private static long[] measure(FieldRule rule, String regex, String[] samples, int rounds) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        int valid = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (String sample : samples) {
+                boolean matches = (regex == null) ? rule.check(sample) == null : sample.matches(regex);
+                valid += matches ? 1 : 0;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        if (valid < 0) {
+            throw new IllegalStateException();
+        }
+        return new long[] {elapsed, allocated};
+    }
+
+    /**
+     * Generates a field, mostly from the characters the rule allows.
+     * @param rule the rule
+     * @param random the source of randomness
+     * @return the field
+     */
+    private static String field(FieldRule rule, SplittableRandom random) {
+        int length = random.nextInt(MAX_FIELD_LENGTH + 1);
+        StringBuilder field = new StringBuilder(length);
+        int from = (rule == FieldRule.PERSONAL_NUMBER) ? FIRST_DIGIT : 0;
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(8) == 0) {
+                field.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            } else {
+                field.append(ALPHABET.charAt(from + random.nextInt(ALPHANUMERIC - from)));
+            }
+        }
+        return field.toString();
+    }
+
+    /**
+     * Gives out the regular expression the rule replaced.
+     * @param rule the rule
+     * @return the regular expression
+     */
+    private static String regex(FieldRule rule) {
+        return switch (rule) {
+            case FIRST_NAME, LAST_NAME -> "[^;\\n\\r]+";
+            case USERNAME -> "[a-zA-Z0-9]{4,9}";
+            case PASSWORD -> "[^;\\n\\r]{4,9}";
+            case ID_NUMBER -> "[^,\\n\\r]{9}";
+            case PERSONAL_NUMBER -> "[1-9][0-9]*";
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package edu.kit.kastel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generated customers shared by the benchmarks and the load client.
+ * Customer {@code i} has the username {@link #customer(int)}, the password {@link #PASSWORD}
+ * and the ID number {@link #idNumber(int)}.
+ * @author unweb
+ */
+final class Fixture {
+    /**
+     * The password of all generated customers and staff members.
+     */
+    static final String PASSWORD = "pass";
+
+    /**
+     * Constructor of the class.
+     */
+    private Fixture() {
+
+    }
+
+    /**
+     * Gives out the username of a customer.
+     * @param index the index of the customer, below ten million
+     * @return the username
+     */
+    static String customer(int index) {
+        return String.format("c%07d", index);
+    }
+
+    /**
+     * Gives out the ID number of a customer.
+     * @param index the index of the customer
+     * @return the ID number
+     */
+    static String idNumber(int index) {
+        return String.format("%09d", index);
+    }
+
+    /**
+     * Registers the customers with the indexes from 0 up to a count in one batch.
+     * @param postOffice the post office
+     * @param count the number of customers
+     * @throws Validity when the customers cannot be registered
+     */
+    static void addCustomers(PostOffice postOffice, int count) throws Validity {
+        List<String[]> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new String[] {"Max", "Muster", customer(i), PASSWORD, idNumber(i)});
+        }
+        postOffice.addCustomers(postOffice.openSession(), batch);
+    }
+
+    /**
+     * Collects the inbox of the logged in customer, which may be empty.
+     * @param postOffice the post office
+     * @param session the session of the customer
+     */
+    static void collect(PostOffice postOffice, Session session) {
+        try {
+            postOffice.getMail(session);
+        } catch (Validity e) {
+            // an empty inbox is part of the workload
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Measures the heap of a growing mail history with and without history segments.
+ * A corporate customer multicasts letters to all receivers, which collect their inboxes regularly,
+ * while a second customer sends a single letter now and then. After every few million mails the heap is
+ * collected and its used size is written to the standard output. In the end the sent mails of the second
+ * customer, which are spread over all segments, are checked against the letters it has sent.
+ * Run with a small maximal heap, for example {@code -Xmx160m}, the run without history runs out of memory.
+ * @author unweb
+ */
+final class HistoryBenchmark {
+    /**
+     * The number of bytes of a megabyte.
+     */
+    private static final double BYTES_PER_MEGABYTE = 1 << 20;
+    /**
+     * The number of multicasts before the receivers collect their inboxes.
+     */
+    private static final int MULTICASTS_PER_COLLECT = 10;
+    /**
+     * The number of multicasts before the second customer sends a letter.
+     */
+    private static final int MULTICASTS_PER_LETTER = 100;
+
+    /**
+     * Constructor of the class.
+     */
+    private HistoryBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are {@code --mails}, {@code --receivers} of every multicast, {@code --retention} of the history,
+     * {@code --directory} of the segments, a new temporary directory by default,
+     * {@code --history false} to keep all mails in memory and {@code --report} every that many mails.
+     * @param args the options
+     * @throws Validity when a command of the workload fails
+     * @throws IOException when the segments cannot be written
+     */
+    public static void main(String[] args) throws Validity, IOException {
+        long mails = 30_000_000;
+        int receivers = 1000;
+        int retention = 1 << 20;
+        Path directory = null;
+        boolean history = true;
+        long reportEvery = 5_000_000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--mails" -> mails = Long.parseLong(args[i + 1]);
+                case "--receivers" -> receivers = Integer.parseInt(args[i + 1]);
+                case "--retention" -> retention = Integer.parseInt(args[i + 1]);
+                case "--directory" -> directory = Path.of(args[i + 1]);
+                case "--history" -> history = Boolean.parseBoolean(args[i + 1]);
+                case "--report" -> reportEvery = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PostOffice postOffice = PostOffice.getInstance();
+        postOffice.setHashIterations(1);
+        if (history) {
+            directory = (directory == null) ? Files.createTempDirectory("history") : directory;
+            postOffice.enableHistory(directory, retention, false);
+        }
+        Fixture.addCustomers(postOffice, receivers);
+        postOffice.addCustomers(postOffice.openSession(), List.of(
+                new String[] {"Erika", "Muster", "corp", Fixture.PASSWORD, "999999999"},
+                new String[] {"Erika", "Muster", "single", Fixture.PASSWORD, "999999998"}));
+        List<String> names = new ArrayList<>(receivers);
+        for (int i = 0; i < receivers; i++) {
+            names.add(Fixture.customer(i));
+        }
+        Session corp = postOffice.authenticate(postOffice.openSession(), "corp", Fixture.PASSWORD);
+        Session single = postOffice.authenticate(postOffice.openSession(), "single", Fixture.PASSWORD);
+        List<Session> inboxes = new ArrayList<>(receivers);
+        for (String name : names) {
+            inboxes.add(postOffice.authenticate(postOffice.openSession(), name, Fixture.PASSWORD));
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long start = System.nanoTime();
+        int letters = 0;
+        long nextReport = reportEvery;
+        for (long sent = 0, round = 1; sent < mails; round++) {
+            postOffice.multicastMail(corp, "Brief", names);
+            sent += receivers;
+            if (round % MULTICASTS_PER_COLLECT == 0) {
+                for (Session inbox : inboxes) {
+                    Fixture.collect(postOffice, inbox);
+                }
+            }
+            if (round % MULTICASTS_PER_LETTER == 0) {
+                postOffice.sendMail(single, "Brief", names.get(letters % receivers));
+                letters++;
+                sent++;
+            }
+            if (sent >= nextReport) {
+                nextReport += reportEvery;
+                System.gc();
+                System.out.println(String.format(Locale.US, "history: %d mails, heap %.1f MB, %.1f s", sent,
+                        (runtime.totalMemory() - runtime.freeMemory()) / BYTES_PER_MEGABYTE,
+                        (System.nanoTime() - start) / 1e9));
+            }
+        }
+        String report = postOffice.closeHistory();
+        if (report != null) {
+            System.out.println(report + String.format(Locale.US, ", segments %.1f MB",
+                    segmentBytes(directory) / BYTES_PER_MEGABYTE));
+        }
+        List<Mail> sentLetters = List.of();
+        for (Customer customer : postOffice.getCustomersById()) {
+            if (customer.getId() == single.getUser()) {
+                sentLetters = customer.getSent();
+            }
+        }
+        if (sentLetters.size() != letters) {
+            throw new IllegalStateException(sentLetters.size() + " of " + letters + " sent letters found");
+        }
+        for (int i = 0; i < letters; i++) {
+            if (!sentLetters.get(i).getReceiver().equals(names.get(i % receivers))) {
+                throw new IllegalStateException("sent letter " + i + " has the wrong receiver");
+            }
+        }
+        System.out.println("history: " + letters + " sent letters checked");
+    }
+
+    /**
+     * Sums the sizes of the segment files.
+     * @param directory the directory of the segments
+     * @return the number of bytes
+     * @throws IOException when the directory cannot be read
+     */
+    private static long segmentBytes(Path directory) throws IOException {
+        long bytes = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                bytes += Files.size(file);
+            }
+        }
+        return bytes;
+    }
+}
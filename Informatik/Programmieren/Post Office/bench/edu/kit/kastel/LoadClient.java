@@ -0,0 +1,135 @@
+package edu.kit.kastel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load test client for the {@link PostOfficeServer}.
+ * It registers the users of a generated workload over one connection and then opens many connections at once,
+ * each on a virtual thread running its own generated sessions command by command.
+ * @author unweb
+ */
+final class LoadClient {
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * The line ending of the protocol.
+     */
+    private static final char LINE_END = '\n';
+
+    /**
+     * Constructor of the class.
+     */
+    private LoadClient() {
+
+    }
+
+    /**
+     * Runs the load test.
+     * Options are {@code --port}, {@code --connections}, {@code --operations} per connection, {@code --customers},
+     * {@code --zipf} and {@code --seed}.
+     * @param args the options
+     * @throws IOException when the server cannot be reached
+     * @throws InterruptedException when waiting for the connections is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 0;
+        int connections = 1000;
+        int operations = 1000;
+        int customers = 10_000;
+        double zipf = 1.0;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--connections" -> connections = Integer.parseInt(args[i + 1]);
+                case "--operations" -> operations = Integer.parseInt(args[i + 1]);
+                case "--customers" -> customers = Integer.parseInt(args[i + 1]);
+                case "--zipf" -> zipf = Double.parseDouble(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        int[] mix = {60, 20, 10, 10};
+        List<String> setup = new WorkloadGenerator(seed, customers, 10, 2, mix, zipf).setup();
+        run(port, setup, null, new AtomicLong());
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong failures = new AtomicLong();
+        List<Thread> clients = new ArrayList<>(connections);
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            List<String> lines = new WorkloadGenerator(seed + i + 1, customers, 10, 2, mix, zipf).sessions(operations);
+            int clientPort = port;
+            clients.add(Thread.ofVirtual().start(() -> {
+                try {
+                    run(clientPort, lines, latency, failures);
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long count = latency.getCount();
+        System.out.println(String.format(Locale.US,
+                "load: %d connections, %d commands in %.3f s, %.1f ops/s, %d failed connections",
+                connections, count, seconds, count / seconds, failures.get()));
+        System.out.println(String.format(Locale.US, "latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                latency.getQuantile(0.5) / NANOS_PER_MILLI, latency.getQuantile(0.99) / NANOS_PER_MILLI,
+                latency.getQuantile(0.999) / NANOS_PER_MILLI, latency.getMax() / NANOS_PER_MILLI));
+    }
+
+    /**
+     * Sends command lines over one connection and waits for each result.
+     * @param port the port of the server
+     * @param lines the command lines
+     * @param latency records the latency of each command, null for no recording
+     * @param failures counts the connections the server has refused
+     * @throws IOException when the server cannot be reached
+     */
+    private static void run(int port, List<String> lines, LatencyHistogram latency, AtomicLong failures)
+            throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.UTF_8));
+                Writer output = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                        StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            for (String line : lines) {
+                long begin = System.nanoTime();
+                output.write(line);
+                output.write(LINE_END);
+                output.flush();
+                String result = input.readLine();
+                if (Error.TOO_MANY_CONNECTIONS.getMessage().equals(result)) {
+                    failures.incrementAndGet();
+                    return;
+                }
+                while (result != null && !result.isEmpty()) {
+                    result = input.readLine();
+                }
+                if (result == null) {
+                    throw new IOException("connection closed by the server");
+                }
+                if (latency != null) {
+                    latency.record(System.nanoTime() - begin);
+                }
+            }
+        }
+    }
+}
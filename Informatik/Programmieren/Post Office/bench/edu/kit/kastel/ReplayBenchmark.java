@@ -0,0 +1,154 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates a workload and replays it in process through the command handler.
+ * The registration and the warmup are not measured. Afterwards the throughput, the latency, the allocation rate
+ * and the statistics per command are written to the standard output, so two builds can be compared on the same seed.
+ * @author unweb
+ */
+final class ReplayBenchmark {
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * The names of the actions of the mix in the order of the weights.
+     */
+    private static final String[] MIX_ACTIONS = {"send", "get", "price", "list"};
+
+    /**
+     * Constructor of the class.
+     */
+    private ReplayBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are {@code --seed}, {@code --customers}, {@code --mailmen}, {@code --agents}, {@code --operations},
+     * {@code --warmup}, {@code --zipf}, {@code --mix send=60,get=20,price=10,list=10}, {@code --hash-iterations}
+     * and {@code --write <file>},
+     * which also writes the generated command lines for the batch mode of {@link Main}.
+     * With {@code --event-log <file>} all state changes are published to an event log.
+     * @param args the options
+     * @throws IOException when the command lines cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = 42;
+        int customers = 10_000;
+        int mailmen = 10;
+        int agents = 2;
+        int operations = 1_000_000;
+        int warmup = 200_000;
+        double zipf = 1.0;
+        int[] mix = {60, 20, 10, 10};
+        int hashIterations = CredentialStore.DEFAULT_ITERATIONS;
+        Path write = null;
+        Path eventLog = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--customers" -> customers = Integer.parseInt(args[i + 1]);
+                case "--mailmen" -> mailmen = Integer.parseInt(args[i + 1]);
+                case "--agents" -> agents = Integer.parseInt(args[i + 1]);
+                case "--operations" -> operations = Integer.parseInt(args[i + 1]);
+                case "--warmup" -> warmup = Integer.parseInt(args[i + 1]);
+                case "--zipf" -> zipf = Double.parseDouble(args[i + 1]);
+                case "--mix" -> mix = parseMix(args[i + 1]);
+                case "--hash-iterations" -> hashIterations = Integer.parseInt(args[i + 1]);
+                case "--write" -> write = Path.of(args[i + 1]);
+                case "--event-log" -> eventLog = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        WorkloadGenerator generator = new WorkloadGenerator(seed, customers, mailmen, agents, mix, zipf);
+        List<String> setup = generator.setup();
+        List<String> warmupLines = generator.sessions(warmup);
+        List<String> measured = generator.sessions(operations);
+        if (write != null) {
+            List<String> all = new ArrayList<>(setup);
+            all.addAll(warmupLines);
+            all.addAll(measured);
+            all.add(Command.QUIT.getCommand());
+            Files.write(write, all, StandardCharsets.UTF_8);
+        }
+        PostOffice.getInstance().setHashIterations(hashIterations);
+        if (eventLog != null) {
+            PostOffice.getInstance().subscribe(new EventLogSink(eventLog));
+        }
+        CommandHandler commandHandler = CommandHandler.getInstance();
+        replay(commandHandler, setup);
+        replay(commandHandler, warmupLines);
+        LatencyHistogram latency = new LatencyHistogram();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (String line : measured) {
+            long begin = System.nanoTime();
+            try {
+                commandHandler.execute(line);
+            } catch (Validity e) {
+                // errors like an empty inbox are part of the workload
+            }
+            latency.record(System.nanoTime() - begin);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        double seconds = nanos / 1e9;
+        System.out.println(String.format(Locale.US,
+                "replay: seed %d, %d customers, zipf %.2f, %d operations in %.3f s, %.1f ops/s",
+                seed, customers, zipf, measured.size(), seconds, measured.size() / seconds));
+        System.out.println(String.format(Locale.US, "latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                latency.getQuantile(0.5) / NANOS_PER_MILLI, latency.getQuantile(0.99) / NANOS_PER_MILLI,
+                latency.getQuantile(0.999) / NANOS_PER_MILLI, latency.getMax() / NANOS_PER_MILLI));
+        System.out.println(String.format(Locale.US, "allocation: %.1f MB/s, %.0f bytes/op",
+                allocated / seconds / 1e6, (double) allocated / measured.size()));
+        System.out.println(CommandHandler.getMetrics().getReport());
+        String eventReport = PostOffice.getInstance().closeEvents();
+        if (eventReport != null) {
+            System.out.println(eventReport);
+        }
+    }
+
+    /**
+     * Replays command lines without measuring them.
+     * @param commandHandler the command handler
+     * @param lines the command lines
+     */
+    private static void replay(CommandHandler commandHandler, List<String> lines) {
+        for (String line : lines) {
+            try {
+                commandHandler.execute(line);
+            } catch (Validity e) {
+                // errors like an empty inbox are part of the workload
+            }
+        }
+    }
+
+    /**
+     * Parses the weights of the mix.
+     * @param mix the weights like send=60,get=20,price=10,list=10, missing actions get the weight 0
+     * @return the weights of send-mail, get-mail, list-price and list-mail
+     */
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[MIX_ACTIONS.length];
+        for (String part : mix.split(",")) {
+            String[] entry = part.split("=");
+            int action = List.of(MIX_ACTIONS).indexOf(entry[0]);
+            if (action < 0 || entry.length != 2) {
+                throw new IllegalArgumentException("unknown mix " + part);
+            }
+            weights[action] = Integer.parseInt(entry[1]);
+        }
+        return weights;
+    }
+}
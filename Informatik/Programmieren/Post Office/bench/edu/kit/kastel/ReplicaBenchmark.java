@@ -0,0 +1,151 @@
+package edu.kit.kastel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load test of the {@link OrderReplica}: reading mailmen against one saturating writer.
+ * It runs a warmup round and two measured rounds in this process. In every round one mailman sends mails
+ * between random customers as fast as it can, while the reading mailmen alternate list-price and list-mail
+ * of random customers. In the warmup and the first round the reports read the customers live,
+ * in the second round they read the replica.
+ * The throughput of both sides and the latency of the reports are written to the standard output for each round.
+ * @author unweb
+ */
+final class ReplicaBenchmark {
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Constructor of the class.
+     */
+    private ReplicaBenchmark() {
+
+    }
+
+    /**
+     * Runs the load test.
+     * Options are {@code --customers}, {@code --readers}, {@code --seconds} per round, {@code --warmup} seconds
+     * and the {@code --interval} of the replica in milliseconds.
+     * @param args the options
+     * @throws Validity when the users cannot be registered
+     * @throws InterruptedException when waiting for a round is interrupted
+     */
+    public static void main(String[] args) throws Validity, InterruptedException {
+        int customers = 64;
+        int readers = 4;
+        long seconds = 5;
+        long warmup = 2;
+        long interval = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--customers" -> customers = Integer.parseInt(args[i + 1]);
+                case "--readers" -> readers = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Long.parseLong(args[i + 1]);
+                case "--warmup" -> warmup = Long.parseLong(args[i + 1]);
+                case "--interval" -> interval = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PostOffice postOffice = PostOffice.getInstance();
+        postOffice.setHashIterations(1);
+        Fixture.addCustomers(postOffice, customers);
+        for (int i = 0; i <= readers; i++) {
+            postOffice.addMailman(postOffice.openSession(), "Tom", "Post", String.valueOf(i + 1),
+                    Fixture.PASSWORD);
+        }
+        round(postOffice, customers, readers, warmup, "warmup");
+        round(postOffice, customers, readers, seconds, "live");
+        postOffice.enableReplica(interval);
+        round(postOffice, customers, readers, seconds, "replica every " + interval + " ms");
+        System.out.println(postOffice.closeReplica());
+    }
+
+    /**
+     * Runs one round and writes its results.
+     * @param postOffice the post office
+     * @param customers the number of customers
+     * @param readers the number of reading mailmen
+     * @param seconds the duration of the round
+     * @param name the name of the round
+     * @throws Validity when a mailman cannot log in
+     * @throws InterruptedException when waiting for the round is interrupted
+     */
+    private static void round(PostOffice postOffice, int customers, int readers, long seconds, String name)
+            throws Validity, InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder sent = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>(readers + 1);
+        Session writer = postOffice.authenticate(postOffice.openSession(), "1", Fixture.PASSWORD);
+        threads.add(Thread.ofPlatform().start(() -> write(postOffice, writer, customers, end, sent)));
+        for (int i = 0; i < readers; i++) {
+            Session reader = postOffice.authenticate(postOffice.openSession(), String.valueOf(i + 2),
+                    Fixture.PASSWORD);
+            threads.add(Thread.ofPlatform().start(() -> read(postOffice, reader, customers, end, latency)));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println(String.format(Locale.US,
+                "round %s: %d readers, %.1f reports/s, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, "
+                        + "%.1f sent mails/s",
+                name, readers, latency.getCount() / (double) seconds, latency.getQuantile(0.5) / NANOS_PER_MILLI,
+                latency.getQuantile(0.99) / NANOS_PER_MILLI, latency.getQuantile(0.999) / NANOS_PER_MILLI,
+                latency.getMax() / NANOS_PER_MILLI, sent.sum() / (double) seconds));
+    }
+
+    /**
+     * Sends mails between random customers until the end of the round.
+     * @param postOffice the post office
+     * @param session the session of the writing mailman
+     * @param customers the number of customers
+     * @param end the end of the round in nanoseconds
+     * @param sent counts the sent mails
+     */
+    private static void write(PostOffice postOffice, Session session, int customers, long end, LongAdder sent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() - end < 0) {
+            try {
+                postOffice.sendMail(session, "Brief", Fixture.customer(random.nextInt(customers)),
+                        Fixture.customer(random.nextInt(customers)));
+            } catch (Validity e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            sent.increment();
+        }
+    }
+
+    /**
+     * Lists the orders of random customers until the end of the round.
+     * @param postOffice the post office
+     * @param session the session of the reading mailman
+     * @param customers the number of customers
+     * @param end the end of the round in nanoseconds
+     * @param latency records the latency of each report
+     */
+    private static void read(PostOffice postOffice, Session session, int customers, long end,
+            LatencyHistogram latency) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; System.nanoTime() - end < 0; i++) {
+            String username = Fixture.customer(random.nextInt(customers));
+            long begin = System.nanoTime();
+            try {
+                if ((i & 1) == 0) {
+                    postOffice.listPrice(session, username);
+                } else {
+                    postOffice.listMail(session, username);
+                }
+            } catch (Validity e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            latency.record(System.nanoTime() - begin);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package edu.kit.kastel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load test of the {@link CommandScheduler}: well-behaved clients with and without abusive clients.
+ * It serves a post office in this process and runs two rounds. In the first round only the well-behaved clients run:
+ * every client logs in as its own customer and alternates send-mail and list-mail with a pause in between.
+ * In the second round abusive clients log in as one more customer and flood send-mail without waiting for results.
+ * The latency of the well-behaved clients and the throughput of the abusive clients are written to the standard
+ * output for each round, followed by the command statistics with the queue wait.
+ * @author unweb
+ */
+final class SchedulerBenchmark {
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * The line ending of the protocol.
+     */
+    private static final char LINE_END = '\n';
+    /**
+     * The command the abusive clients flood the post office with.
+     */
+    private static final String FLOOD = "send-mail Brief;a0000000";
+
+    /**
+     * Constructor of the class.
+     */
+    private SchedulerBenchmark() {
+
+    }
+
+    /**
+     * Runs the load test.
+     * Options are {@code --polite} and {@code --abusive} clients, {@code --seconds} per round,
+     * {@code --think} milliseconds between two commands of a well-behaved client, and the limits of the scheduler
+     * {@code --rate}, {@code --burst} and {@code --lane-slots}.
+     * @param args the options
+     * @throws Validity when the customers cannot be registered
+     * @throws IOException when the server cannot be started
+     * @throws InterruptedException when waiting for a round is interrupted
+     */
+    public static void main(String[] args) throws Validity, IOException, InterruptedException {
+        int polite = 16;
+        int abusive = 4;
+        long seconds = 5;
+        long think = 5;
+        double rate = 0;
+        double burst = CommandScheduler.DEFAULT_BURST;
+        int laneSlots = CommandScheduler.DEFAULT_SLOTS;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--polite" -> polite = Integer.parseInt(args[i + 1]);
+                case "--abusive" -> abusive = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Long.parseLong(args[i + 1]);
+                case "--think" -> think = Long.parseLong(args[i + 1]);
+                case "--rate" -> rate = Double.parseDouble(args[i + 1]);
+                case "--burst" -> burst = Double.parseDouble(args[i + 1]);
+                case "--lane-slots" -> laneSlots = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PostOffice postOffice = PostOffice.getInstance();
+        postOffice.setHashIterations(1);
+        Fixture.addCustomers(postOffice, polite + 1);
+        CommandHandler.getScheduler().configure(rate, burst, laneSlots);
+        System.out.println(String.format(Locale.US, "scheduler: rate %.1f/s, burst %.1f, %d lane slots",
+                rate, burst, laneSlots));
+        try (PostOfficeServer server = new PostOfficeServer(0, polite + abusive + 1, 0)) {
+            server.start();
+            round(server.getPort(), polite, 0, seconds, think);
+            round(server.getPort(), polite, abusive, seconds, think);
+        }
+        System.out.println(CommandHandler.getMetrics().getReport());
+    }
+
+    /**
+     * Runs one round and writes its results.
+     * @param port the port of the server
+     * @param polite the number of well-behaved clients
+     * @param abusive the number of abusive clients
+     * @param seconds the duration of the round
+     * @param think the pause between two commands of a well-behaved client in milliseconds
+     * @throws InterruptedException when waiting for the round is interrupted
+     */
+    private static void round(int port, int polite, int abusive, long seconds, long think)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder flooded = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> clients = new ArrayList<>(polite + abusive);
+        for (int i = 0; i < abusive; i++) {
+            clients.add(Thread.ofPlatform().start(() -> flood(port, end, flooded)));
+        }
+        for (int i = 1; i <= polite; i++) {
+            String username = Fixture.customer(i);
+            clients.add(Thread.ofPlatform().start(() -> behave(port, username, end, think, latency)));
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        System.out.println(String.format(Locale.US,
+                "round: %d polite, %d abusive, polite p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, "
+                        + "%d polite commands, %.1f flood commands/s",
+                polite, abusive, latency.getQuantile(0.5) / NANOS_PER_MILLI,
+                latency.getQuantile(0.99) / NANOS_PER_MILLI, latency.getQuantile(0.999) / NANOS_PER_MILLI,
+                latency.getMax() / NANOS_PER_MILLI, latency.getCount(), flooded.sum() / (double) seconds));
+    }
+
+    /**
+     * Runs a well-behaved client: one command, then a pause.
+     * @param port the port of the server
+     * @param username the customer of the client
+     * @param end the end of the round in nanoseconds
+     * @param think the pause between two commands in milliseconds
+     * @param latency records the latency of each command
+     */
+    private static void behave(int port, String username, long end, long think, LatencyHistogram latency) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader input = reader(socket);
+                Writer output = writer(socket)) {
+            socket.setTcpNoDelay(true);
+            send(output, "authenticate " + username + ";" + Fixture.PASSWORD);
+            skip(input);
+            for (int i = 0; System.nanoTime() - end < 0; i++) {
+                long begin = System.nanoTime();
+                send(output, (i % 2 == 0) ? "send-mail Brief;" + Fixture.customer(0) : "list-mail");
+                skip(input);
+                latency.record(System.nanoTime() - begin);
+                Thread.sleep(think);
+            }
+            send(output, Command.QUIT.getCommand());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs an abusive client: it writes send-mail commands as fast as it can while a second thread reads the results.
+     * At the end of the round the input is shut down, which ends the reader, and the connection is closed
+     * without waiting for the unanswered commands.
+     * @param port the port of the server
+     * @param end the end of the round in nanoseconds
+     * @param flooded counts the answered commands
+     */
+    private static void flood(int port, long end, LongAdder flooded) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            BufferedReader input = reader(socket);
+            Writer output = writer(socket);
+            socket.setTcpNoDelay(true);
+            send(output, "authenticate " + Fixture.customer(0) + ";" + Fixture.PASSWORD);
+            skip(input);
+            Thread reader = Thread.ofPlatform().start(() -> {
+                try {
+                    while (skip(input)) {
+                        flooded.increment();
+                    }
+                } catch (IOException e) {
+                    // the connection is closed at the end of the round
+                }
+            });
+            while (System.nanoTime() - end < 0) {
+                output.write(FLOOD);
+                output.write(LINE_END);
+            }
+            socket.shutdownInput();
+            reader.join();
+        } catch (IOException e) {
+            // the server has closed the connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes one command line and flushes it.
+     * @param output the output of the connection
+     * @param line the command line
+     * @throws IOException when the line cannot be written
+     */
+    private static void send(Writer output, String line) throws IOException {
+        output.write(line);
+        output.write(LINE_END);
+        output.flush();
+    }
+
+    /**
+     * Reads the result lines of one command up to the empty line.
+     * @param input the input of the connection
+     * @return true if a result has been read, false at the end of the input
+     * @throws IOException when the input cannot be read
+     */
+    private static boolean skip(BufferedReader input) throws IOException {
+        String line = input.readLine();
+        while (line != null && !line.isEmpty()) {
+            line = input.readLine();
+        }
+        return line != null;
+    }
+
+    /**
+     * Opens the reader of a connection.
+     * @param socket the connection
+     * @return the reader
+     * @throws IOException when the connection is closed
+     */
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the writer of a connection.
+     * @param socket the connection
+     * @return the writer
+     * @throws IOException when the connection is closed
+     */
+    private static Writer writer(Socket socket) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+}
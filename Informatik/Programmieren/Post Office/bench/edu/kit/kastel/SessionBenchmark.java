@@ -0,0 +1,129 @@
+package edu.kit.kastel;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of concurrent counter sessions with a growing number of threads.
+ * Every thread logs in as its own customer in its own session and then sends mails to random customers,
+ * with a get-mail, list-mail and list-price after every few mails.
+ * The throughput of every round and its speedup over the first round are written to the standard output.
+ * @author unweb
+ */
+final class SessionBenchmark {
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * The number of mails sent before the inbox and the orders are read.
+     */
+    private static final int MAILS_PER_READ = 8;
+
+    /**
+     * Constructor of the class.
+     */
+    private SessionBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are {@code --customers}, {@code --threads 1,2,4,8}, {@code --seconds} per round
+     * and {@code --warmup} seconds of one unreported session before the first round.
+     * @param args the options
+     * @throws Validity when the customers cannot be registered
+     * @throws InterruptedException when waiting for a round is interrupted
+     */
+    public static void main(String[] args) throws Validity, InterruptedException {
+        int customers = 10_000;
+        String threads = "1,2,4,8";
+        long seconds = 3;
+        long warmup = 2;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--customers" -> customers = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = args[i + 1];
+                case "--seconds" -> seconds = Long.parseLong(args[i + 1]);
+                case "--warmup" -> warmup = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PostOffice postOffice = PostOffice.getInstance();
+        postOffice.setHashIterations(1);
+        Fixture.addCustomers(postOffice, customers);
+        System.out.println(String.format(Locale.US, "sessions: %d customers, %d processors",
+                customers, Runtime.getRuntime().availableProcessors()));
+        round(postOffice, customers, 1, warmup, false);
+        double baseline = 0;
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count);
+            double throughput = round(postOffice, customers, threadCount, seconds, true);
+            if (baseline == 0) {
+                baseline = throughput / threadCount;
+            }
+            System.out.println(String.format(Locale.US, "sessions: %d threads, speedup %.2f (ideal %d)",
+                    threadCount, throughput / baseline, threadCount));
+        }
+    }
+
+    /**
+     * Runs one round of sessions and writes its results.
+     * @param postOffice the post office
+     * @param customers the number of customers
+     * @param threadCount the number of concurrent sessions
+     * @param seconds the duration of the round
+     * @param report true if the results are written, false for a warmup
+     * @return the operations per second
+     * @throws InterruptedException when waiting for the round is interrupted
+     */
+    private static double round(PostOffice postOffice, int customers, int threadCount, long seconds,
+            boolean report) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder operations = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Thread[] workers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            String username = Fixture.customer(t % customers);
+            SplittableRandom random = new SplittableRandom(t);
+            workers[t] = new Thread(() -> {
+                Session session = postOffice.openSession();
+                try {
+                    postOffice.authenticate(session, username, Fixture.PASSWORD);
+                    for (long i = 1; System.nanoTime() - end < 0; i++) {
+                        long begin = System.nanoTime();
+                        postOffice.sendMail(session, "Brief", Fixture.customer(random.nextInt(customers)));
+                        if (i % MAILS_PER_READ == 0) {
+                            Fixture.collect(postOffice, session);
+                            postOffice.listMail(session);
+                            postOffice.listPrice(session);
+                        }
+                        latency.record(System.nanoTime() - begin);
+                        operations.increment();
+                    }
+                    postOffice.logout(session);
+                } catch (Validity e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "session-" + t);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        double throughput = operations.sum() / elapsed;
+        if (report) {
+            System.out.println(String.format(Locale.US,
+                    "sessions: %d threads, %.1f ops/s, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                    threadCount, throughput, latency.getQuantile(0.5) / NANOS_PER_MILLI,
+                    latency.getQuantile(0.99) / NANOS_PER_MILLI, latency.getMax() / NANOS_PER_MILLI));
+        }
+        return throughput;
+    }
+}
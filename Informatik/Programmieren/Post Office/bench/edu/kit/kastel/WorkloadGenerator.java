@@ -0,0 +1,213 @@
+package edu.kit.kastel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * This class generates a reproducible stream of command lines for the post office.
+ * The stream registers customers, mailmen and agents first and then runs sessions: a user authenticates,
+ * executes a few commands drawn from the configured mix and logs out. Receivers are drawn from a Zipf
+ * distribution, so a few customers get most of the mails.
+ * @author unweb
+ */
+final class WorkloadGenerator {
+    /**
+     * The share of sessions of mailmen in percent.
+     */
+    private static final int MAILMAN_SESSIONS = 8;
+    /**
+     * The share of sessions of agents in percent.
+     */
+    private static final int AGENT_SESSIONS = 2;
+    /**
+     * The maximal number of commands between authenticate and logout.
+     */
+    private static final int MAX_SESSION_LENGTH = 8;
+    /**
+     * The first personal number of the agents.
+     */
+    private static final int FIRST_AGENT = 1_000_000;
+    /**
+     * All postal services.
+     */
+    private static final PostalService[] POSTAL_SERVICES = PostalService.values();
+    /**
+     * The random numbers.
+     */
+    private final SplittableRandom random;
+    /**
+     * The number of customers.
+     */
+    private final int customers;
+    /**
+     * The number of mailmen.
+     */
+    private final int mailmen;
+    /**
+     * The number of agents.
+     */
+    private final int agents;
+    /**
+     * The cumulative weights of send-mail, get-mail, list-price and list-mail.
+     */
+    private final int[] mix;
+    /**
+     * The cumulative probabilities of the receivers by rank.
+     */
+    private final double[] receivers;
+
+    /**
+     * Constructor of the class.
+     * @param seed the seed of the random numbers
+     * @param customers the number of customers, at least 1
+     * @param mailmen the number of mailmen
+     * @param agents the number of agents
+     * @param mix the weights of send-mail, get-mail, list-price and list-mail
+     * @param zipf the exponent of the receiver popularity, 0 for uniform receivers
+     */
+    WorkloadGenerator(long seed, int customers, int mailmen, int agents, int[] mix, double zipf) {
+        this.random = new SplittableRandom(seed);
+        this.customers = customers;
+        this.mailmen = mailmen;
+        this.agents = agents;
+        this.mix = new int[mix.length];
+        int sum = 0;
+        for (int i = 0; i < mix.length; i++) {
+            sum += mix[i];
+            this.mix[i] = sum;
+        }
+        this.receivers = new double[customers];
+        double total = 0;
+        for (int rank = 0; rank < customers; rank++) {
+            total += 1 / Math.pow(rank + 1, zipf);
+            receivers[rank] = total;
+        }
+        for (int rank = 0; rank < customers; rank++) {
+            receivers[rank] /= total;
+        }
+    }
+
+    /**
+     * Generates the command lines that register all users.
+     * @return the command lines
+     */
+    List<String> setup() {
+        List<String> lines = new ArrayList<>(customers + mailmen + agents);
+        for (int i = 0; i < customers; i++) {
+            lines.add("add-customer Max;Muster;" + Fixture.customer(i) + ";" + Fixture.PASSWORD + ";"
+                    + Fixture.idNumber(i));
+        }
+        for (int i = 0; i < mailmen; i++) {
+            lines.add("add-mailman Tom;Post;" + (i + 1) + ";" + Fixture.PASSWORD);
+        }
+        for (int i = 0; i < agents; i++) {
+            lines.add("add-agent Ann;Agent;" + (FIRST_AGENT + i) + ";" + Fixture.PASSWORD);
+        }
+        return lines;
+    }
+
+    /**
+     * Generates sessions until the given number of command lines is reached.
+     * @param operations the number of command lines
+     * @return the command lines, every session ends with a logout
+     */
+    List<String> sessions(int operations) {
+        List<String> lines = new ArrayList<>(operations + MAX_SESSION_LENGTH + 2);
+        while (lines.size() < operations) {
+            int role = random.nextInt(100);
+            if (role < AGENT_SESSIONS && agents > 0) {
+                agentSession(lines);
+            } else if (role < AGENT_SESSIONS + MAILMAN_SESSIONS && mailmen > 0) {
+                mailmanSession(lines);
+            } else {
+                customerSession(lines);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Generates the session of a customer.
+     * @param lines the command lines
+     */
+    private void customerSession(List<String> lines) {
+        String customer = Fixture.customer(random.nextInt(customers));
+        lines.add("authenticate " + customer + ";" + Fixture.PASSWORD);
+        for (int i = random.nextInt(MAX_SESSION_LENGTH) + 1; i > 0; i--) {
+            switch (action()) {
+                case 0 -> lines.add("send-mail " + postalService() + ";" + receiver());
+                case 1 -> lines.add("get-mail");
+                case 2 -> lines.add("list-price");
+                default -> lines.add("list-mail");
+            }
+        }
+        lines.add("logout");
+    }
+
+    /**
+     * Generates the session of a mailman.
+     * @param lines the command lines
+     */
+    private void mailmanSession(List<String> lines) {
+        lines.add("authenticate " + (random.nextInt(mailmen) + 1) + ";" + Fixture.PASSWORD);
+        for (int i = random.nextInt(MAX_SESSION_LENGTH) + 1; i > 0; i--) {
+            switch (action()) {
+                case 0 -> lines.add("send-mail " + postalService() + ";" + receiver() + ";"
+                        + Fixture.customer(random.nextInt(customers)));
+                case 1 -> lines.add("get-mail " + receiver());
+                case 2 -> lines.add("list-price " + Fixture.customer(random.nextInt(customers)));
+                default -> lines.add("list-mail " + receiver());
+            }
+        }
+        lines.add("logout");
+    }
+
+    /**
+     * Generates the session of an agent.
+     * @param lines the command lines
+     */
+    private void agentSession(List<String> lines) {
+        lines.add("authenticate " + (FIRST_AGENT + random.nextInt(agents)) + ";" + Fixture.PASSWORD);
+        for (int i = random.nextInt(MAX_SESSION_LENGTH) + 1; i > 0; i--) {
+            if (random.nextBoolean()) {
+                lines.add("list-price " + Fixture.customer(random.nextInt(customers)));
+            } else {
+                lines.add("list-mail " + receiver());
+            }
+        }
+        lines.add("list-revenue");
+        lines.add("logout");
+    }
+
+    /**
+     * Draws an action from the mix.
+     * @return 0 for send-mail, 1 for get-mail, 2 for list-price and 3 for list-mail
+     */
+    private int action() {
+        int value = random.nextInt(mix[mix.length - 1]);
+        int action = 0;
+        while (value >= mix[action]) {
+            action++;
+        }
+        return action;
+    }
+
+    /**
+     * Draws a postal service uniformly.
+     * @return the name of the postal service
+     */
+    private String postalService() {
+        return POSTAL_SERVICES[random.nextInt(POSTAL_SERVICES.length)].getPostalService();
+    }
+
+    /**
+     * Draws a receiver by its Zipf popularity.
+     * @return the username of the receiver
+     */
+    private String receiver() {
+        int rank = Arrays.binarySearch(receivers, random.nextDouble());
+        return Fixture.customer(Math.min((rank < 0) ? -rank - 1 : rank, customers - 1));
+    }
+}
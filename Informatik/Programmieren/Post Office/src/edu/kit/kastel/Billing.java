@@ -0,0 +1,47 @@
+package edu.kit.kastel;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class keeps the office wide running order volume and revenue, keyed by the ordinal of the postal service.
+ * @author unweb
+ */
+final class Billing {
+    /**
+     * The number of postal services.
+     */
+    private static final int POSTAL_SERVICES = PostalService.values().length;
+    /**
+     * The number of orders per postal service.
+     */
+    private final AtomicLongArray orders = new AtomicLongArray(POSTAL_SERVICES);
+    /**
+     * The revenue per postal service in cents.
+     */
+    private final AtomicLongArray cents = new AtomicLongArray(POSTAL_SERVICES);
+
+    /**
+     * Books sent mails.
+     * @param postalService the postal service of the mails
+     * @param count the number of mails
+     */
+    void book(PostalService postalService, int count) {
+        orders.addAndGet(postalService.ordinal(), count);
+        cents.addAndGet(postalService.ordinal(), (long) count * postalService.getPriceInCents());
+    }
+
+    /**
+     * Gives out a copy of the office wide totals.
+     * Every postal service is read atomically, the postal services among each other are not.
+     * @return the totals
+     */
+    OrderTotals getTotals() {
+        long[] orderCopy = new long[POSTAL_SERVICES];
+        long[] centCopy = new long[POSTAL_SERVICES];
+        for (int i = 0; i < POSTAL_SERVICES; i++) {
+            orderCopy[i] = orders.get(i);
+            centCopy[i] = cents.get(i);
+        }
+        return new OrderTotals(orderCopy, centCopy);
+    }
+}
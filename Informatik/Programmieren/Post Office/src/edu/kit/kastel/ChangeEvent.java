@@ -0,0 +1,156 @@
+package edu.kit.kastel;
+
+/**
+ * This class is one slot of the ring of the {@link EventBus}. The slots are allocated once and refilled by every
+ * publisher that claims them, so publishing allocates nothing. A consumer must not keep a slot after it has
+ * processed it. The fields that do not belong to the kind of the event are undefined.
+ * @author unweb
+ */
+public final class ChangeEvent {
+    /**
+     * The kind of the event.
+     */
+    private ChangeType type;
+    /**
+     * The time of the change in milliseconds since the epoch.
+     */
+    private long time;
+    /**
+     * The ID of the customer of the change, the sender of a sent mail.
+     */
+    private int customer;
+    /**
+     * The ID of the receiver of a sent mail.
+     */
+    private int receiver;
+    /**
+     * The ID of a sent mail, the number of collected mails.
+     */
+    private int value;
+    /**
+     * The postal service of a sent mail.
+     */
+    private PostalService postalService;
+    /**
+     * The username of an added customer.
+     */
+    private String username;
+
+    /**
+     * Fills the slot with a sent mail.
+     * @param time the time in milliseconds since the epoch
+     * @param mail the ID of the mail
+     * @param sender the ID of the sender
+     * @param receiver the ID of the receiver
+     * @param postalService the postal service
+     */
+    void mailSent(long time, int mail, int sender, int receiver, PostalService postalService) {
+        this.type = ChangeType.MAIL_SENT;
+        this.time = time;
+        this.value = mail;
+        this.customer = sender;
+        this.receiver = receiver;
+        this.postalService = postalService;
+    }
+
+    /**
+     * Fills the slot with collected mails.
+     * @param time the time in milliseconds since the epoch
+     * @param customer the ID of the customer
+     * @param count the number of mails
+     */
+    void mailCollected(long time, int customer, int count) {
+        this.type = ChangeType.MAIL_COLLECTED;
+        this.time = time;
+        this.customer = customer;
+        this.value = count;
+    }
+
+    /**
+     * Fills the slot with an added customer.
+     * @param time the time in milliseconds since the epoch
+     * @param customer the ID of the customer
+     * @param username the username
+     */
+    void customerAdded(long time, int customer, String username) {
+        this.type = ChangeType.CUSTOMER_ADDED;
+        this.time = time;
+        this.customer = customer;
+        this.username = username;
+    }
+
+    /**
+     * Fills the slot with a reset PIN.
+     * @param time the time in milliseconds since the epoch
+     * @param customer the ID of the customer
+     */
+    void pinReset(long time, int customer) {
+        this.type = ChangeType.PIN_RESET;
+        this.time = time;
+        this.customer = customer;
+    }
+
+    /**
+     * A getter for the kind of the event.
+     * @return the kind
+     */
+    public ChangeType getType() {
+        return type;
+    }
+
+    /**
+     * A getter for the time of the change.
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * A getter for the customer of the change.
+     * @return the ID of the customer, the sender of a sent mail
+     */
+    public int getCustomer() {
+        return customer;
+    }
+
+    /**
+     * A getter for the receiver of a sent mail.
+     * @return the ID of the receiver
+     */
+    public int getReceiver() {
+        return receiver;
+    }
+
+    /**
+     * A getter for the ID of a sent mail.
+     * @return the ID of the mail
+     */
+    public int getMail() {
+        return value;
+    }
+
+    /**
+     * A getter for the number of collected mails.
+     * @return the number of mails
+     */
+    public int getCount() {
+        return value;
+    }
+
+    /**
+     * A getter for the postal service of a sent mail.
+     * @return the postal service
+     */
+    public PostalService getPostalService() {
+        return postalService;
+    }
+
+    /**
+     * A getter for the username of an added customer.
+     * @return the username
+     */
+    public String getUsername() {
+        return username;
+    }
+}
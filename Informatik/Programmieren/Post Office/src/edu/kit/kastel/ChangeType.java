@@ -0,0 +1,38 @@
+package edu.kit.kastel;
+
+/**
+ * This enum contains the kinds of state changes the post office publishes to its {@link EventBus}.
+ * @author unweb
+ */
+public enum ChangeType {
+    /**
+     * A mail has been sent: mail, sender, receiver and postal service.
+     */
+    MAIL_SENT,
+    /**
+     * Mails of an inbox have been collected or acknowledged: customer and number of mails.
+     */
+    MAIL_COLLECTED,
+    /**
+     * A customer has been registered: customer and username.
+     */
+    CUSTOMER_ADDED,
+    /**
+     * The PIN of a customer has been reset: customer.
+     */
+    PIN_RESET;
+
+    /**
+     * All kinds by ordinal.
+     */
+    private static final ChangeType[] TYPES = values();
+
+    /**
+     * Looks up a kind by its ordinal.
+     * @param ordinal the ordinal
+     * @return the kind
+     */
+    static ChangeType of(int ordinal) {
+        return TYPES[ordinal];
+    }
+}
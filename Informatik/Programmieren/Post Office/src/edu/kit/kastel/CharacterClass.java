@@ -0,0 +1,61 @@
+package edu.kit.kastel;
+
+/**
+ * This enum contains the character classes used by the field rules.
+ * Every class is a hand written check of one code point.
+ * @author unweb
+ */
+enum CharacterClass {
+    /**
+     * Any character except semicolon and line breaks, like [^;\n\r].
+     */
+    NO_SEMICOLON {
+        @Override
+        boolean contains(int codePoint) {
+            return codePoint != ';' && codePoint != '\n' && codePoint != '\r';
+        }
+    },
+    /**
+     * Any character except comma and line breaks, like [^,\n\r].
+     */
+    NO_COMMA {
+        @Override
+        boolean contains(int codePoint) {
+            return codePoint != ',' && codePoint != '\n' && codePoint != '\r';
+        }
+    },
+    /**
+     * ASCII letters and digits, like [a-zA-Z0-9].
+     */
+    ALPHANUMERIC {
+        @Override
+        boolean contains(int codePoint) {
+            return codePoint >= 'a' && codePoint <= 'z' || codePoint >= 'A' && codePoint <= 'Z' || DIGIT.contains(codePoint);
+        }
+    },
+    /**
+     * ASCII digits, like [0-9].
+     */
+    DIGIT {
+        @Override
+        boolean contains(int codePoint) {
+            return codePoint >= '0' && codePoint <= '9';
+        }
+    },
+    /**
+     * ASCII digits without zero, like [1-9].
+     */
+    NON_ZERO_DIGIT {
+        @Override
+        boolean contains(int codePoint) {
+            return codePoint >= '1' && codePoint <= '9';
+        }
+    };
+
+    /**
+     * Checks if the code point belongs to this character class.
+     * @param codePoint the code point
+     * @return true if the code point belongs to this class, otherwise false
+     */
+    abstract boolean contains(int codePoint);
+}
@@ -1,4 +1,8 @@
 package edu.kit.kastel;
+
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This enum contains all commands.
  * @author unweb
@@ -12,6 +16,10 @@ public enum Command {
      * Add customer command.
      */
     ADD_CUSTOMER("add-customer"),
+    /**
+     * Add a batch of customers command.
+     */
+    ADD_CUSTOMERS("add-customers"),
     /**
      * Add mailman command.
      */
@@ -36,29 +44,101 @@ public enum Command {
      * Getting mails command.
      */
     GET_MAIL("get-mail"),
+    /**
+     * Sending the same mail to many receivers command.
+     */
+    MULTICAST_MAIL("multicast-mail"),
+    /**
+     * Reading the oldest mails of an inbox command.
+     */
+    PEEK_MAIL("peek-mail", true),
+    /**
+     * Reading a page of an inbox command.
+     */
+    FETCH_MAIL("fetch-mail", true),
+    /**
+     * Acknowledging the mails of an inbox command.
+     */
+    ACK_MAIL("ack-mail"),
     /**
      * Listing mails command.
      */
-    LIST_MAIL("list-mail"),
+    LIST_MAIL("list-mail", true),
     /**
      * Listing prices command.
      */
-    LIST_PRICE("list-price"),
+    LIST_PRICE("list-price", true),
+    /**
+     * Listing the office wide revenue command.
+     */
+    LIST_REVENUE("list-revenue", true),
+    /**
+     * Listing the delivery statistics command.
+     */
+    DELIVERY_STATS("delivery-stats", true),
+    /**
+     * Listing the command statistics command.
+     */
+    STATS("stats", true),
+    /**
+     * Listing the busiest senders command.
+     */
+    TOP_SENDERS("top-senders", true),
+    /**
+     * Listing the busiest receivers command.
+     */
+    TOP_RECEIVERS("top-receivers", true),
+    /**
+     * Listing the busiest pairs of customers command.
+     */
+    TOP_PAIRS("top-pairs", true),
+    /**
+     * Estimating the traffic between two customers command.
+     */
+    PAIR_TRAFFIC("pair-traffic", true),
+    /**
+     * Publishing a new version of the replica of the order counters command.
+     */
+    REFRESH_REPLICA("refresh-replica"),
     /**
      * Reseting PIN command.
      */
     RESET_PIN("reset-pin");
 
+    /**
+     * All commands by their string.
+     */
+    private static final Map<String, Command> COMMANDS = new HashMap<>();
+
+    static {
+        for (Command c : Command.values()) {
+            COMMANDS.put(c.getCommand(), c);
+        }
+    }
+
     /**
      * The command which operates the programm
      */
     private final String command;
     /**
-     * Constructor.
+     * Whether the command only reads the state of the post office.
+     */
+    private final boolean readOnly;
+    /**
+     * Constructor of a mutating command.
      * @param command command
      */
     Command(String command) {
+        this(command, false);
+    }
+    /**
+     * Constructor.
+     * @param command command
+     * @param readOnly whether the command only reads the state of the post office
+     */
+    Command(String command, boolean readOnly) {
         this.command = command;
+        this.readOnly = readOnly;
     }
     /**
      * Getter of the command.
@@ -67,18 +147,20 @@ public enum Command {
     public String getCommand() {
         return command;
     }
+    /**
+     * Checks if the command only reads the state of the post office, so it runs in the read lane of the scheduler.
+     * @return true if the command is read-only, otherwise false
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
     /**
      * Converting string to command.
      * @param command command
      * @return command in enum when existed, else return null
      */
     public static Command stringToCommand(String command) {
-        for (Command c : Command.values()) {
-            if (c.getCommand().equals(command)) {
-                return c;
-            }
-        }
-        return null;
+        return COMMANDS.get(command);
     }
 
     
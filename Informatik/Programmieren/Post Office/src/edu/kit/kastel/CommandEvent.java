@@ -0,0 +1,31 @@
+package edu.kit.kastel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event of one executed command, so slow commands can be matched with garbage collections.
+ * The event is disabled unless a recording enables it.
+ * @author unweb
+ */
+@Name("edu.kit.kastel.Command")
+@Label("Post Office Command")
+@Category("Post Office")
+@Description("A command executed by the command handler")
+@StackTrace(false)
+final class CommandEvent extends Event {
+    /**
+     * The executed command, empty when the command is unknown.
+     */
+    @Label("Command")
+    String command;
+    /**
+     * The kind of the error of the command, empty when it succeeded.
+     */
+    @Label("Error")
+    String error;
+}
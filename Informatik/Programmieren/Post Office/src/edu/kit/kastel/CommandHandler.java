@@ -1,5 +1,11 @@
 package edu.kit.kastel;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -7,23 +13,47 @@ import java.util.Scanner;
  * @author unweb
  */
 final class CommandHandler {
+    /**
+     * Instance of post office.
+     */
+    private static final PostOffice COMMAND_HANDLER = PostOffice.getInstance();
     /**
      * Instance of command handler.
      */
     private static final CommandHandler COMMAND_INSTANCE = new CommandHandler();
     /**
-     * Instance of post office.
+     * The statistics of all executed commands.
      */
-    private static final PostOffice COMMAND_HANDLER = PostOffice.getInstance();
+    private static final CommandMetrics METRICS = new CommandMetrics();
+    /**
+     * The scheduler of the commands of all command handlers.
+     */
+    private static final CommandScheduler SCHEDULER = new CommandScheduler();
+    /**
+     * The session of this command handler at the post office.
+     */
+    private final Session session = COMMAND_HANDLER.openSession();
+    /**
+     * The state of the session at the scheduler.
+     */
+    private final SessionFlow flow = new SessionFlow();
+    /**
+     * The result of a command without any output.
+     */
+    private static final String NO_OUTPUT = "";
+    /**
+     * The parameters of a command without parameters.
+     */
+    private static final String[] NO_PARAMETERS = new String[0];
     /** 
      * A boolean variable to controll the programm flow.
      */
     private boolean quit = false; 
 
     /**
-     * Constructor of the class.
+     * Constructor of the class. Every command handler has its own session, e.g. one per network connection.
      */
-    private CommandHandler() {
+    CommandHandler() {
 
     }
     /**
@@ -34,9 +64,10 @@ final class CommandHandler {
         Scanner input = new Scanner(System.in);
         while (!quit) {
             try {
-                String[] commands = input.nextLine().split(" ");
-                String[] parameters = (commands.length > 1) ? commands[1].split(";") : new String[0];
-                commandHandler(commands, parameters);
+                String result = execute(input.nextLine());
+                if (!result.isEmpty()) {
+                    System.out.println(result);
+                }
             } catch (Validity e) {
                 System.out.println(e.getMessage());
             }
@@ -45,108 +76,293 @@ final class CommandHandler {
     }
 
     /**
-     * Handles all the command of the user.
+     * Runs a batch of commands until the quit command or the end of the input.
+     * The results are written to the output without flushing after each command.
+     * @param input the input with one command per line
+     * @param output the output of the results
+     * @throws IOException when the input cannot be read or the output cannot be written
+     */
+    public void batch(BufferedReader input, Writer output) throws IOException {
+        String line;
+        while (!quit && (line = input.readLine()) != null) {
+            String result;
+            try {
+                result = execute(line);
+            } catch (Validity e) {
+                result = e.getMessage();
+            }
+            if (!result.isEmpty()) {
+                output.write(result);
+                output.write(System.lineSeparator());
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Parses and executes one command line.
+     * @param line the command line
+     * @return the result of the command, empty when there is no output
+     * @throws Validity when the input format is incorrect, or when the requirements of the function is not fulfilled
+     */
+    String execute(String line) throws Validity {
+        String[] commands = LineParser.split(line, LineParser.COMMAND_SEPARATOR);
+        String[] parameters = (commands.length > 1)
+                ? LineParser.split(commands[1], LineParser.PARAMETER_SEPARATOR) : NO_PARAMETERS;
+        return commandHandler(commands, parameters);
+    }
+
+    /**
+     * Handles all the command of the user once the scheduler lets it run
+     * and records its latency, its queue wait and its error in the statistics.
      * @param commands is a command along with its parameters
      * @param parameters a set of parameters of the command
+     * @return the result of the command, empty when there is no output
      * @throws Validity when the input format is incorrect, or when the requirements of the function is not fulfilled
      */
-    void commandHandler(String[] commands, String[] parameters) throws Validity {
+    String commandHandler(String[] commands, String[] parameters) throws Validity {
         Command command = Command.stringToCommand(commands[0]);
-        if (command == null) {
-            throw new Validity(Error.INCORRECT_INPUT_FORMAT.getMessage());
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long wait = 0;
+        Error error = null;
+        try {
+            if (command == null) {
+                throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+            }
+            wait = SCHEDULER.enter(flow, command, weight());
+            try {
+                return run(command, commands, parameters);
+            } finally {
+                SCHEDULER.leave(flow);
+            }
+        } catch (Validity e) {
+            error = e.getError();
+            throw e;
+        } finally {
+            METRICS.record(command, System.nanoTime() - start - wait, wait, error);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = (command == null) ? "" : command.getCommand();
+                event.error = (error == null) ? "" : error.name();
+                event.commit();
+            }
         }
+    }
+    /**
+     * Gives out the weight of the session at the scheduler.
+     * @return {@link CommandScheduler#STAFF_WEIGHT} for a mailman or an agent, otherwise 1
+     */
+    private int weight() {
+        return COMMAND_HANDLER.getRegistry().hasRole(session.getUser(), UserRegistry.MAILMAN | UserRegistry.AGENT)
+                ? CommandScheduler.STAFF_WEIGHT : 1;
+    }
+    /**
+     * Runs a known command.
+     * @param command the command
+     * @param commands is a command along with its parameters
+     * @param parameters a set of parameters of the command
+     * @return the result of the command, empty when there is no output
+     * @throws Validity when the input format is incorrect, or when the requirements of the function is not fulfilled
+     */
+    private String run(Command command, String[] commands, String[] parameters) throws Validity {
         switch (command) {
             case QUIT -> {
                 COMMAND_HANDLER.commandValidator(commands, 1);
                 quit = true;
+                return NO_OUTPUT;
             }
             case ADD_CUSTOMER -> {
                 COMMAND_HANDLER.commandValidator(parameters, 5);
-                COMMAND_HANDLER.addCustomer(parameters[0], parameters[1], parameters[2], parameters[3], parameters[4]);
+                return COMMAND_HANDLER.addCustomer(session, parameters[0], parameters[1], parameters[2], parameters[3], parameters[4]);
+            }
+            case ADD_CUSTOMERS -> {
+                return compactAddCustomers(commands);
             }
             case ADD_MAILMAN -> {
                 COMMAND_HANDLER.commandValidator(parameters, 4);
-                COMMAND_HANDLER.addMailman(parameters[0], parameters[1], parameters[2], parameters[3]);
+                return COMMAND_HANDLER.addMailman(session, parameters[0], parameters[1], parameters[2], parameters[3]);
             }
             case ADD_AGENT -> {
                 COMMAND_HANDLER.commandValidator(parameters, 4);
-                COMMAND_HANDLER.addAgent(parameters[0], parameters[1], parameters[2], parameters[3]);
+                return COMMAND_HANDLER.addAgent(session, parameters[0], parameters[1], parameters[2], parameters[3]);
             } 
             case AUTHENTICATE -> {
                 COMMAND_HANDLER.commandValidator(parameters, 2);
-                COMMAND_HANDLER.authenticate(parameters[0], parameters[1]);
+                COMMAND_HANDLER.authenticate(session, parameters[0], parameters[1]);
+                return PostOffice.OK;
             }
             case LOGOUT -> {
                 COMMAND_HANDLER.commandValidator(commands, 1);
-                COMMAND_HANDLER.logout();
+                return COMMAND_HANDLER.logout(session);
             }
             case SEND_MAIL -> {
                 if (parameters.length == 2) {
-                    COMMAND_HANDLER.sendMail(parameters[0], parameters[1]);
+                    return COMMAND_HANDLER.sendMail(session, parameters[0], parameters[1]);
                 } else if (parameters.length == 3) {
-                    COMMAND_HANDLER.sendMail(parameters[0], parameters[1], parameters[2]);
+                    return COMMAND_HANDLER.sendMail(session, parameters[0], parameters[1], parameters[2]);
                 } else {
-                    System.out.println(Error.INCORRECT_INPUT_FORMAT.getMessage()); 
+                    throw new Validity(Error.INCORRECT_INPUT_FORMAT);
                 }
             }  
             case GET_MAIL -> {
-                compactGetMail(commands, parameters);
+                return compactGetMail(commands, parameters);
+            }
+            case MULTICAST_MAIL -> {
+                return compactMulticastMail(parameters);
+            }
+            case PEEK_MAIL -> {
+                return switch (parameters.length) {
+                    case 1 -> COMMAND_HANDLER.peekMail(session, parameters[0]);
+                    case 2 -> COMMAND_HANDLER.peekMail(session, parameters[0], parameters[1]);
+                    default -> throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+                };
+            }
+            case FETCH_MAIL -> {
+                return switch (parameters.length) {
+                    case 2 -> COMMAND_HANDLER.fetchMail(session, parameters[0], parameters[1]);
+                    case 3 -> COMMAND_HANDLER.fetchMail(session, parameters[0], parameters[1], parameters[2]);
+                    default -> throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+                };
+            }
+            case ACK_MAIL -> {
+                return switch (parameters.length) {
+                    case 1 -> COMMAND_HANDLER.ackMail(session, parameters[0]);
+                    case 2 -> COMMAND_HANDLER.ackMail(session, parameters[0], parameters[1]);
+                    default -> throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+                };
             }
             case LIST_MAIL -> {
-                compactListMail(commands, parameters);
+                return compactListMail(commands, parameters);
             }
             case LIST_PRICE -> {
-                compactListPrice(commands, parameters);
+                return compactListPrice(commands, parameters);
+            }
+            case LIST_REVENUE -> {
+                COMMAND_HANDLER.commandValidator(commands, 1);
+                return COMMAND_HANDLER.listRevenue(session);
+            }
+            case DELIVERY_STATS -> {
+                COMMAND_HANDLER.commandValidator(commands, 1);
+                return COMMAND_HANDLER.deliveryStats(session);
+            }
+            case STATS -> {
+                COMMAND_HANDLER.commandValidator(commands, 1);
+                COMMAND_HANDLER.checkRole(session, UserRegistry.AGENT);
+                return METRICS.getReport();
+            }
+            case TOP_SENDERS -> {
+                COMMAND_HANDLER.commandValidator(parameters, 1);
+                return COMMAND_HANDLER.topSenders(session, parameters[0]);
+            }
+            case TOP_RECEIVERS -> {
+                COMMAND_HANDLER.commandValidator(parameters, 1);
+                return COMMAND_HANDLER.topReceivers(session, parameters[0]);
+            }
+            case TOP_PAIRS -> {
+                COMMAND_HANDLER.commandValidator(parameters, 1);
+                return COMMAND_HANDLER.topPairs(session, parameters[0]);
+            }
+            case PAIR_TRAFFIC -> {
+                COMMAND_HANDLER.commandValidator(parameters, 2);
+                return COMMAND_HANDLER.pairTraffic(session, parameters[0], parameters[1]);
+            }
+            case REFRESH_REPLICA -> {
+                COMMAND_HANDLER.commandValidator(commands, 1);
+                return COMMAND_HANDLER.refreshReplica(session);
             }
             case RESET_PIN -> {
                 COMMAND_HANDLER.commandValidator(parameters, 3);
-                COMMAND_HANDLER.resetPin(parameters[0], parameters[1], parameters[2]);
+                return COMMAND_HANDLER.resetPin(session, parameters[0], parameters[1], parameters[2]);
             }
             default -> {
-                System.out.println(Error.INCORRECT_INPUT_FORMAT.getMessage());
+                throw new Validity(Error.INCORRECT_INPUT_FORMAT);
             }
         }
     }
+    /**
+     * Collects the customers of a batch registration, one customer per parameter block.
+     * @param commands commands
+     * @return the result of the command
+     * @throws Validity when the given information is incorrect or has the incorrect format
+     */
+    private String compactAddCustomers(String[] commands) throws Validity {
+        if (commands.length == 1) {
+            throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+        }
+        List<String[]> batch = new ArrayList<>(commands.length - 1);
+        for (int i = 1; i < commands.length; i++) {
+            batch.add(LineParser.split(commands[i], LineParser.PARAMETER_SEPARATOR));
+        }
+        return COMMAND_HANDLER.addCustomers(session, batch);
+    }
+    /**
+     * All functions relating multicast mail are compacted into one function.
+     * A customer gives the postal service and the receivers,
+     * a mailman gives the postal service, the sender and the receivers.
+     * @param parameters parameters
+     * @return the result of the command
+     * @throws Validity when the given information is incorrect or has the incorrect format
+     */
+    private String compactMulticastMail(String[] parameters) throws Validity {
+        List<String> receivers;
+        if (COMMAND_HANDLER.getRegistry().hasRole(session.getUser(), UserRegistry.MAILMAN)) {
+            if (parameters.length < 3) {
+                throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+            }
+            receivers = Arrays.asList(parameters).subList(2, parameters.length);
+            return COMMAND_HANDLER.multicastMail(session, parameters[0], parameters[1], receivers);
+        }
+        if (parameters.length < 2) {
+            throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+        }
+        receivers = Arrays.asList(parameters).subList(1, parameters.length);
+        return COMMAND_HANDLER.multicastMail(session, parameters[0], receivers);
+    }
     /**
      * All functions relating get mail are compacted into one function
      * @param commands commands
      * @param parameters parameters
+     * @return the result of the command
      * @throws Validity when the given information is incorrect or has the incorrect format
      */
-    private void compactGetMail(String[] commands, String[] parameters) throws Validity {
+    private String compactGetMail(String[] commands, String[] parameters) throws Validity {
         if (commands.length == 1) {
-            COMMAND_HANDLER.getMail();
+            return COMMAND_HANDLER.getMail(session);
         } else {
             COMMAND_HANDLER.commandValidator(parameters, 1);
-            COMMAND_HANDLER.getMail(parameters[0]);
+            return COMMAND_HANDLER.getMail(session, parameters[0]);
         }
     }
     /**
      * All functions relating list mail are compacted into one function
      * @param commands commands
      * @param parameters parameters
+     * @return the result of the command
      * @throws Validity when the given information is incorrect or has the incorrect format
      */
-    private void compactListMail(String[] commands, String[] parameters) throws Validity {
+    private String compactListMail(String[] commands, String[] parameters) throws Validity {
         if (commands.length == 1) {
-            COMMAND_HANDLER.listMail();
+            return COMMAND_HANDLER.listMail(session);
         } else {
             COMMAND_HANDLER.commandValidator(parameters, 1);
-            COMMAND_HANDLER.listMail(parameters[0]);
+            return COMMAND_HANDLER.listMail(session, parameters[0]);
         }
     }
     /**
      * All functions relating list price are compacted into one function
      * @param commands commands
      * @param parameters parameters
+     * @return the result of the command
      * @throws Validity when the given information is incorrect or has the incorrect format
      */
-    private void compactListPrice(String[] commands, String[] parameters) throws Validity {
+    private String compactListPrice(String[] commands, String[] parameters) throws Validity {
         if (commands.length == 1) {
-            COMMAND_HANDLER.listPrice();
+            return COMMAND_HANDLER.listPrice(session);
         } else {
             COMMAND_HANDLER.commandValidator(parameters, 1);
-            COMMAND_HANDLER.listPrice(parameters[0]);
+            return COMMAND_HANDLER.listPrice(session, parameters[0]);
         }
     }
     /**
@@ -156,4 +372,25 @@ final class CommandHandler {
     public static CommandHandler getInstance() {
         return COMMAND_INSTANCE;
     }
+    /**
+     * Checks if the quit command has been executed.
+     * @return true if the user has quit, otherwise false
+     */
+    boolean hasQuit() {
+        return quit;
+    }
+    /**
+     * A getter of the statistics of all executed commands.
+     * @return the statistics
+     */
+    static CommandMetrics getMetrics() {
+        return METRICS;
+    }
+    /**
+     * A getter of the scheduler of all commands.
+     * @return the scheduler
+     */
+    static CommandScheduler getScheduler() {
+        return SCHEDULER;
+    }
 }
@@ -0,0 +1,154 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts the executed commands, their errors by kind and their latency.
+ * @author unweb
+ */
+final class CommandMetrics {
+    /**
+     * All commands by ordinal.
+     */
+    private static final Command[] COMMANDS = Command.values();
+    /**
+     * All kinds of errors by ordinal.
+     */
+    private static final Error[] ERRORS = Error.values();
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * The time the counting started in nanoseconds.
+     */
+    private final long start = System.nanoTime();
+    /**
+     * The latency histograms by ordinal of the command.
+     */
+    private final LatencyHistogram[] latencies = new LatencyHistogram[COMMANDS.length];
+    /**
+     * The histograms of the time waited for the scheduler by ordinal of the command.
+     */
+    private final LatencyHistogram[] waits = new LatencyHistogram[COMMANDS.length];
+    /**
+     * The number of failed executions by ordinal of the command.
+     */
+    private final AtomicLongArray failures = new AtomicLongArray(COMMANDS.length);
+    /**
+     * The number of errors by ordinal of the kind of error.
+     */
+    private final AtomicLongArray errors = new AtomicLongArray(ERRORS.length);
+    /**
+     * Writes the report periodically, null when no file is written.
+     */
+    private ScheduledExecutorService dumpTimer;
+
+    /**
+     * Constructor of the class.
+     */
+    CommandMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            waits[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records an executed command.
+     * @param command the command, null when the command is unknown
+     * @param nanos the latency in nanoseconds, without the wait
+     * @param wait the time waited for the scheduler in nanoseconds
+     * @param error the kind of the error, null when the command succeeded
+     */
+    void record(Command command, long nanos, long wait, Error error) {
+        if (command != null) {
+            latencies[command.ordinal()].record(nanos);
+            waits[command.ordinal()].record(wait);
+            if (error != null) {
+                failures.incrementAndGet(command.ordinal());
+            }
+        }
+        if (error != null) {
+            errors.incrementAndGet(error.ordinal());
+        }
+    }
+
+    /**
+     * Gives out the count, the errors, the throughput, the latency and the queue wait of every executed command
+     * and the number of errors per kind.
+     * @return one line per executed command, as command;count;errors;ops/s;p50ms;p99ms;maxms;waitp50ms;waitp99ms,
+     *     followed by one line per occurred kind of error, as kind;count
+     */
+    String getReport() {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
+        for (Command command : COMMANDS) {
+            LatencyHistogram latency = latencies[command.ordinal()];
+            LatencyHistogram wait = waits[command.ordinal()];
+            long count = latency.getCount();
+            if (count > 0) {
+                lines.add(String.format(Locale.US, "%s;%d;%d;%.1f;%.3f;%.3f;%.3f;%.3f;%.3f", command.getCommand(),
+                        count, failures.get(command.ordinal()), count / seconds,
+                        latency.getQuantile(0.5) / NANOS_PER_MILLI, latency.getQuantile(0.99) / NANOS_PER_MILLI,
+                        latency.getMax() / NANOS_PER_MILLI, wait.getQuantile(0.5) / NANOS_PER_MILLI,
+                        wait.getQuantile(0.99) / NANOS_PER_MILLI));
+            }
+        }
+        for (Error error : ERRORS) {
+            long count = errors.get(error.ordinal());
+            if (count > 0) {
+                lines.add(error.name() + ";" + count);
+            }
+        }
+        return lines.toString();
+    }
+
+    /**
+     * Starts appending the report to a file periodically.
+     * @param file the file
+     * @param intervalSeconds the interval between two reports in seconds
+     */
+    synchronized void startDump(Path file, long intervalSeconds) {
+        dumpTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpTimer.scheduleWithFixedDelay(() -> dump(file), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic reports.
+     */
+    synchronized void stopDump() {
+        if (dumpTimer != null) {
+            dumpTimer.shutdownNow();
+            dumpTimer = null;
+        }
+    }
+
+    /**
+     * Appends the report with a time stamp to a file.
+     * @param file the file
+     */
+    void dump(Path file) {
+        String report = "# " + Instant.now() + System.lineSeparator() + getReport() + System.lineSeparator();
+        try {
+            Files.writeString(file, report, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package edu.kit.kastel;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class decides when the command of a session may run, so one flooding session cannot starve the others.
+ * Every session has a token bucket: with a rate set, a session that has used up its burst waits for its next token
+ * on its own thread, without holding a slot. Then the command waits for a slot in its {@link FairLane}, which lets
+ * waiting commands in by weighted fair queuing across sessions. Read-only commands have a lane of their own,
+ * so listings are never queued behind mutations.
+ * @author unweb
+ */
+final class CommandScheduler {
+    /**
+     * The number of lanes.
+     */
+    static final int LANES = 2;
+    /**
+     * The lane of the read-only commands.
+     */
+    static final int READ_LANE = 0;
+    /**
+     * The lane of the mutating commands.
+     */
+    static final int WRITE_LANE = 1;
+    /**
+     * The weight of a session of a mailman or an agent, who work on behalf of many customers.
+     */
+    static final int STAFF_WEIGHT = 4;
+    /**
+     * The default capacity of the token buckets.
+     */
+    static final double DEFAULT_BURST = 10;
+    /**
+     * The default number of slots of each lane.
+     */
+    static final int DEFAULT_SLOTS = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+    /**
+     * The lanes by index.
+     */
+    private final FairLane[] lanes = new FairLane[LANES];
+    /**
+     * The refill rate of the token buckets in commands per second, 0 for no limit.
+     */
+    private volatile double rate;
+    /**
+     * The capacity of the token buckets.
+     */
+    private volatile double burst = DEFAULT_BURST;
+
+    /**
+     * Constructor of the class.
+     */
+    CommandScheduler() {
+        for (int i = 0; i < LANES; i++) {
+            lanes[i] = new FairLane(i, DEFAULT_SLOTS);
+        }
+    }
+
+    /**
+     * Sets the limits of the scheduler.
+     * @param rate the commands per second of every session, 0 for no limit
+     * @param burst the commands a session may run at once before the rate applies, at least 1
+     * @param slots the number of commands that run at the same time in each lane, at least 1
+     */
+    void configure(double rate, double burst, int slots) {
+        if (rate < 0 || burst < 1 || slots < 1) {
+            throw new IllegalArgumentException("invalid scheduler limits");
+        }
+        this.rate = rate;
+        this.burst = burst;
+        for (FairLane lane : lanes) {
+            lane.setSlots(slots);
+        }
+    }
+
+    /**
+     * Waits until a command of a session may run. Every call must be followed by {@link #leave(SessionFlow)}.
+     * @param flow the session
+     * @param command the command
+     * @param weight the weight of the session
+     * @return the time the command has waited in nanoseconds
+     */
+    long enter(SessionFlow flow, Command command, int weight) {
+        long begin = System.nanoTime();
+        double limit = rate;
+        if (limit > 0) {
+            long delay = flow.reserve(limit, burst, begin);
+            long until = begin + delay;
+            for (long left = delay; left > 0; left = until - System.nanoTime()) {
+                LockSupport.parkNanos(this, left);
+            }
+        }
+        lanes[command.isReadOnly() ? READ_LANE : WRITE_LANE].enter(flow, weight);
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Frees the slot of a finished command.
+     * @param flow the session
+     */
+    void leave(SessionFlow flow) {
+        lanes[flow.getLane()].leave();
+    }
+}
@@ -0,0 +1,70 @@
+package edu.kit.kastel;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class estimates the counts of long keys in fixed memory with a count-min sketch.
+ * Every key is counted in one cell of each row. The smallest of these cells is an upper bound of the count,
+ * which overestimates by at most the total count times e divided by the width with a probability of at least
+ * one minus e to the power of minus the depth. Updates are lock free.
+ * @author unweb
+ */
+final class CountMinSketch {
+    /**
+     * The seeds of the hashes of the rows.
+     */
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+        0xD6E8FEB86659FD93L};
+    /**
+     * The number of bits of the width of a row.
+     */
+    private final int widthBits;
+    /**
+     * The cells of all rows.
+     */
+    private final AtomicLongArray cells;
+
+    /**
+     * Constructor of the class.
+     * @param widthBits the number of bits of the width of a row
+     */
+    CountMinSketch(int widthBits) {
+        this.widthBits = widthBits;
+        this.cells = new AtomicLongArray(SEEDS.length << widthBits);
+    }
+
+    /**
+     * Counts occurrences of a key.
+     * @param key the key
+     * @param count the number of occurrences
+     */
+    void add(long key, long count) {
+        for (int row = 0; row < SEEDS.length; row++) {
+            cells.addAndGet(cell(row, key), count);
+        }
+    }
+
+    /**
+     * Estimates the count of a key.
+     * @param key the key
+     * @return an upper bound of the count
+     */
+    long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < SEEDS.length; row++) {
+            estimate = Math.min(estimate, cells.get(cell(row, key)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Computes the cell of a key in a row.
+     * @param row the row
+     * @param key the key
+     * @return the index of the cell
+     */
+    private int cell(int row, long key) {
+        long mixed = (key ^ SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+        return (row << widthBits) | (int) (mixed >>> (Long.SIZE - widthBits));
+    }
+}
@@ -0,0 +1,222 @@
+package edu.kit.kastel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * This class stores the credentials of all users as salted PBKDF2 hashes, no password is kept.
+ * A credential is a row of {@value #ROW_SIZE} bytes: the number of hash iterations, the salt and the hash.
+ * The rows are kept by the ID of the user in primitive chunks. Hashes are compared in constant time.
+ * A session remembers a verified login for {@value #VERIFIED_MINUTES} minutes, so logging in again
+ * with the same password in that session only costs a keyed digest instead of the slow hash.
+ * @author unweb
+ */
+final class CredentialStore {
+    /**
+     * The number of bytes of a salt.
+     */
+    static final int SALT_SIZE = 16;
+    /**
+     * The number of bytes of a hash.
+     */
+    static final int HASH_SIZE = 32;
+    /**
+     * The number of bytes of a credential: iterations, salt and hash.
+     */
+    static final int ROW_SIZE = Integer.BYTES + SALT_SIZE + HASH_SIZE;
+    /**
+     * The default number of hash iterations.
+     */
+    static final int DEFAULT_ITERATIONS = 10_000;
+    /**
+     * The number of minutes a verified login is remembered by its session.
+     */
+    private static final int VERIFIED_MINUTES = 15;
+    /**
+     * The time a verified login is remembered by its session in nanoseconds.
+     */
+    private static final long VERIFIED_WINDOW = TimeUnit.MINUTES.toNanos(VERIFIED_MINUTES);
+    /**
+     * The key derivation of the hashes.
+     */
+    private static final String HASH_ALGORITHM = "PBKDF2WithHmacSHA256";
+    /**
+     * The keyed digest of the remembered logins.
+     */
+    private static final String DIGEST_ALGORITHM = "HmacSHA256";
+    /**
+     * The number of bits of the index inside a chunk.
+     */
+    private static final int CHUNK_BITS = 12;
+    /**
+     * The number of credentials in one chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /**
+     * The mask of the index inside a chunk.
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /**
+     * The source of the salts.
+     */
+    private final SecureRandom random = new SecureRandom();
+    /**
+     * The key of the digests of the remembered logins, new for every run.
+     */
+    private final SecretKeySpec digestKey;
+    /**
+     * Guards the rows against torn reads while a credential is replaced.
+     */
+    private final StampedLock lock = new StampedLock();
+    /**
+     * The chunks of the rows.
+     */
+    private volatile byte[][] chunks = new byte[16][];
+    /**
+     * The number of hash iterations of new credentials.
+     */
+    private volatile int iterations = DEFAULT_ITERATIONS;
+
+    /**
+     * Constructor of the class.
+     */
+    CredentialStore() {
+        byte[] key = new byte[HASH_SIZE];
+        random.nextBytes(key);
+        digestKey = new SecretKeySpec(key, DIGEST_ALGORITHM);
+    }
+
+    /**
+     * Sets the number of hash iterations of new credentials. Stored credentials keep their number.
+     * @param iterations the number of hash iterations, at least 1
+     */
+    void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("hash iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * Hashes a password with a new salt.
+     * @param password the password
+     * @return the credential
+     */
+    byte[] hash(String password) {
+        byte[] salt = new byte[SALT_SIZE];
+        random.nextBytes(salt);
+        int cost = iterations;
+        return ByteBuffer.allocate(ROW_SIZE).putInt(cost).put(salt).put(derive(password, salt, cost)).array();
+    }
+
+    /**
+     * Stores or replaces the credential of a user.
+     * @param id the ID of the user
+     * @param credential the credential
+     */
+    void set(int id, byte[] credential) {
+        long stamp = lock.writeLock();
+        try {
+            int chunk = id >>> CHUNK_BITS;
+            if (chunk >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunk + 1));
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new byte[CHUNK_SIZE * ROW_SIZE];
+            }
+            System.arraycopy(credential, 0, chunks[chunk], (id & CHUNK_MASK) * ROW_SIZE, ROW_SIZE);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gives out a copy of the credential of a user.
+     * @param id the ID of the user
+     * @return the credential
+     */
+    byte[] get(int id) {
+        byte[] credential = new byte[ROW_SIZE];
+        long stamp = lock.tryOptimisticRead();
+        System.arraycopy(chunks[id >>> CHUNK_BITS], (id & CHUNK_MASK) * ROW_SIZE, credential, 0, ROW_SIZE);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                System.arraycopy(chunks[id >>> CHUNK_BITS], (id & CHUNK_MASK) * ROW_SIZE, credential, 0, ROW_SIZE);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return credential;
+    }
+
+    /**
+     * Checks the password of a user and remembers a correct login in the session.
+     * @param session the session the user logs in
+     * @param user the ID of the user
+     * @param password the given password
+     * @return true if the password is correct, otherwise false
+     */
+    boolean verify(Session session, int user, String password) {
+        byte[] credential = get(user);
+        byte[] digest = digest(password);
+        long now = System.nanoTime();
+        VerifiedLogin remembered = session.getVerifiedLogin();
+        if (remembered != null && remembered.matches(user, credential, digest, now)) {
+            return true;
+        }
+        ByteBuffer row = ByteBuffer.wrap(credential);
+        int cost = row.getInt();
+        byte[] salt = new byte[SALT_SIZE];
+        byte[] hash = new byte[HASH_SIZE];
+        row.get(salt).get(hash);
+        if (!MessageDigest.isEqual(derive(password, salt, cost), hash)) {
+            return false;
+        }
+        session.setVerifiedLogin(new VerifiedLogin(user, credential, digest, now + VERIFIED_WINDOW));
+        return true;
+    }
+
+    /**
+     * Derives the hash of a password.
+     * @param password the password
+     * @param salt the salt
+     * @param cost the number of hash iterations
+     * @return the hash
+     */
+    private static byte[] derive(String password, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, cost, HASH_SIZE * Byte.SIZE);
+        try {
+            return SecretKeyFactory.getInstance(HASH_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Computes the keyed digest of a password, which is only valid during this run.
+     * @param password the password
+     * @return the digest
+     */
+    private byte[] digest(String password) {
+        try {
+            Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+            mac.init(digestKey);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,132 +1,272 @@
 package edu.kit.kastel;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /** 
- * This class modelises customer.
+ * This class modelises the mailboxes and the order counters of a customer, the other informations of the customer
+ * are kept by the {@link UserRegistry}.
+ * The mailboxes only hold mail IDs of the shared mail store. The mailboxes and the order counters,
+ * which are keyed by the ordinal of the postal service, are guarded by the customer itself.
  * @author unweb
  */
-public class Customer extends User {
+public class Customer {
     /**
-     * Username of the customer.
+     * The ID of the customer in the user registry.
      */
-    private final String username;
+    private final int id;
     /**
-     * Identification number of the customer.
+     * The mail store that holds the mails of the customer.
      */
-    private final String idNumber;
+    private final MailStore mailStore;
     /**
      * Mail inbox of the customer.
      */
-    private final List<Mail> inbox = new ArrayList<>();
+    private final Inbox inbox = new Inbox();
     /**
      * list of sent mails of the customer.
      */
-    private final List<Mail> sent = new ArrayList<>();
+    private final IntList sent = new IntList();
     /**
-     * A map that tracks the total number of orders of the customer.
+     * Tracks the total number of orders of the customer.
      */
-    private final Map<String, Integer> totalOrders = new HashMap<>();
+    private final long[] totalOrders = new long[PostalService.values().length];
     /**
-     * A map that tracks the total number of received orders of the customer.
+     * Tracks the price of the orders of the customer in cents.
      */
-    private final Map<String, Integer> receivedOrders = new HashMap<>();
-
+    private final long[] totalCents = new long[PostalService.values().length];
     /**
-     * Constructor of the class.
-     * @param firstName first name
-     * @param lastName last name
-     * @param username username
-     * @param password password
-     * @param idNumber identification number
+     * Tracks the total number of received orders of the customer.
      */
-    public Customer(String firstName, String lastName, String username, String password, String idNumber) {
-        super(firstName, lastName, password);
-        this.username = username;
-        this.idNumber = idNumber;
-    }
-
+    private final long[] receivedOrders = new long[PostalService.values().length];
     /**
-     * A setter for password.
-     * @param password
+     * The number of all orders of the customer.
      */
-    public void setPassword(String password) {
-        this.password = password;
-    }
+    private long numberOfOrders;
+    /**
+     * Whether the order counters have changed since they were last copied to the {@link OrderReplica}.
+     */
+    private volatile boolean ordersChanged;
 
-    /** 
-     * A getter for username.
-     * @return username
+    /**
+     * Constructor of the class.
+     * @param id the ID of the customer in the user registry
+     * @param mailStore the mail store that holds the mails of the customer
      */
-    public String getUsername() {
-        return username;
+    public Customer(int id, MailStore mailStore) {
+        this.id = id;
+        this.mailStore = mailStore;
     }
+
     /**
-     * A getter for identification number.
-     * @return identification number
+     * A getter for the ID in the user registry.
+     * @return the ID
      */
-    public String getIdNumber() {
-        return idNumber;
+    public int getId() {
+        return id;
     }
     /**
      * Add a mail to the customer's inbox.
-     * @param sender sender
+     * @param mail the ID of the mail in the mail store
      * @param postalService postal service
-     * @param receiver receiver
      */
-    public void receiveMail(String sender, String postalService, String receiver) {
-        Mail receivedMail = new Mail(sender, postalService, receiver);
-        receivedOrders.put(postalService, receivedOrders.getOrDefault(postalService, 0) + 1);
-        inbox.add(receivedMail);        
+    public synchronized void receiveMail(int mail, PostalService postalService) {
+        receivedOrders[postalService.ordinal()]++;
+        markOrdersChanged();
+        inbox.add(mail);
     }
 
     /**
-     * Send a mail.
-     * @param sender sender
+     * Send a mail. A recovered mail that stays in a history segment is not kept in the list of sent mails.
+     * @param mail the ID of the mail in the mail store
+     * @param postalService postal service
+     */
+    public synchronized void sendMail(int mail, PostalService postalService) {
+        totalOrders[postalService.ordinal()]++;
+        totalCents[postalService.ordinal()] += postalService.getPriceInCents();
+        numberOfOrders++;
+        markOrdersChanged();
+        if (!mailStore.isSpilled(mail)) {
+            sent.add(mail);
+        }
+    }
+    /**
+     * Send mails with consecutive IDs of one postal service.
+     * @param first the ID of the first mail in the mail store
+     * @param count the number of mails
      * @param postalService postal service
-     * @param receiver receiver
      */
-    public void sendMail(String sender, String postalService, String receiver) {
-        Mail sentMail = new Mail(sender, postalService, receiver);
-        totalOrders.put(postalService, totalOrders.getOrDefault(postalService, 0) + 1);
-        sent.add(sentMail);   
+    synchronized void sendMails(int first, int count, PostalService postalService) {
+        totalOrders[postalService.ordinal()] += count;
+        totalCents[postalService.ordinal()] += (long) count * postalService.getPriceInCents();
+        numberOfOrders += count;
+        markOrdersChanged();
+        for (int i = 0; i < count; i++) {
+            if (!mailStore.isSpilled(first + i)) {
+                sent.add(first + i);
+            }
+        }
     }
     /**
      * A getter for customer's inbox.
-     * @return inbox
+     * @return a read only view of the inbox
      */
     public List<Mail> getInbox() {
-        return inbox;
+        return new MailView(this, inbox, mailStore);
     }
     /**
      * A getter for customer's sent mails.
-     * @return the sent mails
+     * Spilled mails are read from the history segments, followed by the mails still kept in memory.
+     * The segments are read without holding the lock of the customer. A chunk that is spilled meanwhile
+     * may already be trimmed from the sent mails, so the segments are read again until the spilled limit
+     * is unchanged under the lock.
+     * @return a read only view of a copy of the sent mails
      */
     public List<Mail> getSent() {
-        return sent;
+        while (true) {
+            IntList mails = new IntList();
+            int limit = mailStore.collectSpilledSent(id, mails);
+            synchronized (this) {
+                if (mailStore.getSpilledLimit() == limit) {
+                    for (int i = 0; i < sent.size(); i++) {
+                        if (sent.get(i) >= limit) {
+                            mails.add(sent.get(i));
+                        }
+                    }
+                    return new MailView(this, mails, mailStore);
+                }
+            }
+        }
+    }
+    /**
+     * Drops the IDs of sent mails that have been spilled to the history segments.
+     * @param limit the ID of the first mail kept in memory
+     */
+    synchronized void trimSent(int limit) {
+        sent.removeBelow(limit);
+    }
+    /**
+     * A getter for the mail IDs in the customer's inbox.
+     * @return a copy of the mail IDs
+     */
+    synchronized int[] getInboxIds() {
+        int[] mails = new int[inbox.size()];
+        inbox.copy(inbox.getHead(), mails);
+        return mails;
+    }
+    /**
+     * A getter for the cursor of the oldest unacknowledged mail in the customer's inbox.
+     * @return the cursor
+     */
+    synchronized long getInboxHead() {
+        return inbox.getHead();
+    }
+    /**
+     * Replaces the inbox with recovered mail IDs without touching the order tracking.
+     * @param head the cursor of the first recovered mail
+     * @param mails the recovered mail IDs
+     */
+    synchronized void restoreInbox(long head, int[] mails) {
+        inbox.restore(head, mails);
     }
     /**
      * A getter for the customer's latest mail.
+     * @return true if there were mails in the inbox, otherwise false
      */
-    public void getMail() {
-        inbox.clear();
+    public synchronized boolean getMail() {
+        return collectMail() > 0;
+    }
+    /**
+     * Collects all mails of the customer's inbox.
+     * @return the number of collected mails
+     */
+    synchronized int collectMail() {
+        return inbox.clear();
+    }
+    /**
+     * Reads a page of the customer's inbox without acknowledging it.
+     * @param cursor the cursor to start at, acknowledged mails are skipped
+     * @param size the maximal number of mails
+     * @return the page
+     */
+    synchronized InboxPage readMail(long cursor, int size) {
+        long start = Math.max(cursor, inbox.getHead());
+        int[] mails = new int[Math.min(size, inbox.size())];
+        int count = inbox.copy(start, mails);
+        return new InboxPage(start, (count == mails.length) ? mails : Arrays.copyOf(mails, count));
+    }
+    /**
+     * Reads the oldest unacknowledged mails of the customer's inbox without acknowledging them.
+     * @param size the maximal number of mails
+     * @return the page
+     */
+    synchronized InboxPage peekMail(int size) {
+        return readMail(inbox.getHead(), size);
+    }
+    /**
+     * Acknowledges all mails of the customer's inbox before a cursor.
+     * @param cursor the cursor of the first mail that stays
+     * @return the number of newly acknowledged mails
+     */
+    synchronized int acknowledgeMail(long cursor) {
+        return inbox.acknowledge(cursor);
+    }
+    /**
+     * Acknowledges a number of the oldest mails of the customer's inbox.
+     * @param count the number of mails
+     */
+    synchronized void dropMail(int count) {
+        inbox.acknowledge(inbox.getHead() + count);
+    }
+    /**
+     * Checks if the customer has ever ordered a postal service.
+     * @return true if the customer has orders, otherwise false
+     */
+    public synchronized boolean hasOrders() {
+        return numberOfOrders > 0;
     }
     /**
      * A getter for the customer's order tracking.
-     * @return total orders
+     * @return a copy of the total orders and their prices
      */
-    public Map<String, Integer> getTotalOrders() {
-        return totalOrders;
+    synchronized OrderTotals getTotalOrders() {
+        return new OrderTotals(totalOrders.clone(), totalCents.clone());
     }
     /**
      * A getter for the customer's received orders.
-     * @return total orders
+     * @return a copy of the received orders, the prices are paid by the senders and therefore zero
+     */
+    synchronized OrderTotals getReceivedOrders() {
+        return new OrderTotals(receivedOrders.clone(), new long[receivedOrders.length]);
+    }
+    /**
+     * Checks if the order counters have changed since they were last copied.
+     * @return true if they have changed, otherwise false
+     */
+    boolean hasChangedOrders() {
+        return ordersChanged;
+    }
+    /**
+     * Copies the order counters into a row of a replica: total orders, their prices and received orders
+     * by ordinal of the postal service.
+     * @return the row
+     */
+    synchronized long[] copyOrders() {
+        int services = totalOrders.length;
+        long[] row = new long[3 * services];
+        System.arraycopy(totalOrders, 0, row, 0, services);
+        System.arraycopy(totalCents, 0, row, services, services);
+        System.arraycopy(receivedOrders, 0, row, 2 * services, services);
+        ordersChanged = false;
+        return row;
+    }
+    /**
+     * Marks the order counters as changed. Must be called while holding the lock of the customer.
      */
-    public Map<String, Integer> getReceivedOrders() {
-        return receivedOrders;
+    private void markOrdersChanged() {
+        if (!ordersChanged) {
+            ordersChanged = true;
+        }
     }
 
     
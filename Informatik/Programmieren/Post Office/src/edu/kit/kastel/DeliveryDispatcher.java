@@ -0,0 +1,298 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * This class delivers sent mails to the inbox of their receivers.
+ * Without mailmen every mail is delivered right away. When mailmen are started, mails are queued per postal service
+ * and the mailmen drain the queues in batches: registered mails first, then letters, then parcels, which are only
+ * delivered once a full batch is ready or the oldest parcel has waited long enough.
+ * @author unweb
+ */
+final class DeliveryDispatcher {
+    /**
+     * The maximal number of letters a mailman delivers in one round.
+     */
+    private static final int LETTER_BATCH = 64;
+    /**
+     * The number of parcels a mailman waits for before delivering them.
+     */
+    private static final int PARCEL_BATCH = 16;
+    /**
+     * The longest time a parcel waits for its batch in nanoseconds.
+     */
+    private static final long PARCEL_WAIT = TimeUnit.MILLISECONDS.toNanos(50);
+    /**
+     * All postal services by ordinal.
+     */
+    private static final PostalService[] POSTAL_SERVICES = PostalService.values();
+    /**
+     * All postal services in delivery order.
+     */
+    private static final PostalService[] DELIVERY_ORDER = Arrays.stream(POSTAL_SERVICES)
+            .sorted(Comparator.comparingInt(PostalService::getDeliveryPriority)).toArray(PostalService[]::new);
+    /**
+     * Hands a mail over to its receiver.
+     */
+    private final IntConsumer receiver;
+    /**
+     * The queues by ordinal of the postal service.
+     */
+    private final DeliveryQueue[] queues = new DeliveryQueue[POSTAL_SERVICES.length];
+    /**
+     * The number of delivered mails by ordinal of the postal service.
+     */
+    private final AtomicLongArray delivered = new AtomicLongArray(POSTAL_SERVICES.length);
+    /**
+     * The summed delivery latency by ordinal of the postal service in nanoseconds.
+     */
+    private final AtomicLongArray latency = new AtomicLongArray(POSTAL_SERVICES.length);
+    /**
+     * The maximal delivery latency by ordinal of the postal service in nanoseconds.
+     */
+    private final AtomicLongArray maxLatency = new AtomicLongArray(POSTAL_SERVICES.length);
+    /**
+     * The lock the idle mailmen wait on.
+     */
+    private final Object signal = new Object();
+    /**
+     * Counts the queued mails, guarded by the signal lock, so an idle mailman notices mails queued while it looked.
+     */
+    private long queuedMails;
+    /**
+     * The mailmen, null when mails are delivered right away.
+     */
+    private volatile Thread[] mailmen;
+    /**
+     * Whether the mailmen keep working.
+     */
+    private volatile boolean running;
+
+    /**
+     * Constructor of the class.
+     * @param receiver hands a mail over to its receiver
+     */
+    DeliveryDispatcher(IntConsumer receiver) {
+        this.receiver = receiver;
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new DeliveryQueue();
+        }
+    }
+
+    /**
+     * Dispatches a sent mail.
+     * A mail queued while the mailmen stop is delivered by the sender itself, so no mail is left behind in a queue.
+     * @param mail the ID of the mail
+     * @param postalService the postal service of the mail
+     * @return true if the mail has been delivered right away, false if it has been queued
+     */
+    boolean dispatch(int mail, PostalService postalService) {
+        long now = System.nanoTime();
+        if (mailmen == null) {
+            receiver.accept(mail);
+            record(postalService, System.nanoTime() - now);
+            return true;
+        }
+        queues[postalService.ordinal()].add(mail, now);
+        synchronized (signal) {
+            queuedMails++;
+            signal.notify();
+        }
+        if (mailmen == null) {
+            drain();
+        }
+        return false;
+    }
+
+    /**
+     * Queues mails with consecutive IDs of one postal service when mailmen are started.
+     * @param first the ID of the first mail
+     * @param count the number of mails
+     * @param postalService the postal service of the mails
+     * @return true if the mails have been queued, false if there are no mailmen and the caller has to deliver them
+     */
+    boolean dispatchAll(int first, int count, PostalService postalService) {
+        if (mailmen == null) {
+            return false;
+        }
+        queues[postalService.ordinal()].addAll(first, count, System.nanoTime());
+        synchronized (signal) {
+            queuedMails += count;
+            signal.notifyAll();
+        }
+        if (mailmen == null) {
+            drain();
+        }
+        return true;
+    }
+
+    /**
+     * Starts mailmen that deliver the queued mails.
+     * @param numberOfMailmen the number of mailmen
+     */
+    synchronized void start(int numberOfMailmen) {
+        if (mailmen != null) {
+            return;
+        }
+        running = true;
+        Thread[] started = new Thread[numberOfMailmen];
+        for (int i = 0; i < numberOfMailmen; i++) {
+            started[i] = new Thread(this::work, "mailman-" + i);
+            started[i].setDaemon(true);
+            started[i].start();
+        }
+        mailmen = started;
+    }
+
+    /**
+     * Lets the mailmen deliver all queued mails and stops them. Afterwards mails are delivered right away again.
+     * The mailmen are cleared first, so a mail dispatched meanwhile is either delivered right away, or queued and
+     * then drained by its sender, by a mailman or by the final drain here.
+     * @throws InterruptedException when the waiting is interrupted
+     */
+    synchronized void stop() throws InterruptedException {
+        Thread[] stopped = mailmen;
+        if (stopped == null) {
+            return;
+        }
+        mailmen = null;
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        for (Thread mailman : stopped) {
+            mailman.join();
+        }
+        drain();
+    }
+
+    /**
+     * The work of one mailman: deliver the most urgent batch until stopped and all queues are empty.
+     */
+    private void work() {
+        int[] batchMails = new int[LETTER_BATCH];
+        long[] batchTimes = new long[LETTER_BATCH];
+        int[] parcelMails = new int[PARCEL_BATCH];
+        long[] parcelTimes = new long[PARCEL_BATCH];
+        while (true) {
+            long seen;
+            synchronized (signal) {
+                seen = queuedMails;
+            }
+            boolean stopping = !running;
+            long now = System.nanoTime();
+            PostalService next = null;
+            long wait = PARCEL_WAIT;
+            for (PostalService ps : DELIVERY_ORDER) {
+                DeliveryQueue queue = queues[ps.ordinal()];
+                if (!ps.isParcel() || stopping || queue.size() >= PARCEL_BATCH || now - queue.oldest() >= PARCEL_WAIT) {
+                    if (queue.size() > 0) {
+                        next = ps;
+                        break;
+                    }
+                } else if (queue.size() > 0) {
+                    wait = Math.min(wait, PARCEL_WAIT - (now - queue.oldest()));
+                }
+            }
+            if (next == null) {
+                if (stopping && isEmpty()) {
+                    return;
+                }
+                idle(seen, wait);
+                continue;
+            }
+            int[] mails = next.isParcel() ? parcelMails : batchMails;
+            long[] times = next.isParcel() ? parcelTimes : batchTimes;
+            int count = queues[next.ordinal()].poll(mails, times);
+            for (int i = 0; i < count; i++) {
+                receiver.accept(mails[i]);
+                record(next, System.nanoTime() - times[i]);
+            }
+        }
+    }
+
+    /**
+     * Delivers all queued mails on the calling thread, most urgent postal service first.
+     */
+    private void drain() {
+        int[] mails = new int[LETTER_BATCH];
+        long[] times = new long[LETTER_BATCH];
+        for (PostalService ps : DELIVERY_ORDER) {
+            int count;
+            while ((count = queues[ps.ordinal()].poll(mails, times)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    receiver.accept(mails[i]);
+                    record(ps, System.nanoTime() - times[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until a mail is queued or the time is over.
+     * @param seen the number of queued mails when the mailman last looked at the queues
+     * @param nanos the longest time to wait in nanoseconds
+     */
+    private void idle(long seen, long nanos) {
+        synchronized (signal) {
+            if (running && queuedMails == seen) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(signal, Math.max(nanos, 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if all queues are empty.
+     * @return true if no mail is queued, otherwise false
+     */
+    private boolean isEmpty() {
+        for (DeliveryQueue queue : queues) {
+            if (queue.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the latency of a delivered mail.
+     * @param postalService the postal service of the mail
+     * @param nanos the time from sending to delivery in nanoseconds
+     */
+    void record(PostalService postalService, long nanos) {
+        int index = postalService.ordinal();
+        delivered.incrementAndGet(index);
+        latency.addAndGet(index, nanos);
+        long max = maxLatency.get(index);
+        while (nanos > max && !maxLatency.compareAndSet(index, max, nanos)) {
+            max = maxLatency.get(index);
+        }
+    }
+
+    /**
+     * Gives out the queue depth, the number of delivered mails and the delivery latency per postal service.
+     * @return one line per postal service
+     */
+    String getReport() {
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
+        for (PostalService ps : DELIVERY_ORDER) {
+            int index = ps.ordinal();
+            long count = delivered.get(index);
+            double average = (count == 0) ? 0.0 : latency.get(index) / 1e6 / count;
+            lines.add(String.format(Locale.US, "%s;%d;%d;%.3f;%.3f", ps.getPostalService(), queues[index].size(),
+                    count, average, maxLatency.get(index) / 1e6));
+        }
+        return lines.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package edu.kit.kastel;
+
+/**
+ * This class is the first in first out queue of the mails of one postal service that wait for delivery.
+ * It is a growing ring of mail IDs and the times they were queued.
+ * @author unweb
+ */
+final class DeliveryQueue {
+    /**
+     * The queued mail IDs.
+     */
+    private int[] mails = new int[16];
+    /**
+     * The times the mails were queued in nanoseconds.
+     */
+    private long[] queuedAt = new long[16];
+    /**
+     * The index of the oldest mail.
+     */
+    private int head;
+    /**
+     * The number of queued mails.
+     */
+    private int size;
+
+    /**
+     * Queues a mail.
+     * @param mail the ID of the mail
+     * @param now the current time in nanoseconds
+     */
+    synchronized void add(int mail, long now) {
+        if (size == mails.length) {
+            int[] grownMails = new int[size * 2];
+            long[] grownTimes = new long[size * 2];
+            for (int i = 0; i < size; i++) {
+                grownMails[i] = mails[(head + i) % mails.length];
+                grownTimes[i] = queuedAt[(head + i) % mails.length];
+            }
+            mails = grownMails;
+            queuedAt = grownTimes;
+            head = 0;
+        }
+        int tail = (head + size) % mails.length;
+        mails[tail] = mail;
+        queuedAt[tail] = now;
+        size++;
+    }
+
+    /**
+     * Queues mails with consecutive IDs.
+     * @param first the ID of the first mail
+     * @param count the number of mails
+     * @param now the current time in nanoseconds
+     */
+    synchronized void addAll(int first, int count, long now) {
+        for (int i = 0; i < count; i++) {
+            add(first + i, now);
+        }
+    }
+
+    /**
+     * Takes the oldest mails out of the queue.
+     * @param batchMails the array for the taken mail IDs
+     * @param batchTimes the array for the times the taken mails were queued
+     * @return the number of taken mails
+     */
+    synchronized int poll(int[] batchMails, long[] batchTimes) {
+        int count = Math.min(size, batchMails.length);
+        for (int i = 0; i < count; i++) {
+            batchMails[i] = mails[head];
+            batchTimes[i] = queuedAt[head];
+            head = (head + 1) % mails.length;
+        }
+        size -= count;
+        return count;
+    }
+
+    /**
+     * A getter for the time the oldest mail was queued.
+     * @return the time in nanoseconds, {@link Long#MAX_VALUE} when the queue is empty
+     */
+    synchronized long oldest() {
+        return (size == 0) ? Long.MAX_VALUE : queuedAt[head];
+    }
+
+    /**
+     * A getter for the number of queued mails.
+     * @return the number of queued mails
+     */
+    synchronized int size() {
+        return size;
+    }
+}
@@ -79,7 +79,15 @@ public enum Error {
     /**
      * The identification number is incorrect.
      */
-    INCORRECT_IDNUMBER("Error, the identification number is wrong!");
+    INCORRECT_IDNUMBER("Error, the identification number is wrong!"),
+    /**
+     * The username or the password is incorrect, the message is completed with both.
+     */
+    INCORRECT_LOGIN("Error, %s and %s is not correct!"),
+    /**
+     * The server has reached its maximal number of connections.
+     */
+    TOO_MANY_CONNECTIONS("Error, there are too many connections at the moment!");
     /**
      * Error message.
      */
@@ -0,0 +1,293 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class publishes the state changes of the post office to in-process consumers over a ring of preallocated
+ * {@link ChangeEvent} slots, without locks. A publisher claims the next sequence with one atomic add, fills the slot
+ * and marks it available with the round of the sequence. Every consumer runs on its own thread and follows the ring
+ * with its own sequence: it takes everything that is available in one batch and moves its sequence once per batch.
+ * A publisher only waits when the ring is full, that is when the slowest consumer is a whole ring behind.
+ * A publisher never wakes a consumer: an idle consumer spins briefly and then parks for a millisecond,
+ * so it sees an event about a millisecond late at most, and the batches it takes stay large.
+ * @author unweb
+ */
+final class EventBus {
+    /**
+     * The default number of slots of the ring.
+     */
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    /**
+     * The number of empty polls a consumer spins before it parks.
+     */
+    private static final int SPINS = 100;
+    /**
+     * The time an idle consumer parks in nanoseconds.
+     */
+    private static final long IDLE_NANOS = 1_000_000;
+    /**
+     * Publishes the round of a slot after the slot is filled.
+     */
+    private static final VarHandle ROUNDS = MethodHandles.arrayElementVarHandle(int[].class);
+    /**
+     * The slots.
+     */
+    private final ChangeEvent[] ring;
+    /**
+     * The round of the event in each slot, the sequence divided by the capacity, -1 before the first event.
+     */
+    private final int[] rounds;
+    /**
+     * The mask of the index of a slot.
+     */
+    private final int mask;
+    /**
+     * The number of bits of the index of a slot.
+     */
+    private final int shift;
+    /**
+     * The highest claimed sequence.
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /**
+     * The threads of the consumers.
+     */
+    private final List<Thread> processors = new ArrayList<>();
+    /**
+     * The sequences of the consumers, {@link Long#MAX_VALUE} for a consumer that has failed.
+     */
+    private volatile AtomicLong[] gates = new AtomicLong[0];
+    /**
+     * The lowest sequence of the consumers seen last, so a publisher rarely reads the sequences.
+     */
+    private volatile long gateCache = -1;
+    /**
+     * Whether the consumers keep following the ring.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Constructor of the class.
+     * @param capacity the number of slots, a power of two
+     */
+    EventBus(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("the capacity must be a power of two");
+        }
+        ring = new ChangeEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new ChangeEvent();
+        }
+        rounds = new int[capacity];
+        Arrays.fill(rounds, -1);
+        mask = capacity - 1;
+        shift = Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Starts a consumer, which gets every event published from now on.
+     * @param consumer the consumer
+     */
+    synchronized void subscribe(EventConsumer consumer) {
+        AtomicLong gate = new AtomicLong(cursor.get());
+        AtomicLong[] grown = Arrays.copyOf(gates, gates.length + 1);
+        grown[gates.length] = gate;
+        gates = grown;
+        processors.add(Thread.ofPlatform().name("events-" + processors.size()).daemon()
+                .start(() -> process(consumer, gate)));
+    }
+
+    /**
+     * Publishes a sent mail.
+     * @param mail the ID of the mail
+     * @param sender the ID of the sender
+     * @param receiver the ID of the receiver
+     * @param postalService the postal service
+     */
+    void mailSent(int mail, int sender, int receiver, PostalService postalService) {
+        long sequence = claim(1);
+        ring[(int) sequence & mask].mailSent(System.currentTimeMillis(), mail, sender, receiver, postalService);
+        publish(sequence, sequence);
+    }
+
+    /**
+     * Publishes mails with consecutive IDs of one sender, claiming the slots of a whole chunk at once.
+     * @param first the ID of the first mail
+     * @param sender the ID of the sender
+     * @param receivers the IDs of the receivers by mail
+     * @param postalService the postal service
+     */
+    void mailsSent(int first, int sender, int[] receivers, PostalService postalService) {
+        long time = System.currentTimeMillis();
+        for (int done = 0; done < receivers.length;) {
+            int count = Math.min(receivers.length - done, ring.length);
+            long last = claim(count);
+            long start = last - count + 1;
+            for (int i = 0; i < count; i++) {
+                ring[(int) (start + i) & mask].mailSent(time, first + done + i, sender, receivers[done + i],
+                        postalService);
+            }
+            publish(start, last);
+            done += count;
+        }
+    }
+
+    /**
+     * Publishes collected or acknowledged mails.
+     * @param customer the ID of the customer
+     * @param count the number of mails
+     */
+    void mailCollected(int customer, int count) {
+        long sequence = claim(1);
+        ring[(int) sequence & mask].mailCollected(System.currentTimeMillis(), customer, count);
+        publish(sequence, sequence);
+    }
+
+    /**
+     * Publishes an added customer.
+     * @param customer the ID of the customer
+     * @param username the username
+     */
+    void customerAdded(int customer, String username) {
+        long sequence = claim(1);
+        ring[(int) sequence & mask].customerAdded(System.currentTimeMillis(), customer, username);
+        publish(sequence, sequence);
+    }
+
+    /**
+     * Publishes a reset PIN.
+     * @param customer the ID of the customer
+     */
+    void pinReset(int customer) {
+        long sequence = claim(1);
+        ring[(int) sequence & mask].pinReset(System.currentTimeMillis(), customer);
+        publish(sequence, sequence);
+    }
+
+    /**
+     * A getter for the number of published events.
+     * @return the number of claimed sequences
+     */
+    long getPublished() {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * Lets the consumers process all published events and stops them. Must be called after the last publication.
+     * @return the report of the bus
+     */
+    synchronized String close() {
+        running = false;
+        for (Thread processor : processors) {
+            try {
+                processor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return "events: " + getPublished() + " published to " + processors.size() + " consumers";
+    }
+
+    /**
+     * Claims the next sequences and waits while the ring is full.
+     * @param count the number of sequences, at most the capacity
+     * @return the last claimed sequence
+     */
+    private long claim(int count) {
+        long last = cursor.addAndGet(count);
+        long wrapPoint = last - ring.length;
+        if (wrapPoint > gateCache) {
+            long lowest;
+            while (wrapPoint > (lowest = lowestGate(last))) {
+                Thread.yield();
+            }
+            gateCache = lowest;
+        }
+        return last;
+    }
+
+    /**
+     * Marks filled slots available to the consumers.
+     * @param first the first sequence
+     * @param last the last sequence
+     */
+    private void publish(long first, long last) {
+        for (long sequence = first; sequence <= last; sequence++) {
+            ROUNDS.setRelease(rounds, (int) sequence & mask, (int) (sequence >>> shift));
+        }
+    }
+
+    /**
+     * Finds the lowest sequence of the consumers.
+     * @param last the value when there are no consumers
+     * @return the lowest sequence
+     */
+    private long lowestGate(long last) {
+        long lowest = last;
+        for (AtomicLong gate : gates) {
+            lowest = Math.min(lowest, gate.get());
+        }
+        return lowest;
+    }
+
+    /**
+     * Finds the end of the available events, which may have gaps where a publisher has not finished its slot.
+     * @param first the first sequence to check
+     * @param last the last claimed sequence
+     * @return the highest sequence up to which all events are available, first - 1 when there is none
+     */
+    private long available(long first, long last) {
+        for (long sequence = first; sequence <= last; sequence++) {
+            if ((int) ROUNDS.getAcquire(rounds, (int) sequence & mask) != (int) (sequence >>> shift)) {
+                return sequence - 1;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Runs a consumer until the bus is closed or the consumer fails.
+     * @param consumer the consumer
+     * @param gate the sequence of the consumer
+     */
+    private void process(EventConsumer consumer, AtomicLong gate) {
+        long next = gate.get() + 1;
+        int idle = 0;
+        try {
+            while (true) {
+                boolean stopping = !running;
+                long last = available(next, cursor.get());
+                if (last >= next) {
+                    for (long sequence = next; sequence <= last; sequence++) {
+                        consumer.onEvent(ring[(int) sequence & mask], sequence, sequence == last);
+                    }
+                    gate.setRelease(last);
+                    next = last + 1;
+                    idle = 0;
+                } else if (stopping) {
+                    return;
+                } else if (++idle < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("events: consumer failed: " + e.getMessage());
+        } finally {
+            gate.set(Long.MAX_VALUE);
+            try {
+                consumer.onShutdown();
+            } catch (IOException e) {
+                System.err.println("events: consumer failed: " + e.getMessage());
+            }
+        }
+    }
+}
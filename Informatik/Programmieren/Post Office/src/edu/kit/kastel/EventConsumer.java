@@ -0,0 +1,27 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+
+/**
+ * A consumer of the state changes published to the {@link EventBus}. Every consumer runs on its own thread
+ * and gets all events in the order of the ring, in batches of everything that has been published meanwhile.
+ * @author unweb
+ */
+public interface EventConsumer {
+    /**
+     * Processes one event. The event is only valid during the call.
+     * @param event the event
+     * @param sequence the position of the event in the ring
+     * @param endOfBatch true if it is the last event that is available right now, e.g. to flush
+     * @throws IOException when the event cannot be written, then the consumer is dropped
+     */
+    void onEvent(ChangeEvent event, long sequence, boolean endOfBatch) throws IOException;
+
+    /**
+     * Is called once after the last event, when the bus is closed or the consumer has failed.
+     * @throws IOException when the consumer cannot be closed
+     */
+    default void onShutdown() throws IOException {
+
+    }
+}
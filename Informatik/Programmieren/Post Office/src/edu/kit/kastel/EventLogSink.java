@@ -0,0 +1,182 @@
+package edu.kit.kastel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is a consumer of the {@link EventBus} that appends every event to a compact binary log.
+ * The log starts with a magic number and the version, every run of the post office starts with a run marker.
+ * A record is the ordinal of the kind, the time as zigzag variable-length delta to the previous record of the run,
+ * and the fields of the kind as variable-length ints: mail, sender, receiver and the ordinal of the postal service
+ * for a sent mail, customer and number of mails for collected mails, customer and username for an added customer,
+ * customer for a reset PIN. The log is flushed at the end of every batch.
+ * @author unweb
+ */
+final class EventLogSink implements EventConsumer {
+    /**
+     * The first bytes of every log.
+     */
+    private static final int MAGIC = 0x504F4556;
+    /**
+     * The version of the format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * The byte that starts a run.
+     */
+    private static final int RUN_MARKER = 0xFF;
+    /**
+     * The size of the buffer of the log.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * All postal services by ordinal.
+     */
+    private static final PostalService[] POSTAL_SERVICES = PostalService.values();
+    /**
+     * The log.
+     */
+    private final DataOutputStream output;
+    /**
+     * The time of the previous record in milliseconds since the epoch, 0 at the start of a run.
+     */
+    private long previousTime;
+
+    /**
+     * Constructor of the class.
+     * @param file the log, created if it does not exist, otherwise appended to
+     * @throws IOException when the log cannot be opened
+     */
+    EventLogSink(Path file) throws IOException {
+        boolean created = !Files.exists(file) || Files.size(file) == 0;
+        output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND), BUFFER_SIZE));
+        if (created) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+        }
+        output.write(RUN_MARKER);
+        output.flush();
+    }
+
+    @Override
+    public void onEvent(ChangeEvent event, long sequence, boolean endOfBatch) throws IOException {
+        output.write(event.getType().ordinal());
+        long delta = event.getTime() - previousTime;
+        writeVarLong((delta << 1) ^ (delta >> (Long.SIZE - 1)));
+        previousTime = event.getTime();
+        switch (event.getType()) {
+            case MAIL_SENT -> {
+                writeVarLong(event.getMail());
+                writeVarLong(event.getCustomer());
+                writeVarLong(event.getReceiver());
+                output.write(event.getPostalService().ordinal());
+            }
+            case MAIL_COLLECTED -> {
+                writeVarLong(event.getCustomer());
+                writeVarLong(event.getCount());
+            }
+            case CUSTOMER_ADDED -> {
+                writeVarLong(event.getCustomer());
+                output.writeUTF(event.getUsername());
+            }
+            case PIN_RESET -> writeVarLong(event.getCustomer());
+            default -> throw new IllegalStateException("unknown event " + event.getType());
+        }
+        if (endOfBatch) {
+            output.flush();
+        }
+    }
+
+    @Override
+    public void onShutdown() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Reads a log and hands every event to a consumer, e.g. to rebuild a downstream system.
+     * @param file the log
+     * @param consumer the consumer, the last event of the log is the end of the only batch
+     * @return the number of events
+     * @throws IOException when the log cannot be read or is not a log of events
+     */
+    static long replay(Path file, EventConsumer consumer) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                BUFFER_SIZE))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("not an event log: " + file);
+            }
+            ChangeEvent event = new ChangeEvent();
+            long sequence = -1;
+            long time = 0;
+            int next = input.read();
+            while (next >= 0) {
+                int type = next;
+                next = input.read();
+                if (type == RUN_MARKER) {
+                    time = 0;
+                    continue;
+                }
+                long zigzag = readVarLong(input, next);
+                time += (zigzag >>> 1) ^ -(zigzag & 1);
+                switch (ChangeType.of(type)) {
+                    case MAIL_SENT -> event.mailSent(time, (int) readVarLong(input, input.read()),
+                            (int) readVarLong(input, input.read()), (int) readVarLong(input, input.read()),
+                            POSTAL_SERVICES[input.readUnsignedByte()]);
+                    case MAIL_COLLECTED -> event.mailCollected(time, (int) readVarLong(input, input.read()),
+                            (int) readVarLong(input, input.read()));
+                    case CUSTOMER_ADDED -> event.customerAdded(time, (int) readVarLong(input, input.read()),
+                            input.readUTF());
+                    case PIN_RESET -> event.pinReset(time, (int) readVarLong(input, input.read()));
+                    default -> throw new IOException("unknown event " + type);
+                }
+                next = input.read();
+                consumer.onEvent(event, ++sequence, next < 0);
+            }
+            return sequence + 1;
+        }
+    }
+
+    /**
+     * Writes a non-negative long in seven bit groups, the highest bit marks a following group.
+     * @param value the value
+     * @throws IOException when the log cannot be written
+     */
+    private void writeVarLong(long value) throws IOException {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            output.write((int) (rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        output.write((int) rest);
+    }
+
+    /**
+     * Reads a long written in seven bit groups.
+     * @param input the log
+     * @param first the first byte, already read
+     * @return the value
+     * @throws IOException when the log ends inside the value
+     */
+    private static long readVarLong(DataInputStream input, int first) throws IOException {
+        long value = 0;
+        int shift = 0;
+        for (int next = first;; next = input.read()) {
+            if (next < 0) {
+                throw new EOFException("truncated event log");
+            }
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package edu.kit.kastel;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is one lane of the {@link CommandScheduler}: a fixed number of slots that run commands at the same time.
+ * When all slots are busy, the commands wait and are let in by start-time fair queuing: every command is tagged with
+ * the virtual time it may start, the later of the current virtual time and the finish tag of the previous command of
+ * its session, and the waiting command with the earliest tag gets the next free slot. A session that keeps the lane
+ * busy thereby runs ahead of the virtual time and falls behind every session that only sends a command now and then.
+ * @author unweb
+ */
+final class FairLane {
+    /**
+     * The virtual duration of a command of a session with weight 1.
+     */
+    private static final long COST = 1 << 16;
+    /**
+     * Guards the slots, the waiting commands and the virtual time.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * The waiting commands by start tag, then by arrival.
+     */
+    private final PriorityQueue<SessionFlow> waiting = new PriorityQueue<>(
+            Comparator.comparingLong(SessionFlow::getStart).thenComparingLong(SessionFlow::getSequence));
+    /**
+     * The index of the lane.
+     */
+    private final int index;
+    /**
+     * The number of slots.
+     */
+    private int slots;
+    /**
+     * The number of free slots, negative while the lane shrinks.
+     */
+    private int free;
+    /**
+     * The virtual time, the start tag of the command that got a slot last.
+     */
+    private long virtualTime;
+    /**
+     * The number of commands that have entered the lane.
+     */
+    private long arrivals;
+
+    /**
+     * Constructor of the class.
+     * @param index the index of the lane
+     * @param slots the number of slots
+     */
+    FairLane(int index, int slots) {
+        this.index = index;
+        this.slots = slots;
+        this.free = slots;
+    }
+
+    /**
+     * Changes the number of slots. Busy slots are taken away when their commands leave.
+     * @param slots the number of slots, at least 1
+     */
+    void setSlots(int slots) {
+        lock.lock();
+        try {
+            free += slots - this.slots;
+            this.slots = slots;
+            while (free > 0 && !waiting.isEmpty()) {
+                free--;
+                admit(waiting.poll());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a slot for the current command of a session.
+     * @param flow the session
+     * @param weight the weight of the session, a session with twice the weight gets twice the slots
+     */
+    void enter(SessionFlow flow, int weight) {
+        lock.lock();
+        try {
+            long start = Math.max(virtualTime, flow.getFinish(index));
+            flow.schedule(index, start, COST / weight, arrivals++);
+            if (free > 0 && waiting.isEmpty()) {
+                free--;
+                virtualTime = start;
+                return;
+            }
+            waiting.add(flow);
+        } finally {
+            lock.unlock();
+        }
+        flow.await(this);
+    }
+
+    /**
+     * Gives the slot of a finished command to the waiting command with the earliest start tag.
+     */
+    void leave() {
+        lock.lock();
+        try {
+            SessionFlow next = (free < 0) ? null : waiting.poll();
+            if (next == null) {
+                free++;
+            } else {
+                admit(next);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets a waiting command into a slot. Must be called under the lock.
+     * @param flow the session of the command
+     */
+    private void admit(SessionFlow flow) {
+        virtualTime = flow.getStart();
+        flow.grant();
+    }
+}
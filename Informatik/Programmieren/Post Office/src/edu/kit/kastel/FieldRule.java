@@ -0,0 +1,91 @@
+package edu.kit.kastel;
+
+/**
+ * This enum contains the format rules of all fields given to the post office.
+ * Each rule is declared once as a first character class, a character class for the rest and a length range,
+ * so checking a field scans its code points once without allocating anything.
+ * @author unweb
+ */
+enum FieldRule {
+    /**
+     * First name, like [^;\n\r]+.
+     */
+    FIRST_NAME(CharacterClass.NO_SEMICOLON, CharacterClass.NO_SEMICOLON, 1, Integer.MAX_VALUE, Error.INVALID_FIRSTNAME),
+    /**
+     * Last name, like [^;\n\r]+.
+     */
+    LAST_NAME(CharacterClass.NO_SEMICOLON, CharacterClass.NO_SEMICOLON, 1, Integer.MAX_VALUE, Error.INVALID_LASTNAME),
+    /**
+     * Username of a customer, like [a-zA-Z0-9]{4,9}.
+     */
+    USERNAME(CharacterClass.ALPHANUMERIC, CharacterClass.ALPHANUMERIC, 4, 9, Error.INVALID_USERNAME),
+    /**
+     * Password, like [^;\n\r]{4,9}.
+     */
+    PASSWORD(CharacterClass.NO_SEMICOLON, CharacterClass.NO_SEMICOLON, 4, 9, Error.INVALID_PASSWORD),
+    /**
+     * Identification number of a customer, like [^,\n\r]{9}.
+     */
+    ID_NUMBER(CharacterClass.NO_COMMA, CharacterClass.NO_COMMA, 9, 9, Error.INVALID_IDNUMBER),
+    /**
+     * Personal number of a mailman or an agent, like [1-9][0-9]*.
+     */
+    PERSONAL_NUMBER(CharacterClass.NON_ZERO_DIGIT, CharacterClass.DIGIT, 1, Integer.MAX_VALUE, Error.INVALID_PERSONALNUMBER);
+
+    /**
+     * The class of the first character.
+     */
+    private final CharacterClass first;
+    /**
+     * The class of all following characters.
+     */
+    private final CharacterClass rest;
+    /**
+     * The minimal number of characters.
+     */
+    private final int minLength;
+    /**
+     * The maximal number of characters.
+     */
+    private final int maxLength;
+    /**
+     * The error of a field that breaks this rule.
+     */
+    private final Error error;
+
+    /**
+     * Constructor.
+     * @param first the class of the first character
+     * @param rest the class of all following characters
+     * @param minLength the minimal number of characters
+     * @param maxLength the maximal number of characters
+     * @param error the error of a field that breaks this rule
+     */
+    FieldRule(CharacterClass first, CharacterClass rest, int minLength, int maxLength, Error error) {
+        this.first = first;
+        this.rest = rest;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.error = error;
+    }
+
+    /**
+     * Checks a field against this rule.
+     * Characters are counted as code points, the same way the regular expressions of the rules do.
+     * @param field the field
+     * @return null if the field is valid, otherwise the error of this rule
+     */
+    Error check(String field) {
+        int length = 0;
+        int index = 0;
+        while (index < field.length()) {
+            int codePoint = field.codePointAt(index);
+            CharacterClass characterClass = (length == 0) ? first : rest;
+            if (!characterClass.contains(codePoint) || ++length > maxLength) {
+                return error;
+            }
+            index += Character.charCount(codePoint);
+        }
+        return (length < minLength) ? error : null;
+    }
+}
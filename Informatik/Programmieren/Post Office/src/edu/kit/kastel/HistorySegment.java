@@ -0,0 +1,360 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is a memory-mapped file of one cold chunk of delivered mails.
+ * The file holds the mail rows by ID in bit-packed columns: each column stores the distance of every value
+ * to the smallest value of the chunk with just as many bits as the largest distance needs, so a single mail is
+ * still read at a fixed bit offset. The mails are also sorted by sender: an index of the senders, sorted for
+ * binary search, points to the mail IDs of each sender, which are compressed as variable-length deltas.
+ * @author unweb
+ */
+final class HistorySegment {
+    /**
+     * The first bytes of every segment.
+     */
+    private static final int MAGIC = 0x504F4853;
+    /**
+     * The version of the format.
+     */
+    private static final int VERSION = 2;
+    /**
+     * The number of bytes of the header: magic, version, first mail, number of mails, number of senders,
+     * the smallest sender and its bit width, the smallest receiver and its bit width
+     * and the bit width of the postal services.
+     */
+    private static final int HEADER_SIZE = 10 * Integer.BYTES;
+    /**
+     * The number of bytes of an index entry: sender, offset and number of mails.
+     */
+    private static final int INDEX_SIZE = 3 * Integer.BYTES;
+    /**
+     * The mapped file.
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * The ID of the first mail.
+     */
+    private final int first;
+    /**
+     * The number of senders.
+     */
+    private final int senders;
+    /**
+     * The smallest sender.
+     */
+    private final int senderBase;
+    /**
+     * The number of bits of a sender.
+     */
+    private final int senderWidth;
+    /**
+     * The smallest receiver.
+     */
+    private final int receiverBase;
+    /**
+     * The number of bits of a receiver.
+     */
+    private final int receiverWidth;
+    /**
+     * The number of bits of a postal service.
+     */
+    private final int serviceWidth;
+    /**
+     * The offset of the receiver column.
+     */
+    private final int receiverOffset;
+    /**
+     * The offset of the postal service column.
+     */
+    private final int serviceOffset;
+    /**
+     * The offset of the index.
+     */
+    private final int indexOffset;
+
+    /**
+     * Constructor of the class.
+     * @param buffer the mapped file in little-endian order
+     */
+    private HistorySegment(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.first = buffer.getInt(2 * Integer.BYTES);
+        int count = buffer.getInt(3 * Integer.BYTES);
+        this.senders = buffer.getInt(4 * Integer.BYTES);
+        this.senderBase = buffer.getInt(5 * Integer.BYTES);
+        this.senderWidth = buffer.getInt(6 * Integer.BYTES);
+        this.receiverBase = buffer.getInt(7 * Integer.BYTES);
+        this.receiverWidth = buffer.getInt(8 * Integer.BYTES);
+        this.serviceWidth = buffer.getInt(9 * Integer.BYTES);
+        this.receiverOffset = HEADER_SIZE + packedSize(count, senderWidth);
+        this.serviceOffset = receiverOffset + packedSize(count, receiverWidth);
+        this.indexOffset = serviceOffset + packedSize(count, serviceWidth);
+    }
+
+    /**
+     * Writes the mails of a chunk to a segment file and maps it.
+     * A temporary file that cannot be completed is deleted.
+     * @param file the segment file
+     * @param first the ID of the first mail
+     * @param senderIds the IDs of the senders by mail
+     * @param receiverIds the IDs of the receivers by mail
+     * @param postalServices the ordinals of the postal services by mail
+     * @return the mapped segment
+     * @throws IOException when the file cannot be written
+     */
+    static HistorySegment write(Path file, int first, int[] senderIds, int[] receiverIds, byte[] postalServices)
+            throws IOException {
+        int count = senderIds.length;
+        long[] bySender = new long[count];
+        for (int i = 0; i < count; i++) {
+            bySender[i] = ((long) senderIds[i] << Integer.SIZE) | i;
+        }
+        Arrays.sort(bySender);
+        int senderCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || (int) (bySender[i] >>> Integer.SIZE) != (int) (bySender[i - 1] >>> Integer.SIZE)) {
+                senderCount++;
+            }
+        }
+        byte[] lists = new byte[count * 5];
+        int[] index = new int[senderCount * 3];
+        int length = 0;
+        int entry = -3;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int sender = (int) (bySender[i] >>> Integer.SIZE);
+            int mail = (int) bySender[i];
+            if (entry < 0 || index[entry] != sender) {
+                entry += 3;
+                index[entry] = sender;
+                index[entry + 1] = length;
+                previous = 0;
+            }
+            index[entry + 2]++;
+            length = writeVarInt(lists, length, mail - previous);
+            previous = mail;
+        }
+        int[] services = new int[count];
+        for (int i = 0; i < count; i++) {
+            services[i] = postalServices[i];
+        }
+        int senderBase = min(senderIds);
+        int senderWidth = width(senderIds, senderBase);
+        int receiverBase = min(receiverIds);
+        int receiverWidth = width(receiverIds, receiverBase);
+        int serviceWidth = width(services, 0);
+        int receiverOffset = HEADER_SIZE + packedSize(count, senderWidth);
+        int serviceOffset = receiverOffset + packedSize(count, receiverWidth);
+        int indexOffset = serviceOffset + packedSize(count, serviceWidth);
+        int size = indexOffset + senderCount * INDEX_SIZE + length;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer output = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            output.order(ByteOrder.LITTLE_ENDIAN);
+            output.putInt(MAGIC).putInt(VERSION).putInt(first).putInt(count).putInt(senderCount)
+                    .putInt(senderBase).putInt(senderWidth).putInt(receiverBase).putInt(receiverWidth).putInt(serviceWidth);
+            pack(output, HEADER_SIZE, senderIds, senderBase, senderWidth);
+            pack(output, receiverOffset, receiverIds, receiverBase, receiverWidth);
+            pack(output, serviceOffset, services, 0, serviceWidth);
+            output.position(indexOffset);
+            for (int value : index) {
+                output.putInt(value);
+            }
+            output.put(lists, 0, length);
+            output.force();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file, first, count);
+    }
+
+    /**
+     * Maps an existing segment file.
+     * @param file the segment file
+     * @param first the ID of the first mail the segment must start with
+     * @param count the number of mails the segment must hold
+     * @return the mapped segment
+     * @throws IOException when the file cannot be read or is malformed
+     */
+    static HistorySegment open(Path file, int first, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("malformed history segment " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION
+                    || buffer.getInt(2 * Integer.BYTES) != first || buffer.getInt(3 * Integer.BYTES) != count) {
+                throw new IOException("malformed history segment " + file);
+            }
+            return new HistorySegment(buffer);
+        }
+    }
+
+    /**
+     * A getter for the sender of a mail.
+     * @param index the index of the mail in the segment
+     * @return the ID of the sender
+     */
+    int getSender(int index) {
+        return senderBase + unpack(HEADER_SIZE, index, senderWidth);
+    }
+
+    /**
+     * A getter for the receiver of a mail.
+     * @param index the index of the mail in the segment
+     * @return the ID of the receiver
+     */
+    int getReceiver(int index) {
+        return receiverBase + unpack(receiverOffset, index, receiverWidth);
+    }
+
+    /**
+     * A getter for the ordinal of the postal service of a mail.
+     * @param index the index of the mail in the segment
+     * @return the ordinal of the postal service
+     */
+    byte getPostalService(int index) {
+        return (byte) unpack(serviceOffset, index, serviceWidth);
+    }
+
+    /**
+     * Reads a value of a bit-packed column. Every column is followed by a padding of a long,
+     * so the value is always read with a single long.
+     * @param offset the offset of the column
+     * @param index the index of the value
+     * @param width the number of bits of a value
+     * @return the distance of the value to the smallest value of the column
+     */
+    private int unpack(int offset, int index, int width) {
+        long bit = (long) index * width;
+        long word = buffer.getLong(offset + (int) (bit >>> 3));
+        return (int) ((word >>> (bit & 7)) & ((1L << width) - 1));
+    }
+
+    /**
+     * Appends the IDs of the mails of a sender to a list.
+     * @param sender the ID of the sender
+     * @param mails the list
+     */
+    void collectSent(int sender, IntList mails) {
+        int low = 0;
+        int high = senders - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = indexOffset + middle * INDEX_SIZE;
+            int current = buffer.getInt(entry);
+            if (current < sender) {
+                low = middle + 1;
+            } else if (current > sender) {
+                high = middle - 1;
+            } else {
+                int position = indexOffset + senders * INDEX_SIZE + buffer.getInt(entry + Integer.BYTES);
+                int mail = 0;
+                for (int i = buffer.getInt(entry + 2 * Integer.BYTES); i > 0; i--) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte next;
+                    do {
+                        next = buffer.get(position++);
+                        delta |= (next & 0x7F) << shift;
+                        shift += 7;
+                    } while (next < 0);
+                    mail += delta;
+                    mails.add(first + mail);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a non-negative int in seven bit groups, the highest bit marks a following group.
+     * @param target the target
+     * @param offset the offset to write at
+     * @param value the value
+     * @return the offset after the value
+     */
+    private static int writeVarInt(byte[] target, int offset, int value) {
+        int position = offset;
+        int rest = value;
+        while (rest >= 0x80) {
+            target[position++] = (byte) (rest | 0x80);
+            rest >>>= 7;
+        }
+        target[position++] = (byte) rest;
+        return position;
+    }
+
+    /**
+     * Writes the distances of values to a base into a bit-packed column of a zeroed buffer.
+     * @param output the buffer in little-endian order
+     * @param offset the offset of the column
+     * @param values the values
+     * @param base the smallest value
+     * @param width the number of bits of a value
+     */
+    private static void pack(MappedByteBuffer output, int offset, int[] values, int base, int width) {
+        long bit = 0;
+        for (int value : values) {
+            int position = offset + (int) (bit >>> 3);
+            long rest = (long) (value - base) << (bit & 7);
+            while (rest != 0) {
+                output.put(position, (byte) (output.get(position) | rest));
+                position++;
+                rest >>>= Byte.SIZE;
+            }
+            bit += width;
+        }
+    }
+
+    /**
+     * Gives out the number of bytes of a bit-packed column including its padding.
+     * @param count the number of values
+     * @param width the number of bits of a value
+     * @return the number of bytes
+     */
+    private static int packedSize(int count, int width) {
+        return (int) (((long) count * width + Byte.SIZE - 1) / Byte.SIZE) + Long.BYTES;
+    }
+
+    /**
+     * Gives out the smallest of non-negative values.
+     * @param values the values
+     * @return the smallest value, 0 when there are no values
+     */
+    private static int min(int[] values) {
+        int min = (values.length == 0) ? 0 : Integer.MAX_VALUE;
+        for (int value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    /**
+     * Gives out the number of bits the largest distance of non-negative values to a base needs.
+     * @param values the values
+     * @param base the smallest value
+     * @return the number of bits
+     */
+    private static int width(int[] values, int base) {
+        int max = base;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(max - base);
+    }
+}
@@ -0,0 +1,158 @@
+package edu.kit.kastel;
+
+/**
+ * This class modelises the inbox of a customer as a growing ring buffer of mail IDs.
+ * Every delivered mail gets the next sequence number of the inbox. A cursor is such a sequence number:
+ * reading a page copies only the mails of the page, and acknowledging up to a cursor only moves the head,
+ * so draining an inbox costs as much as the pages read.
+ * It is not thread safe, the owner has to guard it.
+ * @author unweb
+ */
+final class Inbox implements IntSequence {
+    /**
+     * The initial capacity of an inbox.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+    /**
+     * The mail IDs, the mail with sequence number s is at s modulo the capacity.
+     */
+    private int[] ring = new int[INITIAL_CAPACITY];
+    /**
+     * The sequence number of the oldest unacknowledged mail.
+     */
+    private long head;
+    /**
+     * The sequence number of the next delivered mail.
+     */
+    private long tail;
+
+    /**
+     * Appends a delivered mail.
+     * @param mail the ID of the mail
+     */
+    void add(int mail) {
+        if (tail - head == ring.length) {
+            resize(ring.length * 2);
+        }
+        ring[index(tail)] = mail;
+        tail++;
+    }
+
+    /**
+     * Gives out an unacknowledged mail.
+     * @param index the index counted from the head
+     * @return the ID of the mail
+     */
+    @Override
+    public int get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return ring[index(head + index)];
+    }
+
+    /**
+     * Gives out the number of unacknowledged mails.
+     * @return the number of unacknowledged mails
+     */
+    @Override
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Checks if all mails are acknowledged.
+     * @return true if the inbox is empty, otherwise false
+     */
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * A getter for the sequence number of the oldest unacknowledged mail.
+     * @return the sequence number
+     */
+    long getHead() {
+        return head;
+    }
+
+    /**
+     * Copies the mails of a page.
+     * @param cursor the sequence number to start at, acknowledged mails are skipped
+     * @param mails the target, its length is the size of the page
+     * @return the number of copied mails
+     */
+    int copy(long cursor, int[] mails) {
+        long start = Math.max(cursor, head);
+        int count = (int) Math.max(0, Math.min(mails.length, tail - start));
+        for (int i = 0; i < count; i++) {
+            mails[i] = ring[index(start + i)];
+        }
+        return count;
+    }
+
+    /**
+     * Acknowledges all mails before a cursor.
+     * @param cursor the sequence number of the first mail that stays, at most the next sequence number
+     * @return the number of newly acknowledged mails
+     */
+    int acknowledge(long cursor) {
+        long end = Math.min(cursor, tail);
+        if (end <= head) {
+            return 0;
+        }
+        int count = (int) (end - head);
+        head = end;
+        if (isEmpty() && ring.length > INITIAL_CAPACITY) {
+            ring = new int[INITIAL_CAPACITY];
+        }
+        return count;
+    }
+
+    /**
+     * Acknowledges all mails.
+     * @return the number of newly acknowledged mails
+     */
+    int clear() {
+        return acknowledge(tail);
+    }
+
+    /**
+     * Replaces the inbox with recovered mails.
+     * @param first the sequence number of the first mail
+     * @param mails the IDs of the mails
+     */
+    void restore(long first, int[] mails) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < mails.length) {
+            capacity *= 2;
+        }
+        ring = new int[capacity];
+        head = first;
+        tail = first;
+        for (int mail : mails) {
+            add(mail);
+        }
+    }
+
+    /**
+     * Moves the mails into a ring of another capacity.
+     * @param capacity the new capacity, a power of two of at least the size
+     */
+    private void resize(int capacity) {
+        int[] resized = new int[capacity];
+        for (long sequence = head; sequence < tail; sequence++) {
+            resized[(int) (sequence & (capacity - 1))] = ring[index(sequence)];
+        }
+        ring = resized;
+    }
+
+    /**
+     * Computes the position of a sequence number in the ring.
+     * @param sequence the sequence number
+     * @return the position
+     */
+    private int index(long sequence) {
+        return (int) (sequence & (ring.length - 1));
+    }
+}
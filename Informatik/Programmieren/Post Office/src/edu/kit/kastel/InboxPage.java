@@ -0,0 +1,50 @@
+package edu.kit.kastel;
+
+/**
+ * This class modelises a page of consecutive mails of an inbox.
+ * @author unweb
+ */
+final class InboxPage {
+    /**
+     * The cursor of the first mail of the page.
+     */
+    private final long cursor;
+    /**
+     * The IDs of the mails of the page.
+     */
+    private final int[] mails;
+
+    /**
+     * Constructor of the class.
+     * @param cursor the cursor of the first mail of the page
+     * @param mails the IDs of the mails of the page
+     */
+    InboxPage(long cursor, int[] mails) {
+        this.cursor = cursor;
+        this.mails = mails;
+    }
+
+    /**
+     * A getter for the cursor of the first mail.
+     * @return the cursor
+     */
+    long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * A getter for the IDs of the mails.
+     * @return the IDs of the mails
+     */
+    int[] getMails() {
+        return mails;
+    }
+
+    /**
+     * Checks if the page holds no mail.
+     * @return true if the page is empty, otherwise false
+     */
+    boolean isEmpty() {
+        return mails.length == 0;
+    }
+}
@@ -0,0 +1,90 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+
+/**
+ * This class modelises a growing list of primitive ints.
+ * It is not thread safe, the owner has to guard it.
+ * @author unweb
+ */
+final class IntList implements IntSequence {
+    /**
+     * The initial capacity of a list.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+    /**
+     * The elements of the list.
+     */
+    private int[] elements = new int[INITIAL_CAPACITY];
+    /**
+     * The number of elements in the list.
+     */
+    private int size;
+
+    /**
+     * Appends an element to the list.
+     * @param element the element
+     */
+    void add(int element) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = element;
+    }
+
+    /**
+     * A getter for an element of the list.
+     * @param index the index of the element
+     * @return the element
+     */
+    @Override
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return elements[index];
+    }
+
+    /**
+     * A getter for the number of elements.
+     * @return the number of elements
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the list is empty.
+     * @return true if the list has no elements, otherwise false
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all elements below a limit and keeps the order of the others.
+     * The memory is released when at most a quarter of the capacity stays in use.
+     * @param limit the smallest element that stays
+     */
+    void removeBelow(int limit) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (elements[i] >= limit) {
+                elements[kept++] = elements[i];
+            }
+        }
+        size = kept;
+        if (size * 4 <= elements.length && elements.length > INITIAL_CAPACITY) {
+            elements = Arrays.copyOf(elements, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+    }
+
+    /**
+     * Removes all elements and releases the memory of the list.
+     */
+    void clear() {
+        elements = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+}
@@ -0,0 +1,20 @@
+package edu.kit.kastel;
+
+/**
+ * This interface is an indexed sequence of primitive ints.
+ * @author unweb
+ */
+interface IntSequence {
+    /**
+     * Gives out an element.
+     * @param index the index of the element
+     * @return the element
+     */
+    int get(int index);
+
+    /**
+     * Gives out the number of elements.
+     * @return the number of elements
+     */
+    int size();
+}
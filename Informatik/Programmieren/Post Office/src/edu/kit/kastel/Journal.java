@@ -0,0 +1,499 @@
+package edu.kit.kastel;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * This class is the append only binary journal of all state changing operations of the post office.
+ * Every record is framed by its length and a checksum. Records are collected in memory and written
+ * with group commit: the first session that waits for its record writes and forces all collected records,
+ * the other sessions only wait for it.
+ * @author unweb
+ */
+final class Journal implements Closeable {
+    /**
+     * Record of an added customer.
+     */
+    private static final byte ADD_CUSTOMER = 1;
+    /**
+     * Record of an added mailman.
+     */
+    private static final byte ADD_MAILMAN = 2;
+    /**
+     * Record of an added agent.
+     */
+    private static final byte ADD_AGENT = 3;
+    /**
+     * Record of a sent mail that waits for delivery.
+     */
+    private static final byte SEND_MAIL = 4;
+    /**
+     * Record of collected mails.
+     */
+    private static final byte GET_MAIL = 5;
+    /**
+     * Record of a reset password.
+     */
+    private static final byte RESET_PIN = 6;
+    /**
+     * Record of a mail that has reached the inbox of the receiver.
+     */
+    private static final byte DELIVER_MAIL = 7;
+    /**
+     * Record of acknowledged mails.
+     */
+    private static final byte ACK_MAIL = 8;
+    /**
+     * Record of mails of one sender to many receivers.
+     */
+    private static final byte MULTICAST_MAIL = 9;
+    /**
+     * The number of bytes of the length and the checksum of a record.
+     */
+    private static final int FRAME_SIZE = 8;
+    /**
+     * All postal services by ordinal.
+     */
+    private static final PostalService[] POSTAL_SERVICES = PostalService.values();
+    /**
+     * The file channel of the journal.
+     */
+    private final FileChannel channel;
+    /**
+     * The records that are not written yet.
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /**
+     * The writer of the pending records.
+     */
+    private final DataOutputStream pendingOutput = new DataOutputStream(pending);
+    /**
+     * The record that is being encoded.
+     */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    /**
+     * The writer of the record that is being encoded.
+     */
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    /**
+     * The checksum of the record that is being encoded.
+     */
+    private final CRC32 checksum = new CRC32();
+    /**
+     * The lock of the session that writes and forces the collected records.
+     */
+    private final Object commitLock = new Object();
+    /**
+     * The position where this journal started appending.
+     */
+    private final long startPosition;
+    /**
+     * The end position of all appended records.
+     */
+    private long position;
+    /**
+     * The end position of all durable records.
+     */
+    private volatile long durablePosition;
+    /**
+     * The number of appended records.
+     */
+    private long records;
+    /**
+     * The number of group commits.
+     */
+    private long commits;
+    /**
+     * The time spent writing and forcing in nanoseconds.
+     */
+    private long commitNanos;
+
+    /**
+     * Opens a journal file for appending.
+     * @param file the journal file
+     * @throws IOException when the file cannot be opened
+     */
+    Journal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        position = channel.size();
+        startPosition = position;
+        durablePosition = position;
+        channel.position(position);
+    }
+
+    /**
+     * Appends a record of an added customer.
+     * @param firstName first name
+     * @param lastName last name
+     * @param username username
+     * @param credential the credential
+     * @param idNumber identification number
+     * @return the end position of the record
+     */
+    synchronized long logAddCustomer(String firstName, String lastName, String username, byte[] credential, String idNumber) {
+        try {
+            recordOutput.writeByte(ADD_CUSTOMER);
+            writeString(recordOutput, firstName);
+            writeString(recordOutput, lastName);
+            writeString(recordOutput, username);
+            recordOutput.write(credential);
+            writeString(recordOutput, idNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Appends a record of an added mailman or agent.
+     * @param agent true for an agent, false for a mailman
+     * @param firstName first name
+     * @param lastName last name
+     * @param personalNumber personal number
+     * @param credential the credential
+     * @return the end position of the record
+     */
+    synchronized long logAddStaff(boolean agent, String firstName, String lastName, String personalNumber, byte[] credential) {
+        try {
+            recordOutput.writeByte(agent ? ADD_AGENT : ADD_MAILMAN);
+            writeString(recordOutput, firstName);
+            writeString(recordOutput, lastName);
+            writeString(recordOutput, personalNumber);
+            recordOutput.write(credential);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Appends a record of a sent mail.
+     * @param mail the ID of the mail
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receiver the ID of the receiver
+     * @return the end position of the record
+     */
+    synchronized long logSendMail(int mail, int sender, PostalService postalService, int receiver) {
+        try {
+            recordOutput.writeByte(SEND_MAIL);
+            recordOutput.writeInt(mail);
+            recordOutput.writeInt(sender);
+            recordOutput.writeByte(postalService.ordinal());
+            recordOutput.writeInt(receiver);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Appends a record of mails with consecutive IDs of one sender and one postal service.
+     * @param first the ID of the first mail
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receivers the IDs of the receivers
+     * @return the end position of the record
+     */
+    synchronized long logMulticastMail(int first, int sender, PostalService postalService, int[] receivers) {
+        try {
+            recordOutput.writeByte(MULTICAST_MAIL);
+            recordOutput.writeInt(first);
+            recordOutput.writeInt(sender);
+            recordOutput.writeByte(postalService.ordinal());
+            recordOutput.writeInt(receivers.length);
+            for (int receiver : receivers) {
+                recordOutput.writeInt(receiver);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Appends a record of a mail that has reached the inbox of the receiver.
+     * @param mail the ID of the mail
+     * @return the end position of the record
+     */
+    synchronized long logDeliverMail(int mail) {
+        try {
+            recordOutput.writeByte(DELIVER_MAIL);
+            recordOutput.writeInt(mail);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Appends a record of collected mails.
+     * @param customer the ID of the customer
+     * @return the end position of the record
+     */
+    synchronized long logGetMail(int customer) {
+        try {
+            recordOutput.writeByte(GET_MAIL);
+            recordOutput.writeInt(customer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Appends a record of acknowledged mails.
+     * @param customer the ID of the customer
+     * @param count the number of the oldest mails of the inbox that have been acknowledged
+     * @return the end position of the record
+     */
+    synchronized long logAckMail(int customer, int count) {
+        try {
+            recordOutput.writeByte(ACK_MAIL);
+            recordOutput.writeInt(customer);
+            recordOutput.writeInt(count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Appends a record of a reset password.
+     * @param customer the ID of the customer
+     * @param credential the new credential
+     * @return the end position of the record
+     */
+    synchronized long logResetPin(int customer, byte[] credential) {
+        try {
+            recordOutput.writeByte(RESET_PIN);
+            recordOutput.writeInt(customer);
+            recordOutput.write(credential);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame();
+    }
+
+    /**
+     * Moves the encoded record with its length and checksum to the pending records.
+     * @return the end position of the record
+     */
+    private long frame() {
+        checksum.reset();
+        checksum.update(record.toByteArray());
+        try {
+            pendingOutput.writeInt(record.size());
+            pendingOutput.writeInt((int) checksum.getValue());
+            record.writeTo(pendingOutput);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position += FRAME_SIZE + record.size();
+        record.reset();
+        records++;
+        return position;
+    }
+
+    /**
+     * Waits until all records up to the given position are durable.
+     * When no other session is committing, this session writes and forces all pending records at once.
+     * @param end the end position of the last record to wait for
+     */
+    void awaitDurable(long end) {
+        if (durablePosition >= end) {
+            return;
+        }
+        synchronized (commitLock) {
+            if (durablePosition >= end) {
+                return;
+            }
+            byte[] batch;
+            long batchEnd;
+            synchronized (this) {
+                batch = pending.toByteArray();
+                pending.reset();
+                batchEnd = position;
+            }
+            long start = System.nanoTime();
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            synchronized (this) {
+                commits++;
+                commitNanos += System.nanoTime() - start;
+            }
+            durablePosition = batchEnd;
+        }
+    }
+
+    /**
+     * Makes all appended records durable.
+     */
+    void flush() {
+        long end;
+        synchronized (this) {
+            end = position;
+        }
+        awaitDurable(end);
+    }
+
+    /**
+     * Gives out the write statistics of the journal.
+     * @return the statistics in one line
+     */
+    synchronized String getReport() {
+        double seconds = commitNanos / 1e9;
+        long bytes = position - startPosition;
+        return String.format(Locale.US, "journal: %d records, %d bytes, %d commits, %.1f records/s, %.2f MB/s",
+                records, bytes, commits, (seconds > 0) ? records / seconds : 0.0, (seconds > 0) ? bytes / seconds / 1e6 : 0.0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Applies all complete records of a journal file to the post office.
+     * A torn record at the end of the file is cut off.
+     * @param file the journal file
+     * @param postOffice the post office
+     * @return the number of applied records
+     * @throws IOException when the file cannot be read
+     */
+    static long replay(Path file, PostOffice postOffice) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long applied = 0;
+        long validEnd = 0;
+        long size = Files.size(file);
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream frames = new DataInputStream(input);
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = frames.readInt();
+                    int expected = frames.readInt();
+                    if (length <= 0 || validEnd + FRAME_SIZE + length > size) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    frames.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != expected) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), postOffice);
+                validEnd += FRAME_SIZE + payload.length;
+                applied++;
+            }
+        }
+        if (validEnd < size) {
+            try (FileChannel truncated = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncated.truncate(validEnd);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies one record to the post office.
+     * @param input the payload of the record
+     * @param postOffice the post office
+     * @throws IOException when the record is malformed
+     */
+    private static void apply(DataInputStream input, PostOffice postOffice) throws IOException {
+        byte operation = input.readByte();
+        switch (operation) {
+            case ADD_CUSTOMER -> postOffice.applyAddCustomer(readString(input), readString(input), readString(input),
+                    readCredential(input), readString(input));
+            case ADD_MAILMAN -> postOffice.applyAddMailman(readString(input), readString(input), readString(input), readCredential(input));
+            case ADD_AGENT -> postOffice.applyAddAgent(readString(input), readString(input), readString(input), readCredential(input));
+            case SEND_MAIL -> postOffice.applySendMail(input.readInt(), input.readInt(), POSTAL_SERVICES[input.readByte()],
+                    input.readInt());
+            case DELIVER_MAIL -> postOffice.applyDeliverMail(input.readInt());
+            case MULTICAST_MAIL -> {
+                int first = input.readInt();
+                int sender = input.readInt();
+                PostalService postalService = POSTAL_SERVICES[input.readByte()];
+                int[] receivers = new int[input.readInt()];
+                for (int i = 0; i < receivers.length; i++) {
+                    receivers[i] = input.readInt();
+                }
+                postOffice.applyMulticastMail(first, sender, postalService, receivers);
+            }
+            case GET_MAIL -> postOffice.applyGetMail(input.readInt());
+            case ACK_MAIL -> postOffice.applyAckMail(input.readInt(), input.readInt());
+            case RESET_PIN -> postOffice.applyResetPin(input.readInt(), readCredential(input));
+            default -> throw new IOException("unknown journal record " + operation);
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes.
+     * @param output the output
+     * @param value the string
+     * @throws IOException when the string cannot be written
+     */
+    static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a string that was written with {@link #writeString(DataOutput, String)}.
+     * @param input the input
+     * @return the string
+     * @throws IOException when the string cannot be read
+     */
+    static String readString(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a credential of {@value CredentialStore#ROW_SIZE} bytes.
+     * @param input the input
+     * @return the credential
+     * @throws IOException when the credential cannot be read
+     */
+    private static byte[] readCredential(DataInput input) throws IOException {
+        byte[] credential = new byte[CredentialStore.ROW_SIZE];
+        input.readFully(credential);
+        return credential;
+    }
+}
@@ -0,0 +1,111 @@
+package edu.kit.kastel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts latencies in buckets of logarithmically growing width.
+ * Every power of two is split into {@value #SUB_COUNT} linear buckets, so a recorded value is kept with a relative
+ * error of about three percent. Recording only increments counters and allocates nothing.
+ * @author unweb
+ */
+final class LatencyHistogram {
+    /**
+     * The number of bits of the linear buckets per power of two.
+     */
+    private static final int SUB_BITS = 5;
+    /**
+     * The number of linear buckets per power of two.
+     */
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    /**
+     * The number of buckets that covers every positive long.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_COUNT;
+    /**
+     * The number of recorded values per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /**
+     * The largest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     * @param value the value in nanoseconds, negative values count as 0
+     */
+    void record(long value) {
+        long positive = Math.max(value, 0);
+        counts.incrementAndGet(index(positive));
+        max.accumulateAndGet(positive, Math::max);
+    }
+
+    /**
+     * Gives out the number of recorded values.
+     * @return the number of recorded values
+     */
+    long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gives out the largest recorded value.
+     * @return the largest recorded value, 0 when nothing has been recorded
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gives out the value below or at which the given share of the recorded values lies.
+     * @param quantile the share between 0 and 1
+     * @return the upper bound of the bucket of the quantile, 0 when nothing has been recorded
+     */
+    long getQuantile(double quantile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Computes the bucket of a value.
+     * @param value the non-negative value
+     * @return the index of the bucket
+     */
+    private static int index(long value) {
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BITS - 1;
+        if (shift <= 0) {
+            return (int) value;
+        }
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    /**
+     * Computes the largest value of a bucket.
+     * @param index the index of the bucket
+     * @return the largest value that falls into the bucket
+     */
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long top = index % SUB_COUNT + SUB_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+}
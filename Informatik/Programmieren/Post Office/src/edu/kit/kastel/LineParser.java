@@ -0,0 +1,67 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+
+/**
+ * This class splits command lines at a separator character without regular expressions.
+ * The parts are the same as those of {@link String#split(String)} with the separator as a literal:
+ * empty parts at the end are dropped.
+ * @author unweb
+ */
+final class LineParser {
+    /**
+     * The separator of a command and its parameter blocks.
+     */
+    static final char COMMAND_SEPARATOR = ' ';
+    /**
+     * The separator of parameters.
+     */
+    static final char PARAMETER_SEPARATOR = ';';
+    /**
+     * The result of splitting nothing but separators.
+     */
+    private static final String[] NONE = new String[0];
+
+    /**
+     * Constructor of the class.
+     */
+    private LineParser() {
+
+    }
+
+    /**
+     * Splits a line at a separator.
+     * @param line the line
+     * @param separator the separator
+     * @return the parts of the line
+     */
+    static String[] split(String line, char separator) {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == separator) {
+                count++;
+            }
+        }
+        if (count == 1) {
+            return new String[] {line};
+        }
+        String[] parts = new String[count];
+        int part = 0;
+        int start = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == separator) {
+                parts[part++] = line.substring(start, i);
+                start = i + 1;
+            }
+        }
+        parts[part] = line.substring(start);
+        int length = count;
+        while (length > 0 && parts[length - 1].isEmpty()) {
+            length--;
+        }
+        if (length == 0) {
+            return NONE;
+        }
+        return (length == count) ? parts : Arrays.copyOf(parts, length);
+    }
+}
@@ -0,0 +1,220 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * This class keeps the recent mails in memory and spills older chunks of the mail store to history segments.
+ * Once more than the retained number of mails plus a full chunk are stored, the oldest chunk in memory is spilled
+ * in the background as soon as all its mails are delivered and their journal records are durable.
+ * A segment that cannot be written is reported on the standard error, afterwards all mails stay in memory.
+ * @author unweb
+ */
+final class MailHistory {
+    /**
+     * The prefix of the segment files.
+     */
+    private static final String SEGMENT_PREFIX = "segment-";
+    /**
+     * The suffix of the segment files.
+     */
+    private static final String SEGMENT_SUFFIX = ".bin";
+    /**
+     * The mail store.
+     */
+    private final MailStore mailStore;
+    /**
+     * The directory of the segment files.
+     */
+    private final Path directory;
+    /**
+     * The number of the most recent mails that stay in memory.
+     */
+    private final int retention;
+    /**
+     * Drops the spilled mails below an ID from the customers.
+     */
+    private final IntConsumer trimmer;
+    /**
+     * Makes the journal records of the delivered mails durable before their chunk is spilled.
+     */
+    private final Runnable sync;
+    /**
+     * Spills the chunks.
+     */
+    private final ExecutorService spiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "history");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Whether a spill is scheduled.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /**
+     * The ID of the first mail kept in memory.
+     */
+    private volatile int memoryStart;
+    /**
+     * The number of spilled chunks.
+     */
+    private volatile int spilledChunks;
+    /**
+     * The message of the failure that stopped spilling, null while spilling works.
+     */
+    private volatile String failure;
+
+    /**
+     * Constructor of the class. The segments of an earlier run are attached to the mail store when the state
+     * is recovered afterwards, so the recovery leaves their mails on disk. Otherwise they are deleted.
+     * Only the segments from the oldest chunk on without a gap are kept, the chunks after a gap are spilled again.
+     * @param mailStore the mail store
+     * @param directory the directory of the segment files
+     * @param retention the number of the most recent mails that stay in memory
+     * @param trimmer drops the spilled mails below an ID from the customers
+     * @param sync makes the journal records of the delivered mails durable
+     * @param reopen true if the segments of an earlier run are kept for the recovery
+     * @throws IOException when the directory cannot be used or a segment is malformed
+     */
+    MailHistory(MailStore mailStore, Path directory, int retention, IntConsumer trimmer, Runnable sync, boolean reopen)
+            throws IOException {
+        this.mailStore = mailStore;
+        this.directory = directory;
+        this.retention = retention;
+        this.trimmer = trimmer;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        BitSet found = new BitSet();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX)) {
+                    int chunk = reopen ? chunkOf(name) : -1;
+                    if (chunk >= 0) {
+                        found.set(chunk);
+                    } else {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+        int kept = found.nextClearBit(0);
+        for (int chunk = 0; chunk < kept; chunk++) {
+            mailStore.attach(chunk, HistorySegment.open(segmentFile(chunk), chunk * MailStore.CHUNK_SIZE,
+                    MailStore.CHUNK_SIZE));
+        }
+        for (int chunk = found.nextSetBit(kept); chunk >= 0; chunk = found.nextSetBit(chunk + 1)) {
+            Files.delete(segmentFile(chunk));
+        }
+        memoryStart = kept * MailStore.CHUNK_SIZE;
+        spilledChunks = kept;
+    }
+
+    /**
+     * Starts spilling once the state has been recovered.
+     * @throws IOException when a kept segment holds mails that have not been recovered
+     */
+    void start() throws IOException {
+        if (memoryStart > mailStore.size()) {
+            throw new IOException("history segments in " + directory + " hold more than the "
+                    + mailStore.size() + " recovered mails");
+        }
+        afterAdd();
+    }
+
+    /**
+     * Schedules a spill when there are more mails in memory than retained.
+     */
+    void afterAdd() {
+        if (failure == null && isOverRetention() && scheduled.compareAndSet(false, true)) {
+            spiller.execute(this::spill);
+        }
+    }
+
+    /**
+     * Spills the oldest chunks until the mails in memory are within the retention or a chunk waits for delivery.
+     */
+    private void spill() {
+        try {
+            while (!spiller.isShutdown() && isOverRetention()) {
+                int chunk = memoryStart / MailStore.CHUNK_SIZE;
+                sync.run();
+                if (!mailStore.spill(chunk, segmentFile(chunk))) {
+                    break;
+                }
+                memoryStart += MailStore.CHUNK_SIZE;
+                spilledChunks++;
+                trimmer.accept(memoryStart);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            failure = e.getMessage();
+            System.err.println("history: failed: " + failure);
+        } finally {
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * Gives out the segment file of a chunk.
+     * @param chunk the index of the chunk
+     * @return the segment file
+     */
+    private Path segmentFile(int chunk) {
+        return directory.resolve(SEGMENT_PREFIX + chunk + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Parses the index of the chunk from the name of a segment file.
+     * @param name the name of the file
+     * @return the index of the chunk, -1 when the name is not the name of a complete segment
+     */
+    private static int chunkOf(String name) {
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks if a full chunk beyond the retention is kept in memory.
+     * @return true if the oldest chunk in memory can be spilled, otherwise false
+     */
+    private boolean isOverRetention() {
+        return (long) mailStore.size() - memoryStart >= (long) retention + MailStore.CHUNK_SIZE;
+    }
+
+    /**
+     * Gives out the number of spilled mails and the mails kept in memory.
+     * @return the report in one line
+     */
+    String getReport() {
+        String report = "history: " + (long) spilledChunks * MailStore.CHUNK_SIZE + " mails spilled, "
+                + (mailStore.size() - memoryStart) + " mails in memory";
+        return (failure == null) ? report : report + ", spilling stopped: " + failure;
+    }
+
+    /**
+     * Stops spilling and waits for a running spill, which is not interrupted while it syncs the journal.
+     */
+    void close() {
+        spiller.shutdown();
+        try {
+            spiller.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package edu.kit.kastel;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class stores every mail of the post office exactly once.
+ * Users are referred to by int IDs and postal services by their ordinal, so a mail takes ten bytes
+ * in primitive columns, including its delivery state. The columns are split into chunks which are allocated on demand.
+ * A chunk of delivered mails can be spilled to a {@link HistorySegment}, afterwards its mails are read from the segment.
+ * @author unweb
+ */
+final class MailStore {
+    /**
+     * The number of bits of the index inside a chunk.
+     */
+    private static final int CHUNK_BITS = 16;
+    /**
+     * The number of mails in one chunk.
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /**
+     * The mask of the index inside a chunk.
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /**
+     * The state of an ID without a mail.
+     */
+    static final byte EMPTY = 0;
+    /**
+     * The state of a sent mail that waits for delivery.
+     */
+    static final byte POSTED = 1;
+    /**
+     * The state of a mail that has reached the inbox of the receiver.
+     */
+    static final byte DELIVERED = 2;
+    /**
+     * All postal services by ordinal.
+     */
+    private static final PostalService[] POSTAL_SERVICES = PostalService.values();
+    /**
+     * Accesses the delivery states, so a delivery is published to the thread that spills the chunk.
+     */
+    private static final VarHandle STATES = MethodHandles.arrayElementVarHandle(byte[].class);
+    /**
+     * The registry of the users the mails refer to.
+     */
+    private final UserRegistry registry;
+    /**
+     * The chunks of the mail columns.
+     */
+    private volatile Chunk[] chunks = new Chunk[16];
+    /**
+     * The segments of the spilled chunks, published before the chunk is dropped.
+     */
+    private volatile HistorySegment[] segments = new HistorySegment[16];
+    /**
+     * The number of mails.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructor of the class.
+     * @param registry the registry of the users the mails refer to
+     */
+    MailStore(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Stores a new mail.
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receiver the ID of the receiver
+     * @return the ID of the mail
+     */
+    int add(int sender, PostalService postalService, int receiver) {
+        int mail = size.getAndIncrement();
+        put(mail, sender, postalService, receiver);
+        return mail;
+    }
+
+    /**
+     * Stores new mails of one sender and one postal service under consecutive IDs.
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receivers the IDs of the receivers
+     * @return the ID of the first mail
+     */
+    int addAll(int sender, PostalService postalService, int[] receivers) {
+        int first = size.getAndAdd(receivers.length);
+        for (int i = 0; i < receivers.length; i++) {
+            put(first + i, sender, postalService, receivers[i]);
+        }
+        return first;
+    }
+
+    /**
+     * Stores a recovered mail under its former ID. A mail of a reopened segment stays in the segment.
+     * @param mail the ID of the mail
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receiver the ID of the receiver
+     */
+    void restore(int mail, int sender, PostalService postalService, int receiver) {
+        size.accumulateAndGet(mail + 1, Math::max);
+        if (segment(mail) == null) {
+            put(mail, sender, postalService, receiver);
+        }
+    }
+
+    /**
+     * Writes the columns of a posted mail.
+     * @param mail the ID of the mail
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receiver the ID of the receiver
+     */
+    private void put(int mail, int sender, PostalService postalService, int receiver) {
+        Chunk chunk = chunk(mail >>> CHUNK_BITS);
+        int index = mail & CHUNK_MASK;
+        chunk.senders[index] = sender;
+        chunk.receivers[index] = receiver;
+        chunk.postalServices[index] = (byte) postalService.ordinal();
+        chunk.states[index] = POSTED;
+    }
+
+    /**
+     * Marks a mail as delivered. A spilled mail has been delivered already.
+     * @param mail the ID of the mail
+     */
+    void markDelivered(int mail) {
+        Chunk chunk = chunks[mail >>> CHUNK_BITS];
+        if (chunk != null) {
+            STATES.setRelease(chunk.states, mail & CHUNK_MASK, DELIVERED);
+        }
+    }
+
+    /**
+     * A getter for the delivery state of a mail.
+     * @param mail the ID of the mail
+     * @return {@link #EMPTY}, {@link #POSTED} or {@link #DELIVERED}
+     */
+    byte getState(int mail) {
+        Chunk chunk = chunks[mail >>> CHUNK_BITS];
+        if (chunk == null) {
+            return (segment(mail) == null) ? EMPTY : DELIVERED;
+        }
+        return chunk.states[mail & CHUNK_MASK];
+    }
+
+    /**
+     * A getter for the sender of a mail.
+     * @param mail the ID of the mail
+     * @return the ID of the sender
+     */
+    int getSender(int mail) {
+        Chunk chunk = chunks[mail >>> CHUNK_BITS];
+        return (chunk == null) ? segment(mail).getSender(mail & CHUNK_MASK) : chunk.senders[mail & CHUNK_MASK];
+    }
+
+    /**
+     * A getter for the receiver of a mail.
+     * @param mail the ID of the mail
+     * @return the ID of the receiver
+     */
+    int getReceiver(int mail) {
+        Chunk chunk = chunks[mail >>> CHUNK_BITS];
+        return (chunk == null) ? segment(mail).getReceiver(mail & CHUNK_MASK) : chunk.receivers[mail & CHUNK_MASK];
+    }
+
+    /**
+     * A getter for the postal service of a mail.
+     * @param mail the ID of the mail
+     * @return the postal service
+     */
+    PostalService getPostalService(int mail) {
+        Chunk chunk = chunks[mail >>> CHUNK_BITS];
+        return POSTAL_SERVICES[(chunk == null)
+                ? segment(mail).getPostalService(mail & CHUNK_MASK) : chunk.postalServices[mail & CHUNK_MASK]];
+    }
+
+    /**
+     * Creates a mail object of a stored mail.
+     * @param mail the ID of the mail
+     * @return the mail
+     */
+    Mail get(int mail) {
+        return new Mail(registry.getName(getSender(mail)), getPostalService(mail).getPostalService(),
+                registry.getName(getReceiver(mail)));
+    }
+
+    /**
+     * A getter for the number of stored mails.
+     * @return the number of mails
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Spills a full chunk to a segment file when all its mails are delivered and drops the chunk from the heap.
+     * @param index the index of the chunk
+     * @param file the segment file
+     * @return true if the chunk has been spilled, false if a mail of the chunk still waits for delivery
+     * @throws IOException when the segment cannot be written
+     */
+    boolean spill(int index, Path file) throws IOException {
+        Chunk chunk = chunks[index];
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            if ((byte) STATES.getAcquire(chunk.states, i) != DELIVERED) {
+                return false;
+            }
+        }
+        attach(index, HistorySegment.write(file, index << CHUNK_BITS, chunk.senders, chunk.receivers,
+                chunk.postalServices));
+        return true;
+    }
+
+    /**
+     * Publishes the segment of a chunk and drops the chunk from the heap.
+     * Segments of an earlier run are attached before the recovery, which then leaves their mails in the segments.
+     * @param index the index of the chunk
+     * @param segment the segment
+     */
+    synchronized void attach(int index, HistorySegment segment) {
+        HistorySegment[] grown = Arrays.copyOf(segments, Math.max(segments.length, Math.max(chunks.length, index + 1)));
+        grown[index] = segment;
+        segments = grown;
+        if (index < chunks.length) {
+            Chunk[] dropped = chunks.clone();
+            dropped[index] = null;
+            chunks = dropped;
+        }
+    }
+
+    /**
+     * Appends the IDs of the spilled mails of a sender to a list, in the order of the segments.
+     * @param sender the ID of the sender
+     * @param mails the list
+     * @return the ID of the first mail that has not been spilled when the segments were read
+     */
+    int collectSpilledSent(int sender, IntList mails) {
+        HistorySegment[] current = segments;
+        int spilled = 0;
+        while (spilled < current.length && current[spilled] != null) {
+            current[spilled].collectSent(sender, mails);
+            spilled++;
+        }
+        return spilled << CHUNK_BITS;
+    }
+
+    /**
+     * Gives out the ID of the first mail that has not been spilled. Chunks are spilled from the oldest on,
+     * so every mail below this ID is read from a segment.
+     * @return the ID of the first mail kept in memory
+     */
+    int getSpilledLimit() {
+        HistorySegment[] current = segments;
+        int spilled = 0;
+        while (spilled < current.length && current[spilled] != null) {
+            spilled++;
+        }
+        return spilled << CHUNK_BITS;
+    }
+
+    /**
+     * Checks if a mail has been spilled to a segment.
+     * @param mail the ID of the mail
+     * @return true if the mail is read from a segment, otherwise false
+     */
+    boolean isSpilled(int mail) {
+        return segment(mail) != null;
+    }
+
+    /**
+     * Gives out the segment of a spilled mail.
+     * @param mail the ID of the mail
+     * @return the segment, null when the mail has not been spilled
+     */
+    private HistorySegment segment(int mail) {
+        HistorySegment[] current = segments;
+        int index = mail >>> CHUNK_BITS;
+        return (index < current.length) ? current[index] : null;
+    }
+
+    /**
+     * Gives out a chunk, the chunk is created when it doesn't exist yet.
+     * @param index the index of the chunk
+     * @return the chunk
+     */
+    private Chunk chunk(int index) {
+        Chunk[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        synchronized (this) {
+            if (index >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, index + 1));
+            }
+            if (chunks[index] == null) {
+                Chunk[] grown = chunks.clone();
+                grown[index] = new Chunk();
+                chunks = grown;
+            }
+            return chunks[index];
+        }
+    }
+
+    /**
+     * This class contains the columns of one chunk of mails.
+     */
+    private static final class Chunk {
+        /**
+         * The IDs of the senders.
+         */
+        private final int[] senders = new int[CHUNK_SIZE];
+        /**
+         * The IDs of the receivers.
+         */
+        private final int[] receivers = new int[CHUNK_SIZE];
+        /**
+         * The ordinals of the postal services.
+         */
+        private final byte[] postalServices = new byte[CHUNK_SIZE];
+        /**
+         * The delivery states.
+         */
+        private final byte[] states = new byte[CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,49 @@
+package edu.kit.kastel;
+
+import java.util.AbstractList;
+
+/**
+ * This class is a read only view of the mails of a customer.
+ * The view only holds the mail IDs of the customer, the mails are read from the mail store on access.
+ * @author unweb
+ */
+final class MailView extends AbstractList<Mail> {
+    /**
+     * The customer that guards the mail IDs.
+     */
+    private final Customer owner;
+    /**
+     * The mail IDs.
+     */
+    private final IntSequence mails;
+    /**
+     * The mail store.
+     */
+    private final MailStore mailStore;
+
+    /**
+     * Constructor of the class.
+     * @param owner the customer that guards the mail IDs
+     * @param mails the mail IDs
+     * @param mailStore the mail store
+     */
+    MailView(Customer owner, IntSequence mails, MailStore mailStore) {
+        this.owner = owner;
+        this.mails = mails;
+        this.mailStore = mailStore;
+    }
+
+    @Override
+    public Mail get(int index) {
+        synchronized (owner) {
+            return mailStore.get(mails.get(index));
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (owner) {
+            return mails.size();
+        }
+    }
+}
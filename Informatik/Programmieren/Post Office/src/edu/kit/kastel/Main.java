@@ -1,10 +1,109 @@
 package edu.kit.kastel;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main class.
  * @author unweb
  */
 final class Main {
+    /**
+     * The option of the data directory.
+     */
+    private static final String DATA_OPTION = "--data";
+    /**
+     * The option of the snapshot interval in seconds.
+     */
+    private static final String SNAPSHOT_OPTION = "--snapshot-interval";
+    /**
+     * The option of the command file of the batch mode.
+     */
+    private static final String BATCH_OPTION = "--batch";
+    /**
+     * The option of the result file of the batch mode.
+     */
+    private static final String OUTPUT_OPTION = "--output";
+    /**
+     * The option of the number of mailmen that deliver in the background.
+     */
+    private static final String MAILMEN_OPTION = "--mailmen";
+    /**
+     * The option of the file the command statistics are appended to.
+     */
+    private static final String STATS_FILE_OPTION = "--stats-file";
+    /**
+     * The option of the interval between two command statistics in seconds.
+     */
+    private static final String STATS_INTERVAL_OPTION = "--stats-interval";
+    /**
+     * The default interval between two command statistics in seconds.
+     */
+    private static final long DEFAULT_STATS_INTERVAL = 60;
+    /**
+     * The option of the port of the network front end.
+     */
+    private static final String PORT_OPTION = "--port";
+    /**
+     * The option of the maximal number of connections of the network front end.
+     */
+    private static final String MAX_CONNECTIONS_OPTION = "--max-connections";
+    /**
+     * The option of the time in seconds after which an idle connection is closed.
+     */
+    private static final String IDLE_TIMEOUT_OPTION = "--idle-timeout";
+    /**
+     * The default maximal number of connections.
+     */
+    private static final int DEFAULT_MAX_CONNECTIONS = 10_000;
+    /**
+     * The option of the directory old mails are spilled to.
+     */
+    private static final String HISTORY_OPTION = "--history";
+    /**
+     * The option of the number of the most recent mails kept in memory.
+     */
+    private static final String HISTORY_RETENTION_OPTION = "--history-retention";
+    /**
+     * The default number of the most recent mails kept in memory.
+     */
+    private static final int DEFAULT_HISTORY_RETENTION = 1 << 20;
+    /**
+     * The option of the number of iterations of the password hashes.
+     */
+    private static final String HASH_ITERATIONS_OPTION = "--hash-iterations";
+    /**
+     * The option of the commands per second of every session.
+     */
+    private static final String RATE_OPTION = "--rate";
+    /**
+     * The option of the commands a session may run at once before the rate applies.
+     */
+    private static final String BURST_OPTION = "--burst";
+    /**
+     * The option of the number of commands that run at the same time in each lane of the scheduler.
+     */
+    private static final String LANE_SLOTS_OPTION = "--lane-slots";
+    /**
+     * The option of the file the state changes are appended to.
+     */
+    private static final String EVENT_LOG_OPTION = "--event-log";
+    /**
+     * The option of the interval between two versions of the replica of the order counters.
+     */
+    private static final String REPLICA_INTERVAL_OPTION = "--replica-interval";
+    /**
+     * The size of the buffers of the batch mode.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
     /**
      * Constructor of main class.
      */
@@ -13,11 +112,150 @@ final class Main {
     }
     /**
      * The main programm.
+     * Without arguments the state is only kept in memory. With {@code --data <directory>} the state is recovered
+     * from and journaled to the directory, {@code --snapshot-interval <seconds>} takes periodic snapshots there.
+     * With {@code --batch <file>} the commands are read from the file instead of the standard input and
+     * the results are written buffered to the standard output or to {@code --output <file>}.
+     * With {@code --mailmen <number>} sent mails are queued and delivered in the background by that many mailmen.
+     * With {@code --stats-file <file>} the command statistics are appended to the file every
+     * {@code --stats-interval <seconds>} and on exit.
+     * With {@code --port <port>} the post office is also served on the loopback interface to at most
+     * {@code --max-connections <number>} clients, which are closed after {@code --idle-timeout <seconds>}
+     * without a command, while the standard input keeps working as one more counter.
+     * With {@code --history <directory>} only the {@code --history-retention <mails>} most recent mails are kept
+     * in memory, older delivered mails are spilled to segment files in the directory.
+     * Together with {@code --data} the segments are kept across restarts and the recovery leaves their mails on disk.
+     * With {@code --hash-iterations <number>} new passwords are hashed with that many iterations.
+     * With {@code --rate <commands per second>} every session may run that many commands per second after a burst
+     * of {@code --burst <commands>}, and {@code --lane-slots <number>} commands run at the same time in the read lane
+     * and in the write lane of the scheduler.
+     * With {@code --event-log <file>} every sent and collected mail, added customer and reset PIN is appended
+     * to a binary event log.
+     * With {@code --replica-interval <milliseconds>} mailmen and agents list the orders of a customer from a replica
+     * that is published in that interval and by {@code refresh-replica}.
+     * Reports of the persistence are written to the error stream.
+     * Every option needs a value, an option without one is rejected.
      * @param args is the argument
      * @throws Validity when something is wrong
+     * @throws IOException when the data directory cannot be used
+     * @throws InterruptedException when waiting for the mailmen is interrupted
      */
-    public static void main(String[] args) throws Validity {
+    public static void main(String[] args) throws Validity, IOException, InterruptedException {
+        Path directory = null;
+        long snapshotInterval = 0;
+        Path batch = null;
+        Path output = null;
+        int mailmen = 0;
+        Path statsFile = null;
+        long statsInterval = DEFAULT_STATS_INTERVAL;
+        int port = -1;
+        int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        int idleTimeout = 0;
+        Path historyDirectory = null;
+        int historyRetention = DEFAULT_HISTORY_RETENTION;
+        int hashIterations = CredentialStore.DEFAULT_ITERATIONS;
+        double rate = 0;
+        double burst = CommandScheduler.DEFAULT_BURST;
+        int laneSlots = CommandScheduler.DEFAULT_SLOTS;
+        Path eventLog = null;
+        long replicaInterval = 0;
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("missing value of option " + args[args.length - 1]);
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+                case DATA_OPTION -> directory = Path.of(args[i + 1]);
+                case SNAPSHOT_OPTION -> snapshotInterval = Long.parseLong(args[i + 1]);
+                case BATCH_OPTION -> batch = Path.of(args[i + 1]);
+                case OUTPUT_OPTION -> output = Path.of(args[i + 1]);
+                case MAILMEN_OPTION -> mailmen = Integer.parseInt(args[i + 1]);
+                case STATS_FILE_OPTION -> statsFile = Path.of(args[i + 1]);
+                case STATS_INTERVAL_OPTION -> statsInterval = Long.parseLong(args[i + 1]);
+                case HISTORY_OPTION -> historyDirectory = Path.of(args[i + 1]);
+                case HISTORY_RETENTION_OPTION -> historyRetention = Integer.parseInt(args[i + 1]);
+                case HASH_ITERATIONS_OPTION -> hashIterations = Integer.parseInt(args[i + 1]);
+                case RATE_OPTION -> rate = Double.parseDouble(args[i + 1]);
+                case BURST_OPTION -> burst = Double.parseDouble(args[i + 1]);
+                case LANE_SLOTS_OPTION -> laneSlots = Integer.parseInt(args[i + 1]);
+                case EVENT_LOG_OPTION -> eventLog = Path.of(args[i + 1]);
+                case REPLICA_INTERVAL_OPTION -> replicaInterval = Long.parseLong(args[i + 1]);
+                case PORT_OPTION -> port = Integer.parseInt(args[i + 1]);
+                case MAX_CONNECTIONS_OPTION -> maxConnections = Integer.parseInt(args[i + 1]);
+                case IDLE_TIMEOUT_OPTION -> idleTimeout = Math.toIntExact(
+                        TimeUnit.SECONDS.toMillis(Long.parseLong(args[i + 1])));
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PostOffice postOffice = PostOffice.getInstance();
+        postOffice.setHashIterations(hashIterations);
+        if (historyDirectory != null) {
+            postOffice.enableHistory(historyDirectory, historyRetention, directory != null);
+        }
+        if (directory != null) {
+            System.err.println(postOffice.enablePersistence(directory, snapshotInterval));
+        }
+        if (eventLog != null) {
+            postOffice.subscribe(new EventLogSink(eventLog));
+        }
+        if (replicaInterval > 0) {
+            postOffice.enableReplica(replicaInterval);
+        }
+        if (mailmen > 0) {
+            postOffice.startMailmen(mailmen);
+        }
+        CommandHandler.getScheduler().configure(rate, burst, laneSlots);
         CommandHandler commandHandler = CommandHandler.getInstance();
-        commandHandler.operation();
+        CommandMetrics metrics = CommandHandler.getMetrics();
+        if (statsFile != null) {
+            metrics.startDump(statsFile, statsInterval);
+        }
+        PostOfficeServer server = null;
+        if (port >= 0) {
+            server = new PostOfficeServer(port, maxConnections, idleTimeout);
+            server.start();
+            System.err.println("listening on port " + server.getPort());
+        }
+        if (batch == null) {
+            commandHandler.operation();
+        } else {
+            try (BufferedReader input = new BufferedReader(
+                    new InputStreamReader(Files.newInputStream(batch), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                if (output == null) {
+                    // the standard output is not closed, batch only flushes it
+                    commandHandler.batch(input, new BufferedWriter(
+                            new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE));
+                } else {
+                    try (Writer results = new BufferedWriter(
+                            new OutputStreamWriter(Files.newOutputStream(output), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                        commandHandler.batch(input, results);
+                    }
+                }
+            }
+        }
+        if (server != null) {
+            server.close();
+            System.err.println(server.getReport());
+        }
+        postOffice.stopMailmen();
+        String replicaReport = postOffice.closeReplica();
+        if (replicaReport != null) {
+            System.err.println(replicaReport);
+        }
+        String eventReport = postOffice.closeEvents();
+        if (eventReport != null) {
+            System.err.println(eventReport);
+        }
+        String historyReport = postOffice.closeHistory();
+        if (historyReport != null) {
+            System.err.println(historyReport);
+        }
+        if (statsFile != null) {
+            metrics.stopDump();
+            metrics.dump(statsFile);
+        }
+        String journalReport = postOffice.closePersistence();
+        if (journalReport != null) {
+            System.err.println(journalReport);
+        }
     }
 }
@@ -0,0 +1,119 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps a read replica of the order counters of all customers for the reports of mailmen and agents.
+ * The reports read the current {@link OrderSnapshot} without any lock, so they never contend with sending mails.
+ * A new version is published every interval or on demand: the customers whose counters have changed are copied,
+ * each under its own lock, into new rows of copies of their chunks, and all other rows and chunks are shared
+ * with the version before, so a version costs little more than the changed rows.
+ * Staleness bound: a report sees every change that was finished before the copying of the current version started,
+ * so it lags behind by at most the interval plus the time of one publication. Every row is consistent in itself,
+ * rows of different customers may be copied a few microseconds apart.
+ * @author unweb
+ */
+final class OrderReplica {
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * The registry of the customers.
+     */
+    private final UserRegistry registry;
+    /**
+     * The current version.
+     */
+    private volatile OrderSnapshot current = OrderSnapshot.EMPTY;
+    /**
+     * Publishes the versions periodically, null for publications on demand only.
+     */
+    private ScheduledExecutorService timer;
+    /**
+     * The number of copied rows over all publications.
+     */
+    private long copiedRows;
+    /**
+     * The time of the longest publication in nanoseconds.
+     */
+    private long maxPublishNanos;
+
+    /**
+     * Constructor of the class.
+     * @param registry the registry of the customers
+     */
+    OrderReplica(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * A getter for the current version.
+     * @return the current version
+     */
+    OrderSnapshot getCurrent() {
+        return current;
+    }
+
+    /**
+     * Publishes a new version with the changed customers.
+     * @return the new version
+     */
+    synchronized OrderSnapshot publish() {
+        long start = System.nanoTime();
+        OrderSnapshot previous = current;
+        long[][][] shared = previous.getChunks();
+        int chunkCount = (registry.size() + OrderSnapshot.CHUNK_MASK) >>> OrderSnapshot.CHUNK_BITS;
+        long[][][] chunks = Arrays.copyOf(shared, Math.max(chunkCount, shared.length));
+        boolean[] copied = new boolean[chunks.length];
+        long[] rows = new long[1];
+        registry.forEachCustomer(customer -> {
+            if (customer.hasChangedOrders()) {
+                int id = customer.getId();
+                int index = id >>> OrderSnapshot.CHUNK_BITS;
+                if (!copied[index]) {
+                    chunks[index] = (chunks[index] == null)
+                            ? new long[OrderSnapshot.CHUNK_SIZE][] : chunks[index].clone();
+                    copied[index] = true;
+                }
+                chunks[index][id & OrderSnapshot.CHUNK_MASK] = customer.copyOrders();
+                rows[0]++;
+            }
+        });
+        OrderSnapshot next = new OrderSnapshot(previous.getVersion() + 1, start, chunks);
+        current = next;
+        copiedRows += rows[0];
+        maxPublishNanos = Math.max(maxPublishNanos, System.nanoTime() - start);
+        return next;
+    }
+
+    /**
+     * Starts publishing a new version periodically.
+     * @param intervalMillis the interval between two publications in milliseconds
+     */
+    synchronized void start(long intervalMillis) {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::publish, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic publications.
+     * @return the report of the replica
+     */
+    synchronized String close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        return String.format(Locale.US, "replica: %d versions, %d copied rows, longest publication %.3f ms",
+                current.getVersion(), copiedRows, maxPublishNanos / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,149 @@
+package edu.kit.kastel;
+
+/**
+ * This class is one immutable version of the order counters of all customers, published by the {@link OrderReplica}.
+ * The rows are kept by the ID of the customer in chunks of row references. A new version shares every row
+ * of an unchanged customer and every chunk without changed customers with the version before,
+ * so neither a chunk nor a row must be written once it is published.
+ * @author unweb
+ */
+final class OrderSnapshot {
+    /**
+     * The number of bits of the index inside a chunk.
+     */
+    static final int CHUNK_BITS = 6;
+    /**
+     * The number of rows in one chunk.
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /**
+     * The mask of the index inside a chunk.
+     */
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /**
+     * The number of postal services.
+     */
+    static final int POSTAL_SERVICES = PostalService.values().length;
+    /**
+     * The empty version before the first publication.
+     */
+    static final OrderSnapshot EMPTY = new OrderSnapshot(0, System.nanoTime(), new long[0][][]);
+    /**
+     * The number of the version, counting from 0.
+     */
+    private final long version;
+    /**
+     * The time the copying of this version started in nanoseconds, every change before is contained.
+     */
+    private final long startedAt;
+    /**
+     * The chunks of rows: total orders, their prices and received orders by postal service,
+     * null for a chunk or a row without any orders.
+     */
+    private final long[][][] chunks;
+
+    /**
+     * Constructor of the class, the chunks are taken over and must not be changed afterwards.
+     * @param version the number of the version
+     * @param startedAt the time the copying of this version started in nanoseconds
+     * @param chunks the chunks of rows
+     */
+    OrderSnapshot(long version, long startedAt, long[][][] chunks) {
+        this.version = version;
+        this.startedAt = startedAt;
+        this.chunks = chunks;
+    }
+
+    /**
+     * A getter for the number of the version.
+     * @return the version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * A getter for the time the copying of this version started.
+     * @return the time in nanoseconds
+     */
+    long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * A getter for the chunks, to share them with the next version.
+     * @return the chunks, which must not be changed
+     */
+    long[][][] getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Checks if a customer had ordered anything in this version.
+     * @param id the ID of the customer
+     * @return true if the customer has orders, otherwise false
+     */
+    boolean hasOrders(int id) {
+        long[] row = row(id);
+        if (row == null) {
+            return false;
+        }
+        for (int i = 0; i < POSTAL_SERVICES; i++) {
+            if (row[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A getter for the orders of a customer in this version.
+     * @param id the ID of the customer
+     * @return a copy of the total orders and their prices
+     */
+    OrderTotals getTotalOrders(int id) {
+        return totals(id, 0, POSTAL_SERVICES);
+    }
+
+    /**
+     * A getter for the received orders of a customer in this version.
+     * @param id the ID of the customer
+     * @return a copy of the received orders, the prices are paid by the senders and therefore zero
+     */
+    OrderTotals getReceivedOrders(int id) {
+        return totals(id, 2 * POSTAL_SERVICES, -1);
+    }
+
+    /**
+     * Copies counters of a row.
+     * @param id the ID of the customer
+     * @param ordersColumn the offset of the orders in the row
+     * @param centsColumn the offset of the prices in the row, -1 for zero prices
+     * @return the copy
+     */
+    private OrderTotals totals(int id, int ordersColumn, int centsColumn) {
+        long[] orders = new long[POSTAL_SERVICES];
+        long[] cents = new long[POSTAL_SERVICES];
+        long[] row = row(id);
+        if (row != null) {
+            System.arraycopy(row, ordersColumn, orders, 0, POSTAL_SERVICES);
+            if (centsColumn >= 0) {
+                System.arraycopy(row, centsColumn, cents, 0, POSTAL_SERVICES);
+            }
+        }
+        return new OrderTotals(orders, cents);
+    }
+
+    /**
+     * Finds the row of a customer.
+     * @param id the ID of the customer
+     * @return the row, null when the customer had no orders in this version
+     */
+    private long[] row(int id) {
+        int index = id >>> CHUNK_BITS;
+        if (index >= chunks.length || chunks[index] == null) {
+            return null;
+        }
+        return chunks[index][id & CHUNK_MASK];
+    }
+}
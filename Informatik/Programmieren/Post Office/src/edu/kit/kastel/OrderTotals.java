@@ -0,0 +1,79 @@
+package edu.kit.kastel;
+
+/**
+ * This class is an immutable copy of order counters, keyed by the ordinal of the postal service.
+ * Prices are exact integer cents.
+ * @author unweb
+ */
+final class OrderTotals {
+    /**
+     * The number of orders per postal service.
+     */
+    private final long[] orders;
+    /**
+     * The price of the orders per postal service in cents.
+     */
+    private final long[] cents;
+
+    /**
+     * Constructor of the class, the arrays are taken over and must not be changed afterwards.
+     * @param orders the number of orders per postal service
+     * @param cents the price of the orders per postal service in cents
+     */
+    OrderTotals(long[] orders, long[] cents) {
+        this.orders = orders;
+        this.cents = cents;
+    }
+
+    /**
+     * A getter for the number of orders of a postal service.
+     * @param postalService the postal service
+     * @return the number of orders
+     */
+    long getOrders(PostalService postalService) {
+        return orders[postalService.ordinal()];
+    }
+
+    /**
+     * A getter for the price of the orders of a postal service.
+     * @param postalService the postal service
+     * @return the price in cents
+     */
+    long getCents(PostalService postalService) {
+        return cents[postalService.ordinal()];
+    }
+
+    /**
+     * A getter for the number of orders of all postal services.
+     * @return the number of orders
+     */
+    long getTotalOrders() {
+        long total = 0;
+        for (long order : orders) {
+            total += order;
+        }
+        return total;
+    }
+
+    /**
+     * A getter for the price of the orders of all postal services.
+     * @return the price in cents
+     */
+    long getTotalCents() {
+        long total = 0;
+        for (long cent : cents) {
+            total += cent;
+        }
+        return total;
+    }
+
+    /**
+     * Formats a price in cents like {@code 1.40}.
+     * @param cents the price in cents
+     * @return the formatted price
+     */
+    static String formatCents(long cents) {
+        long remainder = cents % 100;
+        return cents / 100 + ((remainder < 10) ? ".0" : ".") + remainder;
+    }
+}
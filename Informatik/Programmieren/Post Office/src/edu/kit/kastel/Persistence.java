@@ -0,0 +1,271 @@
+package edu.kit.kastel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * This class keeps the state of the post office durable in a data directory.
+ * The directory holds at most one snapshot and one journal of the same generation: the snapshot of generation g
+ * contains everything before the journal of generation g. Taking a snapshot starts the next generation
+ * and deletes the files of the previous one.
+ * @author unweb
+ */
+final class Persistence implements Closeable {
+    /**
+     * The prefix of snapshot files.
+     */
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    /**
+     * The prefix of journal files.
+     */
+    private static final String JOURNAL_PREFIX = "journal-";
+    /**
+     * The suffix of all data files.
+     */
+    private static final String SUFFIX = ".bin";
+    /**
+     * The data directory.
+     */
+    private final Path directory;
+    /**
+     * The post office whose state is kept.
+     */
+    private final PostOffice postOffice;
+    /**
+     * The mail store of the post office.
+     */
+    private final MailStore mailStore;
+    /**
+     * Operations hold the read lock while they change the state and append to the journal,
+     * a snapshot holds the write lock so it sees a consistent state.
+     */
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    /**
+     * The current generation.
+     */
+    private long generation;
+    /**
+     * The journal of the current generation.
+     */
+    private Journal journal;
+    /**
+     * The timer of the periodic snapshots, null when there are none.
+     */
+    private ScheduledExecutorService snapshotTimer;
+    /**
+     * The report of the recovery.
+     */
+    private String recoveryReport;
+
+    /**
+     * Constructor of the class.
+     * @param directory the data directory
+     * @param postOffice the post office whose state is kept
+     * @param mailStore the mail store of the post office
+     */
+    private Persistence(Path directory, PostOffice postOffice, MailStore mailStore) {
+        this.directory = directory;
+        this.postOffice = postOffice;
+        this.mailStore = mailStore;
+    }
+
+    /**
+     * Recovers the state of an empty post office from a data directory and opens the journal for new operations.
+     * The latest snapshot is loaded and only the journal of its generation is replayed.
+     * @param directory the data directory
+     * @param postOffice the empty post office
+     * @param mailStore the mail store of the post office
+     * @return the persistence of the post office
+     * @throws IOException when the data cannot be read
+     */
+    static Persistence recover(Path directory, PostOffice postOffice, MailStore mailStore) throws IOException {
+        Files.createDirectories(directory);
+        Persistence persistence = new Persistence(directory, postOffice, mailStore);
+        long start = System.nanoTime();
+        persistence.generation = persistence.latestSnapshot();
+        Path snapshot = persistence.file(SNAPSHOT_PREFIX, persistence.generation);
+        if (Files.exists(snapshot)) {
+            Snapshot.read(snapshot, postOffice);
+        }
+        long loaded = System.nanoTime();
+        long records = Journal.replay(persistence.file(JOURNAL_PREFIX, persistence.generation), postOffice);
+        long replayed = System.nanoTime();
+        persistence.deleteOlderGenerations();
+        persistence.journal = new Journal(persistence.file(JOURNAL_PREFIX, persistence.generation));
+        persistence.recoveryReport = String.format(Locale.US,
+                "recovery: generation %d, %d mails, snapshot %.1f ms, %d journal records %.1f ms, total %.1f ms",
+                persistence.generation, mailStore.size(), (loaded - start) / 1e6, records, (replayed - loaded) / 1e6,
+                (replayed - start) / 1e6);
+        return persistence;
+    }
+
+    /**
+     * Starts taking snapshots periodically.
+     * A snapshot that fails is reported on the standard error and the next one is taken on schedule,
+     * while the journal of the current generation keeps the state durable.
+     * @param intervalSeconds the interval between two snapshots in seconds
+     */
+    synchronized void startSnapshots(long intervalSeconds) {
+        snapshotTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotTimer.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("snapshot: failed: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts an operation that changes the state.
+     */
+    void beginUpdate() {
+        stateLock.readLock().lock();
+    }
+
+    /**
+     * Ends an operation that changes the state.
+     */
+    void endUpdate() {
+        stateLock.readLock().unlock();
+    }
+
+    /**
+     * A getter for the journal of the current generation, only valid between begin and end of an update.
+     * @return the journal
+     */
+    Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Makes the records of all operations that have changed the state so far durable.
+     * Holds the write lock, so no operation is between its change and its record.
+     */
+    void sync() {
+        stateLock.writeLock().lock();
+        try {
+            journal.flush();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state and starts the next generation.
+     * @throws IOException when the snapshot cannot be written
+     */
+    void snapshot() throws IOException {
+        stateLock.writeLock().lock();
+        try {
+            journal.flush();
+            Snapshot.write(file(SNAPSHOT_PREFIX, generation + 1), postOffice, mailStore);
+            journal.close();
+            generation++;
+            journal = new Journal(file(JOURNAL_PREFIX, generation));
+            deleteOlderGenerations();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A getter for the report of the recovery.
+     * @return the report in one line
+     */
+    String getRecoveryReport() {
+        return recoveryReport;
+    }
+
+    /**
+     * A getter for the write statistics of the current journal.
+     * @return the statistics in one line
+     */
+    String getJournalReport() {
+        return journal.getReport();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (snapshotTimer != null) {
+            snapshotTimer.shutdownNow();
+        }
+        stateLock.writeLock().lock();
+        try {
+            journal.close();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the generation of the latest complete snapshot.
+     * @return the generation, 0 when there is no snapshot
+     * @throws IOException when the directory cannot be read
+     */
+    private long latestSnapshot() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(path -> generationOf(path, SNAPSHOT_PREFIX)).filter(found -> found >= 0).max().orElse(0);
+        }
+    }
+
+    /**
+     * Deletes all data files of older generations and unfinished snapshots.
+     * @throws IOException when the directory cannot be read
+     */
+    private void deleteOlderGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                long snapshotGeneration = generationOf(path, SNAPSHOT_PREFIX);
+                long journalGeneration = generationOf(path, JOURNAL_PREFIX);
+                if (name.endsWith(".tmp") || Math.max(snapshotGeneration, journalGeneration) >= 0
+                        && Math.max(snapshotGeneration, journalGeneration) < generation) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives out the path of a data file.
+     * @param prefix the prefix of the file
+     * @param fileGeneration the generation of the file
+     * @return the path
+     */
+    private Path file(String prefix, long fileGeneration) {
+        return directory.resolve(prefix + fileGeneration + SUFFIX);
+    }
+
+    /**
+     * Reads the generation of a data file.
+     * @param path the path of the file
+     * @param prefix the expected prefix
+     * @return the generation, -1 when the file has another prefix or is no data file
+     */
+    private static long generationOf(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
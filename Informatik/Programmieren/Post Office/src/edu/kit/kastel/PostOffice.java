@@ -1,10 +1,17 @@
 package edu.kit.kastel;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.stream.IntStream;
 
 /**
  * This class covers all functions needed for this programm.
+ * Every operation runs against a {@link Session}, so several sessions can use the post office in parallel.
  * @author unweb
  */
 
@@ -14,25 +21,65 @@ public final class PostOffice {
      */
     private static final PostOffice POST_OFFICE = new PostOffice();
     /**
-     * A map to store all customers.
+     * The result of a successful operation without further output.
      */
-    private final Map<String, Customer> customers = new HashMap<>();
+    static final String OK = "OK";
     /**
-     * A map to store all mailmans.
+     * The maximal number of mails of a page of an inbox.
      */
-    private final Map<String, Mailman> mailmans = new HashMap<>();
-    /** 
-     * A map to store all agents.
+    static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * The maximal number of lines of a top list.
+     */
+    private static final int MAX_TOP = 100;
+    /**
+     * The number of mails from which the inboxes of a multicast are filled in parallel.
+     */
+    private static final int PARALLEL_DELIVERY = 1024;
+    /**
+     * The registry of all users.
+     */
+    private final UserRegistry registry = new UserRegistry();
+    /**
+     * The store of all mails.
+     */
+    private final MailStore mailStore = new MailStore(registry);
+    /**
+     * The office wide order volume and revenue.
+     */
+    private final Billing billing = new Billing();
+    /**
+     * The office wide rollups of the mail traffic.
      */
-    private final Map<String, Agent> agents = new HashMap<>();
+    private final TrafficAnalytics analytics = new TrafficAnalytics();
     /**
-     * A map to store all users in general.
+     * The salted password hashes of all users.
      */
-    private final Map<String, User> users = new HashMap<>();
+    private final CredentialStore credentials = new CredentialStore();
     /**
-     * A variable to give out the current authenticated user.
+     * Delivers the sent mails to the inbox of their receivers.
      */
-    private User currentUser;
+    private final DeliveryDispatcher dispatcher = new DeliveryDispatcher(this::handOver);
+    /**
+     * A lock that keeps the registration of new users atomic.
+     */
+    private final Object registrationLock = new Object();
+    /**
+     * The persistence of the state, null when the state is only kept in memory.
+     */
+    private volatile Persistence persistence;
+    /**
+     * The spilling of old mails to disk, null when all mails are kept in memory.
+     */
+    private volatile MailHistory history;
+    /**
+     * The bus the state changes are published to, null when nobody has subscribed.
+     */
+    private volatile EventBus events;
+    /**
+     * The read replica of the order counters for the reports of mailmen and agents, null when they read live.
+     */
+    private volatile OrderReplica replica;
     /**
      * A private constructor.
      */
@@ -46,6 +93,168 @@ public final class PostOffice {
     public static PostOffice getInstance() {
         return POST_OFFICE;
     }
+    /**
+     * Recovers the state from a data directory and keeps it durable from now on.
+     * Must be called before the first session is opened.
+     * @param directory the data directory
+     * @param snapshotInterval the interval between two snapshots in seconds, 0 for no periodic snapshots
+     * @return the report of the recovery
+     * @throws IOException when the data cannot be read
+     */
+    public String enablePersistence(Path directory, long snapshotInterval) throws IOException {
+        Persistence recovered = Persistence.recover(directory, this, mailStore);
+        if (snapshotInterval > 0) {
+            recovered.startSnapshots(snapshotInterval);
+        }
+        persistence = recovered;
+        MailHistory currentHistory = history;
+        if (currentHistory != null) {
+            currentHistory.start();
+        }
+        for (int mail = 0; mail < mailStore.size(); mail++) {
+            if (mailStore.getState(mail) == MailStore.POSTED) {
+                dispatcher.dispatch(mail, mailStore.getPostalService(mail));
+            }
+        }
+        return recovered.getRecoveryReport();
+    }
+    /**
+     * Keeps only the most recent mails in memory and spills older delivered mails to history segments.
+     * When the state is recovered afterwards, this must be called before {@link #enablePersistence(Path, long)}:
+     * the segments of the earlier run are kept and the recovery leaves their mails on disk.
+     * Otherwise the segments of an earlier run are deleted.
+     * @param directory the directory of the history segments
+     * @param retention the number of the most recent mails that stay in memory
+     * @param recover true if the state is recovered afterwards
+     * @throws IOException when the directory cannot be used or a kept segment is malformed
+     */
+    public void enableHistory(Path directory, int retention, boolean recover) throws IOException {
+        history = new MailHistory(mailStore, directory, retention,
+                limit -> registry.forEachCustomer(customer -> customer.trimSent(limit)), () -> {
+                    Persistence current = persistence;
+                    if (current != null) {
+                        current.sync();
+                    }
+                }, recover);
+        if (!recover) {
+            history.start();
+        }
+    }
+    /**
+     * Stops spilling old mails.
+     * @return the report of the history, null when all mails are kept in memory
+     */
+    public String closeHistory() {
+        MailHistory current = history;
+        if (current == null) {
+            return null;
+        }
+        current.close();
+        return current.getReport();
+    }
+    /**
+     * Starts a consumer of the state changes. The first consumer starts the event bus.
+     * Must be called before the first session is opened, so the consumer gets every change.
+     * @param consumer the consumer
+     */
+    public synchronized void subscribe(EventConsumer consumer) {
+        if (events == null) {
+            events = new EventBus(EventBus.DEFAULT_CAPACITY);
+        }
+        events.subscribe(consumer);
+    }
+    /**
+     * Lets the consumers process all published state changes and stops them.
+     * @return the report of the event bus, null when nobody has subscribed
+     */
+    public synchronized String closeEvents() {
+        EventBus current = events;
+        if (current == null) {
+            return null;
+        }
+        events = null;
+        return current.close();
+    }
+    /**
+     * Lets the reports of mailmen and agents on the orders of a customer read a replica, which is published
+     * periodically and on demand. Must be called after the recovery, so the first version contains the recovered orders.
+     * @param intervalMillis the interval between two versions in milliseconds
+     */
+    public synchronized void enableReplica(long intervalMillis) {
+        OrderReplica created = new OrderReplica(registry);
+        created.publish();
+        created.start(intervalMillis);
+        replica = created;
+    }
+    /**
+     * An agent publishes a new version of the replica, so the reports contain every change until now.
+     * @param session the session
+     * @return OK
+     * @throws Validity when the current user is not an agent
+     */
+    String refreshReplica(Session session) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        OrderReplica current = replica;
+        if (current != null) {
+            current.publish();
+        }
+        return OK;
+    }
+    /**
+     * Stops publishing the replica.
+     * @return the report of the replica, null when the reports read live
+     */
+    public synchronized String closeReplica() {
+        OrderReplica current = replica;
+        if (current == null) {
+            return null;
+        }
+        replica = null;
+        return current.close();
+    }
+    /**
+     * Sets the cost of the password hashes of new and reset passwords.
+     * @param iterations the number of hash iterations, at least 1
+     */
+    public void setHashIterations(int iterations) {
+        credentials.setIterations(iterations);
+    }
+    /**
+     * Starts mailmen that deliver the sent mails in the background, batched and ordered by postal service.
+     * @param numberOfMailmen the number of mailmen
+     */
+    public void startMailmen(int numberOfMailmen) {
+        dispatcher.start(numberOfMailmen);
+    }
+    /**
+     * Lets the mailmen deliver all sent mails and stops them.
+     * @throws InterruptedException when the waiting is interrupted
+     */
+    public void stopMailmen() throws InterruptedException {
+        dispatcher.stop();
+    }
+    /**
+     * Writes all pending journal records and stops the persistence.
+     * @return the write statistics of the journal, null when the state is only kept in memory
+     * @throws IOException when the journal cannot be closed
+     */
+    public String closePersistence() throws IOException {
+        Persistence current = persistence;
+        if (current == null) {
+            return null;
+        }
+        String report = current.getJournalReport();
+        current.close();
+        persistence = null;
+        return report;
+    }
+    /**
+     * Opens a new session without an authenticated user.
+     * @return the new session
+     */
+    public Session openSession() {
+        return new Session();
+    }
     /**
      * Check if the command and the parameter format are correct.
      * @param commands is the command along with its parameters
@@ -54,345 +263,1156 @@ public final class PostOffice {
      */
     void commandValidator(String[] commands, int numberOfCommands) throws Validity {
         if (commands.length != numberOfCommands) {
-            throw new Validity(Error.INCORRECT_INPUT_FORMAT.getMessage()); 
+            throw new Validity(Error.INCORRECT_INPUT_FORMAT); 
         }
     }
     /**
      * Add a customer to the system.
+     * @param session the session
      * @param firstName first name
      * @param lastName last name
      * @param username username
      * @param password password
      * @param idNumber identification number
+     * @return OK
      * @throws Validity when an user has already logged in, or when the informations format is incorrect
      */
-    void addCustomer(String firstName, String lastName, String username, String password, String idNumber) throws Validity {
-        if (currentUser != null) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
+    String addCustomer(Session session, String firstName, String lastName, String username, String password, String idNumber) throws Validity {
+        if (session.isActive()) {
+            throw new Validity(Error.UNAUTHORISED);
         }
-        validator(firstName, "[^;\\n\\r]+", Error.INVALID_FIRSTNAME.getMessage());
-        validator(lastName, "[^;\\n\\r]+", Error.INVALID_LASTNAME.getMessage());
-        validator(username, "[a-zA-Z0-9]{4,9}", Error.INVALID_USERNAME.getMessage());
-        validator(password, "[^;\\n\\r]{4,9}", Error.INVALID_PASSWORD.getMessage());
-        validator(idNumber, "[^,\\n\\r]{9}", Error.INVALID_IDNUMBER.getMessage());
-        if (username.equals(idNumber)) {
-            throw new Validity(Error.USERNAME_MATCH_IDNUMBER.getMessage());
+        checkCustomer(firstName, lastName, username, password, idNumber);
+        byte[] credential = credentials.hash(password);
+        Persistence current = beginUpdate();
+        long position = 0;
+        int id;
+        try {
+            synchronized (registrationLock) {
+                checkUnique(username, idNumber);
+                id = applyAddCustomer(firstName, lastName, username, credential, idNumber);
+                if (current != null) {
+                    position = current.getJournal().logAddCustomer(firstName, lastName, username, credential, idNumber);
+                }
+            }
+        } finally {
+            endUpdate(current, position);
+        }
+        EventBus bus = events;
+        if (bus != null) {
+            bus.customerAdded(id, username);
         }
-        Customer newCustomer = new Customer(firstName, lastName, username, password, idNumber);
-        if (users.containsKey(username)) {
-            throw new Validity(Error.EXISTED_USER.getMessage());
+        return OK;
+    }
+    /**
+     * Add a batch of customers to the system in one pass.
+     * Either all customers of the batch are added, or none of them. The passwords are hashed in parallel.
+     * @param session the session
+     * @param batch the customers, each given as first name, last name, username, password and identification number
+     * @return OK
+     * @throws Validity when an user has already logged in, or when the informations of a customer are incorrect
+     */
+    String addCustomers(Session session, List<String[]> batch) throws Validity {
+        if (session.isActive()) {
+            throw new Validity(Error.UNAUTHORISED);
         }
-        for (Customer cs : customers.values()) {
-            if (cs.getIdNumber().equals(idNumber)) {
-                throw new Validity(Error.EXISTED_IDNUMBER.getMessage());
+        Set<String> usernames = new HashSet<>();
+        Set<String> batchIdNumbers = new HashSet<>();
+        for (String[] parameters : batch) {
+            commandValidator(parameters, 5);
+            checkCustomer(parameters[0], parameters[1], parameters[2], parameters[3], parameters[4]);
+            if (!usernames.add(parameters[2])) {
+                throw new Validity(Error.EXISTED_USER);
             }
-        } 
-        customers.put(username, newCustomer);
-        users.put(username, newCustomer);
-        System.out.println("OK");
+            if (!batchIdNumbers.add(parameters[4])) {
+                throw new Validity(Error.EXISTED_IDNUMBER);
+            }
+        }
+        byte[][] batchCredentials = batch.parallelStream().map(parameters -> credentials.hash(parameters[3]))
+                .toArray(byte[][]::new);
+        Persistence current = beginUpdate();
+        long position = 0;
+        int first;
+        try {
+            synchronized (registrationLock) {
+                for (String[] parameters : batch) {
+                    checkUnique(parameters[2], parameters[4]);
+                }
+                first = registry.size();
+                for (int i = 0; i < batch.size(); i++) {
+                    String[] parameters = batch.get(i);
+                    applyAddCustomer(parameters[0], parameters[1], parameters[2], batchCredentials[i], parameters[4]);
+                    if (current != null) {
+                        position = current.getJournal().logAddCustomer(parameters[0], parameters[1], parameters[2],
+                                batchCredentials[i], parameters[4]);
+                    }
+                }
+            }
+        } finally {
+            endUpdate(current, position);
+        }
+        EventBus bus = events;
+        if (bus != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                bus.customerAdded(first + i, batch.get(i)[2]);
+            }
+        }
+        return OK;
+    }
+    /**
+     * Checks the informations of a new customer.
+     * @param firstName first name
+     * @param lastName last name
+     * @param username username
+     * @param password password
+     * @param idNumber identification number
+     * @throws Validity when the informations format is incorrect
+     */
+    private void checkCustomer(String firstName, String lastName, String username, String password, String idNumber) throws Validity {
+        validator(firstName, FieldRule.FIRST_NAME);
+        validator(lastName, FieldRule.LAST_NAME);
+        validator(username, FieldRule.USERNAME);
+        validator(password, FieldRule.PASSWORD);
+        validator(idNumber, FieldRule.ID_NUMBER);
+        if (username.equals(idNumber)) {
+            throw new Validity(Error.USERNAME_MATCH_IDNUMBER);
+        }
+    }
+    /**
+     * Checks that neither the username nor the identification number of a new customer is taken.
+     * Must be called while holding the registration lock.
+     * @param username username
+     * @param idNumber identification number
+     * @throws Validity when the username or the identification number is already existed
+     */
+    private void checkUnique(String username, String idNumber) throws Validity {
+        if (registry.find(username) != UserRegistry.NO_USER) {
+            throw new Validity(Error.EXISTED_USER);
+        }
+        if (registry.findIdNumber(idNumber) != UserRegistry.NO_USER) {
+            throw new Validity(Error.EXISTED_IDNUMBER);
+        }
+    }
+    /**
+     * Registers a checked customer. The credential is stored first, so a login never finds a user without one.
+     * Must be called while holding the registration lock, or while recovering.
+     * @param firstName first name
+     * @param lastName last name
+     * @param username username
+     * @param credential the credential
+     * @param idNumber identification number
+     * @return the ID of the customer
+     */
+    int applyAddCustomer(String firstName, String lastName, String username, byte[] credential, String idNumber) {
+        credentials.set(registry.size(), credential);
+        return registry.addCustomer(username, firstName, lastName, idNumber, id -> new Customer(id, mailStore));
+    }
+    /**
+     * Registers a checked mailman.
+     * Must be called while holding the registration lock, or while recovering.
+     * @param firstName first name
+     * @param lastName last name
+     * @param personalNumber personal number
+     * @param credential the credential
+     */
+    void applyAddMailman(String firstName, String lastName, String personalNumber, byte[] credential) {
+        credentials.set(registry.size(), credential);
+        registry.addStaff(personalNumber, firstName, lastName, UserRegistry.MAILMAN);
+    }
+    /**
+     * Registers a checked agent.
+     * Must be called while holding the registration lock, or while recovering.
+     * @param firstName first name
+     * @param lastName last name
+     * @param personalNumber personal number
+     * @param credential the credential
+     */
+    void applyAddAgent(String firstName, String lastName, String personalNumber, byte[] credential) {
+        credentials.set(registry.size(), credential);
+        registry.addStaff(personalNumber, firstName, lastName, UserRegistry.AGENT);
     }
     /**
      * Add a mailman to the system.
+     * @param session the session
      * @param firstName first name
      * @param lastName last name
      * @param personalNumber personal number
      * @param password password
+     * @return OK
      * @throws Validity when an user has already logged in, or when the informations format is incorrect
      */
-    void addMailman(String firstName, String lastName, String personalNumber, String password) throws Validity {
-        if (currentUser != null) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
+    String addMailman(Session session, String firstName, String lastName, String personalNumber, String password) throws Validity {
+        if (session.isActive()) {
+            throw new Validity(Error.UNAUTHORISED);
         }
-        validator(firstName, "[^;\\n\\r]+", Error.INVALID_FIRSTNAME.getMessage());
-        validator(lastName, "[^;\\n\\r]+", Error.INVALID_LASTNAME.getMessage());
-        validator(personalNumber, "[1-9][0-9]*", Error.INVALID_PERSONALNUMBER.getMessage());
-        validator(password, "[^;\\n\\r]{4,9}", Error.INVALID_PASSWORD.getMessage());
-        Mailman newMailman = new Mailman(firstName, lastName, personalNumber, password);
-        if (users.containsKey(personalNumber)) {
-            throw new Validity(Error.EXISTED_USER.getMessage());
+        validator(firstName, FieldRule.FIRST_NAME);
+        validator(lastName, FieldRule.LAST_NAME);
+        validator(personalNumber, FieldRule.PERSONAL_NUMBER);
+        validator(password, FieldRule.PASSWORD);
+        byte[] credential = credentials.hash(password);
+        Persistence current = beginUpdate();
+        long position = 0;
+        try {
+            synchronized (registrationLock) {
+                if (registry.find(personalNumber) != UserRegistry.NO_USER) {
+                    throw new Validity(Error.EXISTED_USER);
+                }
+                applyAddMailman(firstName, lastName, personalNumber, credential);
+                if (current != null) {
+                    position = current.getJournal().logAddStaff(false, firstName, lastName, personalNumber, credential);
+                }
+            }
+        } finally {
+            endUpdate(current, position);
         }
-        mailmans.put(personalNumber, newMailman);
-        users.put(personalNumber, newMailman);
-        System.out.println("OK");
+        return OK;
     }
     /**
      * Add an agent to the system.
+     * @param session the session
      * @param firstName first name
      * @param lastName last name
      * @param personalNumber personal number
      * @param password password 
+     * @return OK
      * @throws Validity when an user has already logged in, or when the informations format is incorrect
      */
-    void addAgent(String firstName, String lastName, String personalNumber, String password) throws Validity {
-        if (currentUser != null) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
+    String addAgent(Session session, String firstName, String lastName, String personalNumber, String password) throws Validity {
+        if (session.isActive()) {
+            throw new Validity(Error.UNAUTHORISED);
         }
-        validator(firstName, "[^;\\n\\r]+", Error.INVALID_FIRSTNAME.getMessage());
-        validator(lastName, "[^;\\n\\r]+", Error.INVALID_LASTNAME.getMessage());
-        validator(personalNumber, "[1-9][0-9]*", Error.INVALID_PERSONALNUMBER.getMessage());
-        validator(password, "[^;\\n\\r]{4,9}", Error.INVALID_PASSWORD.getMessage());
-        Agent newAgent = new Agent(firstName, lastName, personalNumber, password);
-        if (users.containsKey(personalNumber)) {
-            throw new Validity(Error.EXISTED_USER.getMessage());
+        validator(firstName, FieldRule.FIRST_NAME);
+        validator(lastName, FieldRule.LAST_NAME);
+        validator(personalNumber, FieldRule.PERSONAL_NUMBER);
+        validator(password, FieldRule.PASSWORD);
+        byte[] credential = credentials.hash(password);
+        Persistence current = beginUpdate();
+        long position = 0;
+        try {
+            synchronized (registrationLock) {
+                if (registry.find(personalNumber) != UserRegistry.NO_USER) {
+                    throw new Validity(Error.EXISTED_USER);
+                }
+                applyAddAgent(firstName, lastName, personalNumber, credential);
+                if (current != null) {
+                    position = current.getJournal().logAddStaff(true, firstName, lastName, personalNumber, credential);
+                }
+            }
+        } finally {
+            endUpdate(current, position);
         }
-        agents.put(personalNumber, newAgent);
-        users.put(personalNumber, newAgent);
-        System.out.println("OK");
+        return OK;
     }
     /**
      * Checks whether the informations given has the correct format.
      * @param object is the information that needed to be checked
-     * @param criteria is the criteria of this checking
-     * @param message the given out message when an error occurs
+     * @param rule is the rule of this checking
      * @throws Validity when information has the incorrect format
      */
-    void validator(String object, String criteria, String message) throws Validity {
-        if (!object.matches(criteria)) {
-            throw new Validity(message);
+    void validator(String object, FieldRule rule) throws Validity {
+        Error error = rule.check(object);
+        if (error != null) {
+            throw new Validity(error);
         }
     }
     /**
      * An user uses this function to log in.
+     * A login with the same password in the same session shortly after a verified one skips the slow hash.
+     * @param session the session
      * @param username username
      * @param password password
-     * @throws Validity if there is already an user in the system or the given information is incorrect
+     * @return the session with the authenticated user
+     * @throws Validity if there is already an user in the session or the given information is incorrect
      */
-    void authenticate(String username, String password) throws Validity {
-        if (currentUser != null) {
-            throw new Validity(Error.AKTIV_USER.getMessage());
+    Session authenticate(Session session, String username, String password) throws Validity {
+        if (session.isActive()) {
+            throw new Validity(Error.AKTIV_USER);
         } 
-        if (!users.containsKey(username)) {
-            throw new Validity("Error, " + username + " and " + password + " is not correct!");
-        } else {
-            User user = users.get(username);
-            if (!user.getPassword().equals(password)) {
-                throw new Validity("Error, " + username + " and " + password + " is not correct!");
-            } else {
-                System.out.println("OK");
-                currentUser = user;
-            }
+        int user = registry.find(username);
+        if (user == UserRegistry.NO_USER || !credentials.verify(session, user, password)) {
+            throw new Validity(Error.INCORRECT_LOGIN, Error.INCORRECT_LOGIN.getMessage().formatted(username, password));
         }
+        session.setUser(user);
+        return session;
     }
     /**
      * Log out.
+     * @param session the session
+     * @return OK
      * @throws Validity when the user hasn't logged in yet 
      */
-    void logout() throws Validity {
-        if (currentUser == null) {
-            throw new Validity(Error.INAKTIV_USER.getMessage()); 
+    String logout(Session session) throws Validity {
+        if (!session.isActive()) {
+            throw new Validity(Error.INAKTIV_USER); 
         }
-        currentUser = null;
-        System.out.println("OK");
+        session.setUser(UserRegistry.NO_USER);
+        return OK;
     }
     /**
      * A customer sends an email to another customer.
+     * @param session the session
      * @param postalService the chosen postal service
      * @param receiver receiver
+     * @return OK
      * @throws Validity when the user is not a customer, or the information of the postal service of the receiver is incorrect
      */
-    void sendMail(String postalService, String receiver) throws Validity {
-        if (!(currentUser instanceof Customer)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
-        } 
-        Customer currentCustomer = (Customer) currentUser;
-        if (!customers.containsKey(receiver)) {
-            throw new Validity(Error.NO_RECEIVER.getMessage());
+    String sendMail(Session session, String postalService, String receiver) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        Customer receivingCustomer = customer(receiver);
+        if (receivingCustomer == null) {
+            throw new Validity(Error.NO_RECEIVER);
         }
-        for (PostalService ps : PostalService.values()) {
-            if (ps.getPostalService().equals(postalService)) {
-                String sender = currentCustomer.getUsername();
-                currentCustomer.sendMail(sender, postalService, receiver);
-                Customer receivingCustomer = customers.get(receiver);
-                receivingCustomer.receiveMail(sender, postalService, receiver);
-                System.out.println("OK");
-                return;
-            }
-        }
-        throw new Validity(Error.NO_POSTAL_SERVICE.getMessage());
+        deliver(currentCustomer, postalService(postalService), receivingCustomer);
+        return OK;
     }
     /**
      * A mailman sends an email from a customer to another.
+     * @param session the session
      * @param sender sender
      * @param postalService the chosen postal service
      * @param receiver receiver
+     * @return OK
      * @throws Validity when the current user is not a mailman, or when the given information is incorrect
      */
-    void sendMail(String postalService, String receiver, String sender) throws Validity {
-        if (!(currentUser instanceof Mailman)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
-        } 
-        if (!customers.containsKey(sender)) {
-            throw new Validity(Error.NO_SENDER.getMessage());
+    String sendMail(Session session, String postalService, String receiver, String sender) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN);
+        Customer sendingCustomer = customer(sender);
+        if (sendingCustomer == null) {
+            throw new Validity(Error.NO_SENDER);
         }
-        if (!customers.containsKey(receiver)) {
-            throw new Validity(Error.NO_RECEIVER.getMessage());
+        Customer receivingCustomer = customer(receiver);
+        if (receivingCustomer == null) {
+            throw new Validity(Error.NO_RECEIVER);
         }
-        for (PostalService ps : PostalService.values()) {
-            if (ps.getPostalService().equals(postalService)) {
-                Customer sendingCustomer = customers.get(sender);
-                sendingCustomer.sendMail(sender, postalService, receiver);
-                Customer receivingCustomer = customers.get(receiver);
-                receivingCustomer.receiveMail(sender, postalService, receiver);
-                System.out.println("OK");
-                return;
+        deliver(sendingCustomer, postalService(postalService), receivingCustomer);
+        return OK;
+    }
+    /**
+     * A customer sends the same mail to many customers.
+     * @param session the session
+     * @param postalService the chosen postal service
+     * @param receivers the receivers
+     * @return OK
+     * @throws Validity when the user is not a customer, or the information of the postal service or of a receiver
+     *     is incorrect, then no mail is sent
+     */
+    String multicastMail(Session session, String postalService, List<String> receivers) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        Customer[] receivingCustomers = receivers(receivers);
+        multicast(currentCustomer, postalService(postalService), receivingCustomers);
+        return OK;
+    }
+    /**
+     * A mailman sends the same mail of a customer to many customers.
+     * @param session the session
+     * @param postalService the chosen postal service
+     * @param sender sender
+     * @param receivers the receivers
+     * @return OK
+     * @throws Validity when the current user is not a mailman, or when the given information is incorrect,
+     *     then no mail is sent
+     */
+    String multicastMail(Session session, String postalService, String sender, List<String> receivers) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN);
+        Customer sendingCustomer = customer(sender);
+        if (sendingCustomer == null) {
+            throw new Validity(Error.NO_SENDER);
+        }
+        Customer[] receivingCustomers = receivers(receivers);
+        multicast(sendingCustomer, postalService(postalService), receivingCustomers);
+        return OK;
+    }
+    /**
+     * Looks up a postal service by its name.
+     * @param postalService the name of the postal service
+     * @return the postal service
+     * @throws Validity when there is no such postal service
+     */
+    private static PostalService postalService(String postalService) throws Validity {
+        PostalService ps = PostalService.stringToPostalService(postalService);
+        if (ps == null) {
+            throw new Validity(Error.NO_POSTAL_SERVICE);
+        }
+        return ps;
+    }
+    /**
+     * Looks up all receivers of a multicast in one pass.
+     * @param receivers the usernames of the receivers
+     * @return the receivers
+     * @throws Validity when there is no receiver or one of them does not exist
+     */
+    private Customer[] receivers(List<String> receivers) throws Validity {
+        if (receivers.isEmpty()) {
+            throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+        }
+        Customer[] receivingCustomers = new Customer[receivers.size()];
+        for (int i = 0; i < receivingCustomers.length; i++) {
+            receivingCustomers[i] = customer(receivers.get(i));
+            if (receivingCustomers[i] == null) {
+                throw new Validity(Error.NO_RECEIVER);
+            }
+        }
+        return receivingCustomers;
+    }
+    /**
+     * Stores a mail once in the mail store, files it in the sent mails of the sender and dispatches it to the receiver.
+     * @param sender sender
+     * @param postalService the chosen postal service
+     * @param receiver receiver
+     */
+    private void deliver(Customer sender, PostalService postalService, Customer receiver) {
+        Persistence current = beginUpdate();
+        Journal journal = null;
+        long position = 0;
+        int mail;
+        try {
+            mail = mailStore.add(sender.getId(), postalService, receiver.getId());
+            sender.sendMail(mail, postalService);
+            billing.book(postalService, 1);
+            analytics.record(sender.getId(), receiver.getId());
+            if (current != null) {
+                journal = current.getJournal();
+                position = journal.logSendMail(mail, sender.getId(), postalService, receiver.getId());
+            }
+        } finally {
+            endUpdate(current, 0);
+        }
+        EventBus bus = events;
+        if (bus != null) {
+            bus.mailSent(mail, sender.getId(), receiver.getId(), postalService);
+        }
+        dispatcher.dispatch(mail, postalService);
+        afterAdd();
+        // unlike endUpdate, the wait follows the dispatch, so the commit of the record overlaps with the delivery;
+        // the journal is taken under the lock, a snapshot may have switched to the next one since
+        if (journal != null) {
+            journal.awaitDurable(position);
+        }
+    }
+    /**
+     * Lets the history spill old mails after new mails have been stored.
+     */
+    private void afterAdd() {
+        MailHistory current = history;
+        if (current != null) {
+            current.afterAdd();
+        }
+    }
+    /**
+     * Stores the same mail to many receivers under consecutive IDs, books them once for the sender
+     * and fills the inboxes of the receivers, in parallel for large multicasts.
+     * @param sender sender
+     * @param postalService the chosen postal service
+     * @param receivers receivers
+     */
+    private void multicast(Customer sender, PostalService postalService, Customer[] receivers) {
+        int[] receiverIds = new int[receivers.length];
+        for (int i = 0; i < receivers.length; i++) {
+            receiverIds[i] = receivers[i].getId();
+        }
+        Persistence current = beginUpdate();
+        Journal journal = null;
+        long position = 0;
+        int first;
+        try {
+            first = mailStore.addAll(sender.getId(), postalService, receiverIds);
+            sender.sendMails(first, receiverIds.length, postalService);
+            billing.book(postalService, receiverIds.length);
+            analytics.record(sender.getId(), receiverIds);
+            if (current != null) {
+                journal = current.getJournal();
+                position = journal.logMulticastMail(first, sender.getId(), postalService, receiverIds);
+            }
+        } finally {
+            endUpdate(current, 0);
+        }
+        EventBus bus = events;
+        if (bus != null) {
+            bus.mailsSent(first, sender.getId(), receiverIds, postalService);
+        }
+        if (!dispatcher.dispatchAll(first, receiverIds.length, postalService)) {
+            handOverAll(first, receiverIds.length, postalService);
+        }
+        afterAdd();
+        // as in deliver, the wait follows the dispatch on the journal the record was appended to
+        if (journal != null) {
+            journal.awaitDurable(position);
+        }
+    }
+    /**
+     * Files mails with consecutive IDs of one postal service in the inboxes of their receivers
+     * and waits once until all their journal records are durable.
+     * @param first the ID of the first mail
+     * @param count the number of mails
+     * @param postalService the postal service of the mails
+     */
+    private void handOverAll(int first, int count, PostalService postalService) {
+        Persistence current = beginUpdate();
+        long position = 0;
+        try {
+            IntStream mails = IntStream.range(first, first + count);
+            if (count >= PARALLEL_DELIVERY) {
+                mails = mails.parallel();
+            }
+            position = mails.mapToLong(mail -> {
+                long start = System.nanoTime();
+                long end = fileMail(mail, current);
+                dispatcher.record(postalService, System.nanoTime() - start);
+                return end;
+            }).max().orElse(0);
+        } finally {
+            endUpdate(current, position);
+        }
+    }
+    /**
+     * Files a dispatched mail in the inbox of its receiver.
+     * @param mail the ID of the mail
+     */
+    private void handOver(int mail) {
+        Persistence current = beginUpdate();
+        long position = 0;
+        try {
+            position = fileMail(mail, current);
+        } finally {
+            endUpdate(current, position);
+        }
+    }
+    /**
+     * Files a mail in the inbox of its receiver.
+     * The journal record is appended while the receiver is locked, so it keeps its order to collecting the mails.
+     * @param mail the ID of the mail
+     * @param current the persistence returned by {@link #beginUpdate()}
+     * @return the end position of the journal record, 0 when the state is only kept in memory
+     */
+    private long fileMail(int mail, Persistence current) {
+        Customer receiver = customerById(mailStore.getReceiver(mail));
+        synchronized (receiver) {
+            receiver.receiveMail(mail, mailStore.getPostalService(mail));
+            mailStore.markDelivered(mail);
+            return (current == null) ? 0 : current.getJournal().logDeliverMail(mail);
+        }
+    }
+    /**
+     * Collects all mails of a customer.
+     * @param customer the customer
+     * @return true if there were mails in the inbox, otherwise false
+     */
+    private boolean collect(Customer customer) {
+        Persistence current = beginUpdate();
+        long position = 0;
+        int count;
+        try {
+            synchronized (customer) {
+                count = customer.collectMail();
+                if (count == 0) {
+                    return false;
+                }
+                if (current != null) {
+                    position = current.getJournal().logGetMail(customer.getId());
+                }
             }
+        } finally {
+            endUpdate(current, position);
+        }
+        EventBus bus = events;
+        if (bus != null) {
+            bus.mailCollected(customer.getId(), count);
         }
-        throw new Validity(Error.NO_POSTAL_SERVICE.getMessage());
+        return true;
     }
     /**
      * A customer gets a mail.
+     * @param session the session
+     * @return OK
      * @throws Validity when the current user is not a customer. or his inbox is empty
      */
-    void getMail() throws Validity {
-        if (!(currentUser instanceof Customer)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
-        } 
-        Customer currentCustomer = (Customer) currentUser;
-        if (currentCustomer.getInbox().isEmpty()) {
-            throw new Validity(Error.EMPTY_INBOX.getMessage());
-        } else {
-            currentCustomer.getMail();
-            System.out.println("OK");
-        } 
+    String getMail(Session session) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        if (!collect(currentCustomer)) {
+            throw new Validity(Error.EMPTY_INBOX);
+        }
+        return OK;
     }
     /**
      * A mailman gets mail for his customer.
+     * @param session the session
      * @param username customer
+     * @return OK
      * @throws Validity when the current user is not a mailman, or when the inbox of the customer is empty
      */
-    void getMail(String username) throws Validity {
-        if (!(currentUser instanceof Mailman)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
-        } 
-        if (!customers.containsKey(username)) {
-            throw new Validity(Error.NO_CUSTOMER.getMessage());
-        }
-        Customer receivingCustomer = customers.get(username);
-        if (receivingCustomer.getInbox().isEmpty()) {
-            throw new Validity(Error.EMPTY_INBOX.getMessage());
-        } else {
-            receivingCustomer.getMail();
-            System.out.println("OK");
-        } 
+    String getMail(Session session, String username) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN);
+        Customer receivingCustomer = customer(username);
+        if (receivingCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
+        }
+        if (!collect(receivingCustomer)) {
+            throw new Validity(Error.EMPTY_INBOX);
+        }
+        return OK;
     }
     /**
-     * Gives out a list of cost of postal services of the customer.
-     * @throws Validity when the current user is not a customer
+     * A customer reads the oldest mails of the inbox without acknowledging them.
+     * @param session the session
+     * @param size the maximal number of mails
+     * @return one line per mail, as cursor;sender;postal service
+     * @throws Validity when the current user is not a customer, the size is incorrect or the inbox is empty
      */
-    void listMail() throws Validity {
-        if (!(currentUser instanceof Customer)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
+    String peekMail(Session session, String size) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        return pageLines(currentCustomer.peekMail(pageSize(size)));
+    }
+    /**
+     * A mailman reads the oldest mails of the inbox of a customer without acknowledging them.
+     * @param session the session
+     * @param username customer
+     * @param size the maximal number of mails
+     * @return one line per mail, as cursor;sender;postal service
+     * @throws Validity when the current user is not a mailman, the given information is incorrect or the inbox is empty
+     */
+    String peekMail(Session session, String username, String size) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN);
+        Customer receivingCustomer = customer(username);
+        if (receivingCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
         }
-        Customer currentCustomer = (Customer) currentUser;
-        if (currentCustomer.getTotalOrders().isEmpty()) {
-            System.out.println("OK");
-            return;
+        return pageLines(receivingCustomer.peekMail(pageSize(size)));
+    }
+    /**
+     * A customer reads a page of the inbox starting at a cursor without acknowledging it.
+     * @param session the session
+     * @param cursor the cursor to start at
+     * @param size the maximal number of mails
+     * @return one line per mail, as cursor;sender;postal service
+     * @throws Validity when the current user is not a customer, the cursor or the size is incorrect
+     *     or there is no mail at or after the cursor
+     */
+    String fetchMail(Session session, String cursor, String size) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        return pageLines(currentCustomer.readMail(number(cursor), pageSize(size)));
+    }
+    /**
+     * A mailman reads a page of the inbox of a customer starting at a cursor without acknowledging it.
+     * @param session the session
+     * @param username customer
+     * @param cursor the cursor to start at
+     * @param size the maximal number of mails
+     * @return one line per mail, as cursor;sender;postal service
+     * @throws Validity when the current user is not a mailman, the given information is incorrect
+     *     or there is no mail at or after the cursor
+     */
+    String fetchMail(Session session, String username, String cursor, String size) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN);
+        Customer receivingCustomer = customer(username);
+        if (receivingCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
         }
-        for (PostalService ps : PostalService.values()) {
-            Map<String, Integer> receivedOrders = currentCustomer.getReceivedOrders();
-            String postalService = ps.getPostalService();
-            if (receivedOrders.containsKey(postalService)) {
-                int numberOfOrders = receivedOrders.get(postalService);
-                System.out.println(postalService + ";" + numberOfOrders);
+        return pageLines(receivingCustomer.readMail(number(cursor), pageSize(size)));
+    }
+    /**
+     * A customer acknowledges all mails of the inbox before a cursor.
+     * @param session the session
+     * @param cursor the cursor of the first mail that stays
+     * @return OK
+     * @throws Validity when the current user is not a customer or the cursor is incorrect
+     */
+    String ackMail(Session session, String cursor) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        acknowledge(currentCustomer, number(cursor));
+        return OK;
+    }
+    /**
+     * A mailman acknowledges all mails of the inbox of a customer before a cursor.
+     * @param session the session
+     * @param username customer
+     * @param cursor the cursor of the first mail that stays
+     * @return OK
+     * @throws Validity when the current user is not a mailman or the given information is incorrect
+     */
+    String ackMail(Session session, String username, String cursor) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN);
+        Customer receivingCustomer = customer(username);
+        if (receivingCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
+        }
+        acknowledge(receivingCustomer, number(cursor));
+        return OK;
+    }
+    /**
+     * Acknowledges the mails of a customer before a cursor.
+     * @param customer the customer
+     * @param cursor the cursor of the first mail that stays
+     */
+    private void acknowledge(Customer customer, long cursor) {
+        Persistence current = beginUpdate();
+        long position = 0;
+        int count;
+        try {
+            synchronized (customer) {
+                count = customer.acknowledgeMail(cursor);
+                if (count > 0 && current != null) {
+                    position = current.getJournal().logAckMail(customer.getId(), count);
+                }
             }
+        } finally {
+            endUpdate(current, position);
+        }
+        EventBus bus = events;
+        if (count > 0 && bus != null) {
+            bus.mailCollected(customer.getId(), count);
         }
     }
     /**
-     * A mailman or an agent gives out a list of cost of postal service of a customer.
-     * @param username customer
-     * @throws Validity when the current user is neither a mailman nor an agent
+     * Lists the mails of a page of an inbox.
+     * @param page the page
+     * @return one line per mail, as cursor;sender;postal service
+     * @throws Validity when the page is empty
      */
-    void listMail(String username) throws Validity {
-        if (!(currentUser instanceof Mailman || currentUser instanceof Agent)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
+    private String pageLines(InboxPage page) throws Validity {
+        if (page.isEmpty()) {
+            throw new Validity(Error.EMPTY_INBOX);
         }
-        if (!customers.containsKey(username)) {
-            throw new Validity(Error.NO_CUSTOMER.getMessage());
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
+        int[] mails = page.getMails();
+        for (int i = 0; i < mails.length; i++) {
+            lines.add((page.getCursor() + i) + ";" + registry.getName(mailStore.getSender(mails[i])) + ";"
+                    + mailStore.getPostalService(mails[i]).getPostalService());
+        }
+        return lines.toString();
+    }
+    /**
+     * Parses the size of a page.
+     * @param size the size
+     * @return the size, between 1 and {@link #MAX_PAGE_SIZE}
+     * @throws Validity when the size is no number in that range
+     */
+    private static int pageSize(String size) throws Validity {
+        long pageSize = number(size);
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new Validity(Error.INCORRECT_INPUT_FORMAT);
         }
-        Customer currentCustomer = customers.get(username);
-        if (currentCustomer.getTotalOrders().isEmpty()) {
-            System.out.println("OK");
-            return;
+        return (int) pageSize;
+    }
+    /**
+     * Parses a non-negative decimal number.
+     * @param value the number
+     * @return the number
+     * @throws Validity when the value is no decimal number of at most 18 digits
+     */
+    private static long number(String value) throws Validity {
+        if (value.isEmpty() || value.length() > 18) {
+            throw new Validity(Error.INCORRECT_INPUT_FORMAT);
         }
-        for (PostalService ps : PostalService.values()) {
-            Map<String, Integer>  receivedOrders = currentCustomer.getReceivedOrders();
-            String postalService = ps.getPostalService();
-            if (receivedOrders.containsKey(postalService)) {
-                int numberOfOrders = receivedOrders.get(postalService);
-                System.out.println(postalService + ";" + numberOfOrders);
+        long number = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char digit = value.charAt(i);
+            if (digit < '0' || digit > '9') {
+                throw new Validity(Error.INCORRECT_INPUT_FORMAT);
             }
+            number = number * 10 + (digit - '0');
         }
+        return number;
     }
     /**
      * Gives out a list of cost of postal services of the customer.
+     * @param session the session
+     * @return the listed lines, or OK when there is nothing to list
      * @throws Validity when the current user is not a customer
      */
-    void listPrice() throws Validity {
-        if (!(currentUser instanceof Customer)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
-        }
-        Customer currentCustomer = (Customer) currentUser;
-        if (currentCustomer.getTotalOrders().isEmpty()) {
-            System.out.println("OK");
-            return;
+    String listMail(Session session) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        return receivedOrderLines(currentCustomer.hasOrders(), currentCustomer.getReceivedOrders());
+    }
+    /**
+     * A mailman or an agent gives out a list of cost of postal service of a customer.
+     * @param session the session
+     * @param username customer
+     * @return the listed lines, or OK when there is nothing to list
+     * @throws Validity when the current user is neither a mailman nor an agent
+     */
+    String listMail(Session session, String username) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN | UserRegistry.AGENT);
+        Customer currentCustomer = customer(username);
+        if (currentCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
         }
-        for (PostalService ps : PostalService.values()) {
-            Map<String, Integer> totalOrders = currentCustomer.getTotalOrders();
-            String postalService = ps.getPostalService();
-            if (totalOrders.containsKey(postalService)) {
-                int numberOfOrders = totalOrders.get(postalService);
-                double totalPrice = numberOfOrders * ps.getPrice();
-                System.out.printf(java.util.Locale.US, "%s;%d;%.2f%n", postalService, numberOfOrders, totalPrice);
-            }
+        OrderReplica current = replica;
+        if (current == null) {
+            return receivedOrderLines(currentCustomer.hasOrders(), currentCustomer.getReceivedOrders());
         }
+        OrderSnapshot snapshot = current.getCurrent();
+        return receivedOrderLines(snapshot.hasOrders(currentCustomer.getId()),
+                snapshot.getReceivedOrders(currentCustomer.getId()));
+    }
+    /**
+     * Gives out a list of cost of postal services of the customer.
+     * @param session the session
+     * @return the listed lines, or OK when there is nothing to list
+     * @throws Validity when the current user is not a customer
+     */
+    String listPrice(Session session) throws Validity {
+        Customer currentCustomer = currentCustomer(session);
+        return priceLines(currentCustomer.hasOrders(), currentCustomer.getTotalOrders());
     }
     /**
      * A mailman or an agent gives out a list of cost of postal service of a customer.
+     * @param session the session
      * @param username customer
+     * @return the listed lines, or OK when there is nothing to list
      * @throws Validity when the current user is neither a mailman nor an agent
      */
-    void listPrice(String username) throws Validity {
-        if (!(currentUser instanceof Mailman || currentUser instanceof Agent)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
+    String listPrice(Session session, String username) throws Validity {
+        checkRole(session, UserRegistry.MAILMAN | UserRegistry.AGENT);
+        Customer currentCustomer = customer(username);
+        if (currentCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
+        }
+        OrderReplica current = replica;
+        if (current == null) {
+            return priceLines(currentCustomer.hasOrders(), currentCustomer.getTotalOrders());
+        }
+        OrderSnapshot snapshot = current.getCurrent();
+        return priceLines(snapshot.hasOrders(currentCustomer.getId()), snapshot.getTotalOrders(currentCustomer.getId()));
+    }
+    /**
+     * Lists the number of received mails of a customer per postal service.
+     * A customer who has never ordered anything gets only an OK.
+     * @param hasOrders whether the customer has ordered anything
+     * @param receivedOrders the received orders of the customer
+     * @return the listed lines, or OK when there is nothing to list
+     */
+    private String receivedOrderLines(boolean hasOrders, OrderTotals receivedOrders) {
+        if (!hasOrders) {
+            return OK;
+        }
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
+        for (PostalService ps : PostalService.values()) {
+            long numberOfOrders = receivedOrders.getOrders(ps);
+            if (numberOfOrders > 0) {
+                lines.add(ps.getPostalService() + ";" + numberOfOrders);
+            }
+        }
+        return lines.toString();
+    }
+    /**
+     * Lists the number and the price of the orders of a customer per postal service.
+     * A customer who has never ordered anything gets only an OK.
+     * @param hasOrders whether the customer has ordered anything
+     * @param totalOrders the orders of the customer and their prices
+     * @return the listed lines, or OK when there is nothing to list
+     */
+    private String priceLines(boolean hasOrders, OrderTotals totalOrders) {
+        if (!hasOrders) {
+            return OK;
         }
-        if (!customers.containsKey(username)) {
-            throw new Validity(Error.NO_CUSTOMER.getMessage());
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
+        for (PostalService ps : PostalService.values()) {
+            long numberOfOrders = totalOrders.getOrders(ps);
+            if (numberOfOrders > 0) {
+                lines.add(ps.getPostalService() + ";" + numberOfOrders + ";" + OrderTotals.formatCents(totalOrders.getCents(ps)));
+            }
         }
-        Customer currentCustomer = customers.get(username);
-        if (currentCustomer.getTotalOrders().isEmpty()) {
-            System.out.println("OK");
-            return;
+        return lines.toString();
+    }
+    /**
+     * An agent gives out the office wide number and revenue of orders per postal service and in total.
+     * @param session the session
+     * @return the listed lines, or OK when there is nothing to list
+     * @throws Validity when the current user is not an agent
+     */
+    String listRevenue(Session session) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        OrderTotals totals = billing.getTotals();
+        if (totals.getTotalOrders() == 0) {
+            return OK;
         }
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
         for (PostalService ps : PostalService.values()) {
-            Map<String, Integer>  totalOrders = currentCustomer.getTotalOrders();
-            String postalService = ps.getPostalService();
-            if (totalOrders.containsKey(postalService)) {
-                int numberOfOrders = totalOrders.get(postalService);
-                double totalPrice = numberOfOrders * ps.getPrice();
-                System.out.printf(java.util.Locale.US, "%s;%d;%.2f%n", postalService, numberOfOrders, totalPrice);
+            long numberOfOrders = totals.getOrders(ps);
+            if (numberOfOrders > 0) {
+                lines.add(ps.getPostalService() + ";" + numberOfOrders + ";" + OrderTotals.formatCents(totals.getCents(ps)));
             }
         }
+        lines.add("Total;" + totals.getTotalOrders() + ";" + OrderTotals.formatCents(totals.getTotalCents()));
+        return lines.toString();
+    }
+    /**
+     * An agent gives out the queue depth, the number of delivered mails and the delivery latency per postal service.
+     * @param session the session
+     * @return one line per postal service
+     * @throws Validity when the current user is not an agent
+     */
+    String deliveryStats(Session session) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        return dispatcher.getReport();
+    }
+    /**
+     * An agent gives out the customers that sent the most mails.
+     * @param session the session
+     * @param limit the maximal number of customers
+     * @return the lines username;count ordered by descending count, or OK when no mail has been sent
+     * @throws Validity when the current user is not an agent or the limit has the incorrect format
+     */
+    String topSenders(Session session, String limit) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        return customerLines(analytics.topSenders(topLimit(limit)));
+    }
+    /**
+     * An agent gives out the customers that received the most mails.
+     * @param session the session
+     * @param limit the maximal number of customers
+     * @return the lines username;count ordered by descending count, or OK when no mail has been sent
+     * @throws Validity when the current user is not an agent or the limit has the incorrect format
+     */
+    String topReceivers(Session session, String limit) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        return customerLines(analytics.topReceivers(topLimit(limit)));
+    }
+    /**
+     * An agent gives out the pairs of customers with the most mails from the one to the other.
+     * @param session the session
+     * @param limit the maximal number of pairs
+     * @return the lines sender;receiver;count ordered by descending count, or OK when no mail has been sent
+     * @throws Validity when the current user is not an agent or the limit has the incorrect format
+     */
+    String topPairs(Session session, String limit) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        long[][] top = analytics.topPairs(topLimit(limit));
+        if (top.length == 0) {
+            return OK;
+        }
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
+        for (long[] entry : top) {
+            lines.add(registry.getName(TrafficAnalytics.sender(entry[0])) + ";"
+                    + registry.getName(TrafficAnalytics.receiver(entry[0])) + ";" + entry[1]);
+        }
+        return lines.toString();
+    }
+    /**
+     * An agent gives out the estimated number of mails a customer sent to another.
+     * The estimate is never below the real number.
+     * @param session the session
+     * @param sender the username of the sender
+     * @param receiver the username of the receiver
+     * @return the estimated number of mails
+     * @throws Validity when the current user is not an agent or a customer does not exist
+     */
+    String pairTraffic(Session session, String sender, String receiver) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        Customer sendingCustomer = customer(sender);
+        Customer receivingCustomer = customer(receiver);
+        if (sendingCustomer == null || receivingCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
+        }
+        return String.valueOf(analytics.pairTraffic(sendingCustomer.getId(), receivingCustomer.getId()));
+    }
+    /**
+     * Formats a top list of customers.
+     * @param top the IDs in the first column and the counts in the second
+     * @return the lines username;count, or OK when the list is empty
+     */
+    private String customerLines(long[][] top) {
+        if (top.length == 0) {
+            return OK;
+        }
+        StringJoiner lines = new StringJoiner(System.lineSeparator());
+        for (long[] entry : top) {
+            lines.add(registry.getName((int) entry[0]) + ";" + entry[1]);
+        }
+        return lines.toString();
+    }
+    /**
+     * Parses the length of a top list.
+     * @param limit the length
+     * @return the length, between 1 and {@link #MAX_TOP}
+     * @throws Validity when the length is no number in that range
+     */
+    private static int topLimit(String limit) throws Validity {
+        long topLimit = number(limit);
+        if (topLimit < 1 || topLimit > MAX_TOP) {
+            throw new Validity(Error.INCORRECT_INPUT_FORMAT);
+        }
+        return (int) topLimit;
     }
     /**
      * Reset a customer's password.
+     * @param session the session
      * @param username customer
      * @param idNumber identification number
      * @param password new password
+     * @return OK
      * @throws Validity when the current user is not an agent or the given information ist incorrect or has the incorrect format
      */
-    void resetPin(String username, String idNumber, String password) throws Validity {
-        if (!(currentUser instanceof Agent)) {
-            throw new Validity(Error.UNAUTHORISED.getMessage());
+    String resetPin(Session session, String username, String idNumber, String password) throws Validity {
+        checkRole(session, UserRegistry.AGENT);
+        Customer currentCustomer = customer(username);
+        if (currentCustomer == null) {
+            throw new Validity(Error.NO_CUSTOMER);
         }
-        if (!customers.containsKey(username)) {
-            throw new Validity(Error.NO_CUSTOMER.getMessage());
-        } 
-        Customer currentCustomer = customers.get(username);
-        if (!currentCustomer.getIdNumber().equals(idNumber)) {
-            throw new Validity(Error.INCORRECT_IDNUMBER.getMessage());
+        if (registry.findIdNumber(idNumber) != currentCustomer.getId()) {
+            throw new Validity(Error.INCORRECT_IDNUMBER);
+        }
+        validator(password, FieldRule.PASSWORD);
+        byte[] credential = credentials.hash(password);
+        Persistence current = beginUpdate();
+        long position = 0;
+        try {
+            synchronized (currentCustomer) {
+                credentials.set(currentCustomer.getId(), credential);
+                if (current != null) {
+                    position = current.getJournal().logResetPin(currentCustomer.getId(), credential);
+                }
+            }
+        } finally {
+            endUpdate(current, position);
+        }
+        EventBus bus = events;
+        if (bus != null) {
+            bus.pinReset(currentCustomer.getId());
+        }
+        return OK;
+    }
+    /**
+     * Starts an operation that changes the state.
+     * @return the persistence the operation has to be journaled in, null when the state is only kept in memory
+     */
+    private Persistence beginUpdate() {
+        Persistence current = persistence;
+        if (current != null) {
+            current.beginUpdate();
+        }
+        return current;
+    }
+    /**
+     * Ends an operation that changes the state and waits until its journal records are durable.
+     * @param current the persistence returned by {@link #beginUpdate()}
+     * @param position the end position of the last journal record of the operation
+     */
+    private void endUpdate(Persistence current, long position) {
+        if (current != null) {
+            Journal journal = current.getJournal();
+            current.endUpdate();
+            journal.awaitDurable(position);
         }
-        validator(password, "[^;\\n\\r]{4,9}", Error.INVALID_PASSWORD.getMessage());
-        currentCustomer.setPassword(password);
-        System.out.println("OK");
+    }
+    /**
+     * Stores a recovered mail that has been sent.
+     * @param mail the ID of the mail
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receiver the ID of the receiver
+     */
+    void applySendMail(int mail, int sender, PostalService postalService, int receiver) {
+        mailStore.restore(mail, sender, postalService, receiver);
+        customerById(sender).sendMail(mail, postalService);
+        billing.book(postalService, 1);
+        analytics.record(sender, receiver);
+    }
+    /**
+     * Stores recovered mails of one sender to many receivers.
+     * @param first the ID of the first mail
+     * @param sender the ID of the sender
+     * @param postalService the postal service
+     * @param receivers the IDs of the receivers
+     */
+    void applyMulticastMail(int first, int sender, PostalService postalService, int[] receivers) {
+        for (int i = 0; i < receivers.length; i++) {
+            mailStore.restore(first + i, sender, postalService, receivers[i]);
+        }
+        customerById(sender).sendMails(first, receivers.length, postalService);
+        billing.book(postalService, receivers.length);
+        analytics.record(sender, receivers);
+    }
+    /**
+     * Files a recovered mail in the inbox of its receiver.
+     * @param mail the ID of the mail
+     */
+    void applyDeliverMail(int mail) {
+        mailStore.markDelivered(mail);
+        customerById(mailStore.getReceiver(mail)).receiveMail(mail, mailStore.getPostalService(mail));
+    }
+    /**
+     * Collects the mails of a customer while recovering.
+     * @param customer the ID of the customer
+     */
+    void applyGetMail(int customer) {
+        customerById(customer).getMail();
+    }
+    /**
+     * Acknowledges the oldest mails of a customer while recovering.
+     * @param customer the ID of the customer
+     * @param count the number of mails
+     */
+    void applyAckMail(int customer, int count) {
+        customerById(customer).dropMail(count);
+    }
+    /**
+     * Resets the password of a customer while recovering.
+     * @param customer the ID of the customer
+     * @param credential the new credential
+     */
+    void applyResetPin(int customer, byte[] credential) {
+        credentials.set(customer, credential);
+    }
+    /**
+     * Gives out the credential of a user.
+     * @param user the ID of the user
+     * @return the credential
+     */
+    byte[] getCredential(int user) {
+        return credentials.get(user);
+    }
+    /**
+     * Gives out a customer by the ID in the user registry.
+     * @param id the ID
+     * @return the customer
+     */
+    private Customer customerById(int id) {
+        return registry.getCustomer(id);
+    }
+    /**
+     * Looks up a customer by username.
+     * @param username username
+     * @return the customer, null when there is no such customer
+     */
+    private Customer customer(String username) {
+        int id = registry.find(username);
+        return registry.hasRole(id, UserRegistry.CUSTOMER) ? registry.getCustomer(id) : null;
+    }
+    /**
+     * Gives out the customer that is logged in a session.
+     * @param session the session
+     * @return the customer
+     * @throws Validity when the current user is not a customer
+     */
+    private Customer currentCustomer(Session session) throws Validity {
+        checkRole(session, UserRegistry.CUSTOMER);
+        return registry.getCustomer(session.getUser());
+    }
+    /**
+     * Checks that the user logged in a session has one of the given roles.
+     * @param session the session
+     * @param role the roles, combined from the roles of {@link UserRegistry}
+     * @throws Validity when the current user has none of the roles
+     */
+    void checkRole(Session session, int role) throws Validity {
+        if (!registry.hasRole(session.getUser(), role)) {
+            throw new Validity(Error.UNAUTHORISED);
+        }
+    }
+    /**
+     * Gives out the registry of all users.
+     * @return the registry
+     */
+    UserRegistry getRegistry() {
+        return registry;
+    }
+    /**
+     * Gives out all customers ordered by their ID.
+     * @return the customers
+     */
+    List<Customer> getCustomersById() {
+        List<Customer> ordered = new ArrayList<>();
+        registry.forEachCustomer(ordered::add);
+        return ordered;
     }
 }
\ No newline at end of file
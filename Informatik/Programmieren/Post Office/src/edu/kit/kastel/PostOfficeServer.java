@@ -0,0 +1,185 @@
+package edu.kit.kastel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class serves the post office to many counters over a line protocol on the loopback interface.
+ * Every connection runs on its own virtual thread with its own {@link CommandHandler} and session.
+ * A client sends one command per line and gets the result lines followed by an empty line.
+ * Results are flushed once no further command of the client is buffered, so pipelined commands are answered in bulk.
+ * A client that does not read its results blocks only its own thread, which then stops reading its commands.
+ * @author unweb
+ */
+final class PostOfficeServer implements AutoCloseable {
+    /**
+     * The line ending of the protocol.
+     */
+    private static final char LINE_END = '\n';
+    /**
+     * The server socket.
+     */
+    private final ServerSocket serverSocket;
+    /**
+     * The free connection slots.
+     */
+    private final Semaphore connectionSlots;
+    /**
+     * The time in milliseconds after which an idle connection is closed, 0 for never.
+     */
+    private final int idleTimeout;
+    /**
+     * The number of accepted connections.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+    /**
+     * The number of refused connections.
+     */
+    private final AtomicLong refused = new AtomicLong();
+    /**
+     * The thread accepting the connections.
+     */
+    private Thread acceptor;
+
+    /**
+     * Constructor of the class.
+     * @param port the port on the loopback interface, 0 for any free port
+     * @param maxConnections the maximal number of connections at the same time
+     * @param idleTimeout the time in milliseconds after which an idle connection is closed, 0 for never
+     * @throws IOException when the port cannot be bound
+     */
+    PostOfficeServer(int port, int maxConnections, int idleTimeout) throws IOException {
+        this.serverSocket = new ServerSocket(port, maxConnections, InetAddress.getLoopbackAddress());
+        this.connectionSlots = new Semaphore(maxConnections);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * A getter for the bound port.
+     * @return the port
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections in the background.
+     */
+    synchronized void start() {
+        acceptor = Thread.ofPlatform().name("acceptor").daemon().start(this::accept);
+    }
+
+    /**
+     * Accepts connections until the server socket is closed.
+     */
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            if (!connectionSlots.tryAcquire()) {
+                refused.incrementAndGet();
+                Thread.ofVirtual().start(() -> refuse(socket));
+                continue;
+            }
+            accepted.incrementAndGet();
+            Thread.ofVirtual().name("connection-" + socket.getPort()).start(() -> {
+                try {
+                    serve(socket);
+                } finally {
+                    connectionSlots.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the commands of one connection until the client quits or disconnects.
+     * @param socket the connection
+     */
+    private void serve(Socket socket) {
+        CommandHandler commandHandler = new CommandHandler();
+        try (socket;
+                BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.UTF_8));
+                Writer output = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                        StandardCharsets.UTF_8))) {
+            socket.setSoTimeout(idleTimeout);
+            socket.setTcpNoDelay(true);
+            String line;
+            while (!commandHandler.hasQuit() && (line = input.readLine()) != null) {
+                String result;
+                try {
+                    result = commandHandler.execute(line);
+                } catch (Validity e) {
+                    result = e.getMessage();
+                }
+                if (!result.isEmpty()) {
+                    output.write(result);
+                    output.write(LINE_END);
+                }
+                output.write(LINE_END);
+                if (!input.ready()) {
+                    output.flush();
+                }
+            }
+        } catch (SocketTimeoutException | SocketException e) {
+            // the client has been idle for too long or has gone away
+        } catch (IOException e) {
+            System.err.println("connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells a client that there is no free connection slot and closes the connection.
+     * @param socket the connection
+     */
+    private static void refuse(Socket socket) {
+        try (socket; Writer output = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            output.write(Error.TOO_MANY_CONNECTIONS.getMessage());
+            output.write(LINE_END);
+            output.write(LINE_END);
+        } catch (IOException e) {
+            // the client has gone away
+        }
+    }
+
+    /**
+     * Gives out the number of accepted and refused connections.
+     * @return the report in one line
+     */
+    String getReport() {
+        return "server: port " + getPort() + ", " + accepted.get() + " connections, " + refused.get() + " refused";
+    }
+
+    /**
+     * Stops accepting connections. Open connections run on virtual threads and end with the programm.
+     * @throws IOException when the server socket cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        serverSocket.close();
+        if (acceptor != null) {
+            try {
+                acceptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package edu.kit.kastel;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This class contains all the postal services.
  * @author unweb
@@ -8,45 +11,68 @@ public enum PostalService {
     /**
      * Standard Brief.
      */
-    BRIEF("Brief", 0.70),
+    BRIEF("Brief", 70, 2, false),
     /**
      * Registered mail dropped into mailbox.
      */
-    EINWURFEINSCHREIBEN("Einwurf-Einschreiben", 1.20),
+    EINWURFEINSCHREIBEN("Einwurf-Einschreiben", 120, 1, false),
     /**
      * Standard registered mail.  
     */ 
-    EINSCHREIBEN("Einschreiben", 2.00),
+    EINSCHREIBEN("Einschreiben", 200, 0, false),
     /**
      * Small size package. 
     */ 
-    PAKETS("PaketL", 7.00),
+    PAKETS("PaketL", 700, 3, true),
     /**
      * Medium size package.
     */ 
-    PAKETM("PaketM", 6.00),
+    PAKETM("PaketM", 600, 3, true),
     /**
      * Large size package.
     */ 
-    PAKETL("PaketS", 5.00);
+    PAKETL("PaketS", 500, 3, true);
+
+    /**
+     * All postal services by their name.
+     */
+    private static final Map<String, PostalService> POSTAL_SERVICES = new HashMap<>();
+
+    static {
+        for (PostalService ps : PostalService.values()) {
+            POSTAL_SERVICES.put(ps.getPostalService(), ps);
+        }
+    }
 
     /**
      * Postal service.
      */
     private final String postalService;
     /**
-     * The price of the chosen postal service.
+     * The price of the chosen postal service in cents.
      */
-    private final double price;
+    private final int priceInCents;
+    /**
+     * The delivery priority, lower values are delivered first.
+     */
+    private final int deliveryPriority;
+    /**
+     * Whether mails of this postal service are parcels, which are delivered in batches.
+     */
+    private final boolean parcel;
 
     /**
      * Constructor of the class.
      * @param postalService postal service
-     * @param price the price of the postal service
+     * @param priceInCents the price of the postal service in cents
+     * @param deliveryPriority the delivery priority, lower values are delivered first
+     * @param parcel whether mails of this postal service are parcels
      */
-    PostalService(String postalService, double price) {
+    PostalService(String postalService, int priceInCents, int deliveryPriority, boolean parcel) {
         this.postalService = postalService;
-        this.price = price;
+        this.priceInCents = priceInCents;
+        this.deliveryPriority = deliveryPriority;
+        this.parcel = parcel;
     }
 
     /**
@@ -62,7 +88,40 @@ public enum PostalService {
      * @return the price of the chosen postal service
      */
     public double getPrice() {
-        return price;
+        return priceInCents / 100.0;
+    }
+
+    /** 
+     * A getter of the exact price of the chosen postal service.
+     * @return the price in cents
+     */
+    public int getPriceInCents() {
+        return priceInCents;
+    }
+
+    /** 
+     * A getter of the delivery priority.
+     * @return the delivery priority, lower values are delivered first
+     */
+    public int getDeliveryPriority() {
+        return deliveryPriority;
+    }
+
+    /** 
+     * Checks if mails of this postal service are parcels.
+     * @return true for parcels, otherwise false
+     */
+    public boolean isParcel() {
+        return parcel;
+    }
+
+    /**
+     * Converting string to postal service.
+     * @param postalService the name of the postal service
+     * @return postal service in enum when existed, else return null
+     */
+    public static PostalService stringToPostalService(String postalService) {
+        return POSTAL_SERVICES.get(postalService);
     }
 
     
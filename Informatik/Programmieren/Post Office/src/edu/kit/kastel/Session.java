@@ -0,0 +1,64 @@
+package edu.kit.kastel;
+
+/**
+ * This class modelises a session at one counter of the post office.
+ * Every session has its own authenticated user, so several sessions can work on the same post office at once.
+ * @author unweb
+ */
+public final class Session {
+    /**
+     * The ID of the authenticated user of the session, {@link UserRegistry#NO_USER} when nobody is logged in.
+     */
+    private volatile int user = UserRegistry.NO_USER;
+    /**
+     * The last login verified in this session, null when there is none.
+     */
+    private volatile VerifiedLogin verifiedLogin;
+
+    /**
+     * Constructor of the class.
+     */
+    Session() {
+
+    }
+
+    /**
+     * A getter for the authenticated user.
+     * @return the ID of the authenticated user, {@link UserRegistry#NO_USER} when nobody is logged in
+     */
+    public int getUser() {
+        return user;
+    }
+
+    /**
+     * Checks if a user is logged in this session.
+     * @return true if a user is logged in, otherwise false
+     */
+    public boolean isActive() {
+        return user != UserRegistry.NO_USER;
+    }
+
+    /**
+     * A setter for the authenticated user.
+     * @param user the ID of the authenticated user, {@link UserRegistry#NO_USER} to log out
+     */
+    void setUser(int user) {
+        this.user = user;
+    }
+
+    /**
+     * A getter for the last verified login.
+     * @return the last login verified in this session, null when there is none
+     */
+    VerifiedLogin getVerifiedLogin() {
+        return verifiedLogin;
+    }
+
+    /**
+     * A setter for the last verified login.
+     * @param verifiedLogin the login verified in this session
+     */
+    void setVerifiedLogin(VerifiedLogin verifiedLogin) {
+        this.verifiedLogin = verifiedLogin;
+    }
+}
@@ -0,0 +1,129 @@
+package edu.kit.kastel;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is the state of one session at the {@link CommandScheduler}.
+ * It holds the token bucket of the session, its finish tag in every lane and, while a command waits in a lane,
+ * the ticket of that command. A session runs one command at a time, so it needs only one ticket.
+ * @author unweb
+ */
+final class SessionFlow {
+    /**
+     * The number of nanoseconds of a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /**
+     * The virtual finish time of the last command of the session by lane.
+     */
+    private final long[] finishTags = new long[CommandScheduler.LANES];
+    /**
+     * The tokens in the bucket, negative when commands have been reserved in advance.
+     */
+    private double tokens = Double.POSITIVE_INFINITY;
+    /**
+     * The time of the last refill in nanoseconds.
+     */
+    private long refilled;
+    /**
+     * The lane of the current command.
+     */
+    private int lane;
+    /**
+     * The virtual start time of the current command.
+     */
+    private long start;
+    /**
+     * The arrival order of the current command in its lane, breaks ties between equal start times.
+     */
+    private long sequence;
+    /**
+     * The thread waiting for the current command.
+     */
+    private Thread thread;
+    /**
+     * Whether the current command has got its slot.
+     */
+    private volatile boolean granted;
+
+    /**
+     * Takes a token for a command, the bucket is refilled by the elapsed time first.
+     * @param rate the refill rate in commands per second
+     * @param burst the capacity of the bucket
+     * @param now the current time in nanoseconds
+     * @return the time in nanoseconds the command must wait for its token, 0 when a token is available
+     */
+    long reserve(double rate, double burst, long now) {
+        tokens = Math.min(burst, tokens + (now - refilled) * rate / NANOS_PER_SECOND);
+        refilled = now;
+        tokens--;
+        return (tokens >= 0) ? 0 : (long) (-tokens / rate * NANOS_PER_SECOND);
+    }
+
+    /**
+     * Tags the current command. Must be called under the lock of the lane.
+     * @param lane the lane
+     * @param start the virtual start time
+     * @param cost the virtual duration, the cost divided by the weight of the session
+     * @param sequence the arrival order in the lane
+     */
+    void schedule(int lane, long start, long cost, long sequence) {
+        this.lane = lane;
+        this.start = start;
+        this.sequence = sequence;
+        finishTags[lane] = start + cost;
+        thread = Thread.currentThread();
+        granted = false;
+    }
+
+    /**
+     * Hands the slot to the waiting command and wakes its thread. Must be called under the lock of the lane.
+     */
+    void grant() {
+        granted = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits until the current command has got its slot.
+     * @param blocker the lane, shown in thread dumps
+     */
+    void await(Object blocker) {
+        while (!granted) {
+            LockSupport.park(blocker);
+        }
+    }
+
+    /**
+     * A getter for the virtual finish time of the last command in a lane.
+     * @param lane the lane
+     * @return the finish tag
+     */
+    long getFinish(int lane) {
+        return finishTags[lane];
+    }
+
+    /**
+     * A getter for the lane of the current command.
+     * @return the lane
+     */
+    int getLane() {
+        return lane;
+    }
+
+    /**
+     * A getter for the virtual start time of the current command.
+     * @return the start tag
+     */
+    long getStart() {
+        return start;
+    }
+
+    /**
+     * A getter for the arrival order of the current command.
+     * @return the sequence number
+     */
+    long getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,177 @@
+package edu.kit.kastel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This class writes and reads compact snapshots of the post office state through memory mapped files.
+ * A snapshot holds all users with their role and credential in the order of their IDs, the mail columns of the mail store with the delivery state and the inbox of every customer
+ * with the cursor of its oldest mail.
+ * The order counters of the customers are not stored, they are rebuilt from the mails.
+ * @author unweb
+ */
+final class Snapshot {
+    /**
+     * The magic number at the start of every snapshot.
+     */
+    private static final int MAGIC = 0x504F5354;
+    /**
+     * The format version of the snapshots.
+     */
+    private static final int VERSION = 5;
+    /**
+     * The number of bytes of one mail.
+     */
+    private static final int MAIL_SIZE = 10;
+    /**
+     * All postal services by ordinal.
+     */
+    private static final PostalService[] POSTAL_SERVICES = PostalService.values();
+
+    /**
+     * Constructor of the class.
+     */
+    private Snapshot() {
+
+    }
+
+    /**
+     * Writes a snapshot of the post office. The snapshot is written to a temporary file first
+     * and moved to its place when it is complete, so there is never a torn snapshot.
+     * The caller has to make sure that no operation changes the state meanwhile.
+     * @param file the snapshot file
+     * @param postOffice the post office
+     * @param mailStore the mail store of the post office
+     * @throws IOException when the snapshot cannot be written
+     */
+    static void write(Path file, PostOffice postOffice, MailStore mailStore) throws IOException {
+        UserRegistry registry = postOffice.getRegistry();
+        ByteArrayOutputStream usersBytes = new ByteArrayOutputStream();
+        DataOutputStream users = new DataOutputStream(usersBytes);
+        int userCount = registry.size();
+        users.writeInt(userCount);
+        for (int id = 0; id < userCount; id++) {
+            users.writeByte(registry.getRole(id));
+            Journal.writeString(users, registry.getFirstName(id));
+            Journal.writeString(users, registry.getLastName(id));
+            Journal.writeString(users, registry.getName(id));
+            users.write(postOffice.getCredential(id));
+            if (registry.getRole(id) == UserRegistry.CUSTOMER) {
+                Journal.writeString(users, registry.getIdNumber(id));
+            }
+        }
+        List<Customer> customers = postOffice.getCustomersById();
+        int mails = mailStore.size();
+        int[][] inboxes = new int[customers.size()][];
+        long[] heads = new long[customers.size()];
+        long size = 3L * Integer.BYTES + usersBytes.size() + Integer.BYTES + (long) mails * MAIL_SIZE;
+        for (int i = 0; i < inboxes.length; i++) {
+            inboxes[i] = customers.get(i).getInboxIds();
+            heads[i] = customers.get(i).getInboxHead();
+            size += Long.BYTES + Integer.BYTES * (1L + inboxes[i].length);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(usersBytes.size()).put(usersBytes.toByteArray());
+            buffer.putInt(mails);
+            for (int mail = 0; mail < mails; mail++) {
+                buffer.putInt(mailStore.getSender(mail));
+                buffer.putInt(mailStore.getReceiver(mail));
+                buffer.put((byte) mailStore.getPostalService(mail).ordinal());
+                buffer.put(mailStore.getState(mail));
+            }
+            for (int i = 0; i < inboxes.length; i++) {
+                int[] inbox = inboxes[i];
+                buffer.putLong(heads[i]);
+                buffer.putInt(inbox.length);
+                for (int mail : inbox) {
+                    buffer.putInt(mail);
+                }
+            }
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot into an empty post office.
+     * @param file the snapshot file
+     * @param postOffice the empty post office
+     * @throws IOException when the snapshot cannot be read or is malformed
+     */
+    static void read(Path file, PostOffice postOffice) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("malformed snapshot " + file);
+            }
+            buffer.getInt();
+            int users = buffer.getInt();
+            for (int id = 0; id < users; id++) {
+                switch (buffer.get()) {
+                    case UserRegistry.CUSTOMER -> postOffice.applyAddCustomer(readString(buffer), readString(buffer),
+                            readString(buffer), readCredential(buffer), readString(buffer));
+                    case UserRegistry.MAILMAN -> postOffice.applyAddMailman(readString(buffer), readString(buffer),
+                            readString(buffer), readCredential(buffer));
+                    case UserRegistry.AGENT -> postOffice.applyAddAgent(readString(buffer), readString(buffer),
+                            readString(buffer), readCredential(buffer));
+                    default -> throw new IOException("malformed snapshot " + file);
+                }
+            }
+            int mails = buffer.getInt();
+            for (int mail = 0; mail < mails; mail++) {
+                int sender = buffer.getInt();
+                int receiver = buffer.getInt();
+                PostalService postalService = POSTAL_SERVICES[buffer.get()];
+                byte state = buffer.get();
+                if (state != MailStore.EMPTY) {
+                    postOffice.applySendMail(mail, sender, postalService, receiver);
+                }
+                if (state == MailStore.DELIVERED) {
+                    postOffice.applyDeliverMail(mail);
+                }
+            }
+            for (Customer customer : postOffice.getCustomersById()) {
+                long head = buffer.getLong();
+                int[] inbox = new int[buffer.getInt()];
+                for (int i = 0; i < inbox.length; i++) {
+                    inbox[i] = buffer.getInt();
+                }
+                customer.restoreInbox(head, inbox);
+            }
+        }
+    }
+
+    /**
+     * Reads a string that was written with {@link Journal#writeString(java.io.DataOutput, String)}.
+     * @param buffer the buffer
+     * @return the string
+     */
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a credential of {@value CredentialStore#ROW_SIZE} bytes.
+     * @param buffer the buffer
+     * @return the credential
+     */
+    private static byte[] readCredential(MappedByteBuffer buffer) {
+        byte[] credential = new byte[CredentialStore.ROW_SIZE];
+        buffer.get(credential);
+        return credential;
+    }
+}
@@ -0,0 +1,217 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+
+/**
+ * This class finds the heavy hitters of a stream of long keys with the space-saving algorithm.
+ * It monitors a fixed number of keys. An unmonitored key replaces the key with the smallest count and inherits
+ * that count as its error, so every count is an upper bound that overestimates by at most the error.
+ * The counters are a min-heap, the keys are found through an open-addressing table, so an update costs
+ * O(log capacity) and allocates nothing.
+ * @author unweb
+ */
+final class SpaceSaving {
+    /**
+     * Marks an empty slot of the table.
+     */
+    private static final int FREE = -1;
+    /**
+     * The monitored keys by heap position.
+     */
+    private final long[] keys;
+    /**
+     * The counts by heap position.
+     */
+    private final long[] counts;
+    /**
+     * The errors by heap position.
+     */
+    private final long[] errors;
+    /**
+     * The heap positions of the keys, found by linear probing.
+     */
+    private final int[] table;
+    /**
+     * The number of monitored keys.
+     */
+    private int size;
+
+    /**
+     * Constructor of the class.
+     * @param capacity the number of monitored keys
+     */
+    SpaceSaving(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        Arrays.fill(table, FREE);
+    }
+
+    /**
+     * Counts occurrences of a key.
+     * @param key the key
+     * @param count the number of occurrences
+     */
+    synchronized void add(long key, long count) {
+        int slot = find(key);
+        if (table[slot] != FREE) {
+            int position = table[slot];
+            counts[position] += count;
+            siftDown(position);
+        } else if (size < keys.length) {
+            keys[size] = key;
+            counts[size] = count;
+            errors[size] = 0;
+            table[slot] = size;
+            siftUp(size++);
+        } else {
+            long minimum = counts[0];
+            remove(keys[0]);
+            keys[0] = key;
+            errors[0] = minimum;
+            counts[0] = minimum + count;
+            table[find(key)] = 0;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gives out the monitored keys with the highest counts.
+     * @param limit the maximal number of keys
+     * @return the keys in the first column, the counts in the second and the errors in the third,
+     *     ordered by descending count and ascending key
+     */
+    synchronized long[][] top(int limit) {
+        int[] best = new int[Math.min(limit, size)];
+        int count = 0;
+        for (int position = 0; position < size; position++) {
+            if (count == best.length && !before(position, best[count - 1])) {
+                continue;
+            }
+            int insert = (count < best.length) ? count++ : count - 1;
+            while (insert > 0 && before(position, best[insert - 1])) {
+                best[insert] = best[insert - 1];
+                insert--;
+            }
+            best[insert] = position;
+        }
+        long[][] top = new long[count][];
+        for (int i = 0; i < count; i++) {
+            top[i] = new long[] {keys[best[i]], counts[best[i]], errors[best[i]]};
+        }
+        return top;
+    }
+
+    /**
+     * Checks if a counter ranks before another one, by descending count and ascending key.
+     * @param first the heap position of the first counter
+     * @param second the heap position of the second counter
+     * @return true if the first counter ranks before the second
+     */
+    private boolean before(int first, int second) {
+        return (counts[first] == counts[second]) ? keys[first] < keys[second] : counts[first] > counts[second];
+    }
+
+    /**
+     * Moves a counter up the heap while it is smaller than its parent.
+     * @param position the heap position
+     */
+    private void siftUp(int position) {
+        int current = position;
+        while (current > 0) {
+            int parent = (current - 1) / 2;
+            if (counts[parent] <= counts[current]) {
+                return;
+            }
+            swap(current, parent);
+            current = parent;
+        }
+    }
+
+    /**
+     * Moves a counter down the heap while it is larger than one of its children.
+     * @param position the heap position
+     */
+    private void siftDown(int position) {
+        int current = position;
+        while (true) {
+            int smallest = current;
+            int left = 2 * current + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (left + 1 < size && counts[left + 1] < counts[smallest]) {
+                smallest = left + 1;
+            }
+            if (smallest == current) {
+                return;
+            }
+            swap(current, smallest);
+            current = smallest;
+        }
+    }
+
+    /**
+     * Swaps two counters of the heap and updates their slots in the table.
+     * @param first the first heap position
+     * @param second the second heap position
+     */
+    private void swap(int first, int second) {
+        table[find(keys[first])] = second;
+        table[find(keys[second])] = first;
+        long key = keys[first];
+        long count = counts[first];
+        long error = errors[first];
+        keys[first] = keys[second];
+        counts[first] = counts[second];
+        errors[first] = errors[second];
+        keys[second] = key;
+        counts[second] = count;
+        errors[second] = error;
+    }
+
+    /**
+     * Finds the slot of a key, or the free slot where it belongs.
+     * @param key the key
+     * @return the slot
+     */
+    private int find(long key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != FREE && keys[table[slot]] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Removes a key from the table and moves the following keys of its probe sequence back.
+     * @param key the key
+     */
+    private void remove(long key) {
+        int mask = table.length - 1;
+        int hole = find(key);
+        table[hole] = FREE;
+        int slot = (hole + 1) & mask;
+        while (table[slot] != FREE) {
+            int home = hash(keys[table[slot]]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                table[hole] = table[slot];
+                table[slot] = FREE;
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Mixes the bits of a key.
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
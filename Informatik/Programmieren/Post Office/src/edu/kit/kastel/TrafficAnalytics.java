@@ -0,0 +1,138 @@
+package edu.kit.kastel;
+
+/**
+ * This class keeps office wide rollups of the mail traffic, updated with every sent mail.
+ * The busiest senders, receivers and pairs of customers are tracked with the space-saving algorithm,
+ * the traffic between any pair is estimated with a count-min sketch. All of them live in fixed memory,
+ * so a query never touches the mails of a customer.
+ * @author unweb
+ */
+final class TrafficAnalytics {
+    /**
+     * The number of monitored senders and receivers.
+     */
+    private static final int TRACKED_CUSTOMERS = 1024;
+    /**
+     * The number of monitored pairs.
+     */
+    private static final int TRACKED_PAIRS = 4096;
+    /**
+     * The number of bits of the width of a row of the pair sketch.
+     */
+    private static final int PAIR_SKETCH_BITS = 16;
+    /**
+     * The busiest senders by ID.
+     */
+    private final SpaceSaving senders = new SpaceSaving(TRACKED_CUSTOMERS);
+    /**
+     * The busiest receivers by ID.
+     */
+    private final SpaceSaving receivers = new SpaceSaving(TRACKED_CUSTOMERS);
+    /**
+     * The busiest pairs by pair key.
+     */
+    private final SpaceSaving pairs = new SpaceSaving(TRACKED_PAIRS);
+    /**
+     * The traffic of all pairs by pair key.
+     */
+    private final CountMinSketch pairTraffic = new CountMinSketch(PAIR_SKETCH_BITS);
+
+    /**
+     * Records one sent mail.
+     * @param sender the ID of the sender
+     * @param receiver the ID of the receiver
+     */
+    void record(int sender, int receiver) {
+        senders.add(sender, 1);
+        recordReceiver(sender, receiver);
+    }
+
+    /**
+     * Records mails of one sender to many receivers.
+     * @param sender the ID of the sender
+     * @param receiverIds the IDs of the receivers
+     */
+    void record(int sender, int[] receiverIds) {
+        senders.add(sender, receiverIds.length);
+        for (int receiver : receiverIds) {
+            recordReceiver(sender, receiver);
+        }
+    }
+
+    /**
+     * Gives out the busiest senders.
+     * @param limit the maximal number of senders
+     * @return the IDs in the first column and the estimated counts in the second
+     */
+    long[][] topSenders(int limit) {
+        return senders.top(limit);
+    }
+
+    /**
+     * Gives out the busiest receivers.
+     * @param limit the maximal number of receivers
+     * @return the IDs in the first column and the estimated counts in the second
+     */
+    long[][] topReceivers(int limit) {
+        return receivers.top(limit);
+    }
+
+    /**
+     * Gives out the busiest pairs.
+     * @param limit the maximal number of pairs
+     * @return the pair keys in the first column and the estimated counts in the second
+     */
+    long[][] topPairs(int limit) {
+        return pairs.top(limit);
+    }
+
+    /**
+     * Estimates the number of mails between two customers.
+     * @param sender the ID of the sender
+     * @param receiver the ID of the receiver
+     * @return an upper bound of the number of mails
+     */
+    long pairTraffic(int sender, int receiver) {
+        return pairTraffic.estimate(pair(sender, receiver));
+    }
+
+    /**
+     * Gives out the sender of a pair key.
+     * @param pair the pair key
+     * @return the ID of the sender
+     */
+    static int sender(long pair) {
+        return (int) (pair >>> Integer.SIZE);
+    }
+
+    /**
+     * Gives out the receiver of a pair key.
+     * @param pair the pair key
+     * @return the ID of the receiver
+     */
+    static int receiver(long pair) {
+        return (int) pair;
+    }
+
+    /**
+     * Records the receiver and the pair of one sent mail.
+     * @param sender the ID of the sender
+     * @param receiver the ID of the receiver
+     */
+    private void recordReceiver(int sender, int receiver) {
+        long pair = pair(sender, receiver);
+        receivers.add(receiver, 1);
+        pairs.add(pair, 1);
+        pairTraffic.add(pair, 1);
+    }
+
+    /**
+     * Combines a sender and a receiver to a pair key.
+     * @param sender the ID of the sender
+     * @param receiver the ID of the receiver
+     * @return the pair key
+     */
+    private static long pair(int sender, int receiver) {
+        return ((long) sender << Integer.SIZE) | (receiver & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,319 @@
+package edu.kit.kastel;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * This class registers all users of the post office under dense int IDs.
+ * The login names are found through an open-addressing table of IDs, the identification numbers of the customers
+ * through a second one, so every name is stored once in its column. The roles are bitflags in a primitive column,
+ * an authorization is a bit test. Registrations must not run concurrently, lookups may run at any time.
+ * @author unweb
+ */
+final class UserRegistry {
+    /**
+     * The ID of no user.
+     */
+    static final int NO_USER = -1;
+    /**
+     * The role of a customer.
+     */
+    static final int CUSTOMER = 1;
+    /**
+     * The role of a mailman.
+     */
+    static final int MAILMAN = 1 << 1;
+    /**
+     * The role of an agent.
+     */
+    static final int AGENT = 1 << 2;
+    /**
+     * The initial number of users of the columns.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Publishes a slot of a table after the columns of its user are written.
+     */
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+    /**
+     * The users by login name, a slot holds the ID plus one, 0 is a free slot.
+     */
+    private volatile int[] nameTable = new int[INITIAL_CAPACITY * 2];
+    /**
+     * The customers by identification number, a slot holds the ID plus one, 0 is a free slot.
+     */
+    private volatile int[] idNumberTable = new int[INITIAL_CAPACITY * 2];
+    /**
+     * The login names by ID, the username of a customer or the personal number of a mailman or an agent.
+     */
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+    /**
+     * The first names by ID.
+     */
+    private volatile String[] firstNames = new String[INITIAL_CAPACITY];
+    /**
+     * The last names by ID.
+     */
+    private volatile String[] lastNames = new String[INITIAL_CAPACITY];
+    /**
+     * The roles by ID.
+     */
+    private volatile byte[] roles = new byte[INITIAL_CAPACITY];
+    /**
+     * The identification numbers by ID, null for mailmen and agents.
+     */
+    private volatile String[] idNumbers = new String[INITIAL_CAPACITY];
+    /**
+     * The mailboxes by ID, null for mailmen and agents.
+     */
+    private volatile Customer[] customers = new Customer[INITIAL_CAPACITY];
+    /**
+     * The number of users.
+     */
+    private volatile int size;
+    /**
+     * The number of customers.
+     */
+    private int customerCount;
+
+    /**
+     * Registers a customer.
+     * @param username username
+     * @param firstName first name
+     * @param lastName last name
+     * @param idNumber identification number
+     * @param mailbox creates the mailbox of the customer from its ID
+     * @return the ID of the customer
+     */
+    synchronized int addCustomer(String username, String firstName, String lastName, String idNumber,
+            IntFunction<Customer> mailbox) {
+        int id = add(username, firstName, lastName, CUSTOMER);
+        idNumbers[id] = idNumber;
+        customers[id] = mailbox.apply(id);
+        customerCount++;
+        if (customerCount * 2 > idNumberTable.length) {
+            idNumberTable = rehash(idNumberTable, idNumbers);
+        }
+        publish(idNumberTable, idNumbers, id);
+        publish(nameTable, names, id);
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Registers a mailman or an agent.
+     * @param personalNumber personal number
+     * @param firstName first name
+     * @param lastName last name
+     * @param role {@link #MAILMAN} or {@link #AGENT}
+     * @return the ID of the mailman or agent
+     */
+    synchronized int addStaff(String personalNumber, String firstName, String lastName, int role) {
+        int id = add(personalNumber, firstName, lastName, role);
+        publish(nameTable, names, id);
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Looks up a user by login name.
+     * @param name the username or personal number
+     * @return the ID, {@link #NO_USER} when there is no such user
+     */
+    int find(String name) {
+        return find(nameTable, name, false);
+    }
+
+    /**
+     * Looks up a customer by identification number.
+     * @param idNumber identification number
+     * @return the ID, {@link #NO_USER} when there is no such customer
+     */
+    int findIdNumber(String idNumber) {
+        return find(idNumberTable, idNumber, true);
+    }
+
+    /**
+     * Checks if a user has one of the given roles.
+     * @param id the ID, may be {@link #NO_USER}
+     * @param role the roles
+     * @return true if the user has one of the roles, otherwise false
+     */
+    boolean hasRole(int id, int role) {
+        return id != NO_USER && (roles[id] & role) != 0;
+    }
+
+    /**
+     * A getter for the number of users.
+     * @return the number of users, the IDs are below it
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * A getter for the role of a user.
+     * @param id the ID
+     * @return {@link #CUSTOMER}, {@link #MAILMAN} or {@link #AGENT}
+     */
+    int getRole(int id) {
+        return roles[id];
+    }
+
+    /**
+     * A getter for the login name of a user.
+     * @param id the ID
+     * @return the username or the personal number
+     */
+    String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * A getter for the first name of a user.
+     * @param id the ID
+     * @return first name
+     */
+    String getFirstName(int id) {
+        return firstNames[id];
+    }
+
+    /**
+     * A getter for the last name of a user.
+     * @param id the ID
+     * @return last name
+     */
+    String getLastName(int id) {
+        return lastNames[id];
+    }
+
+    /**
+     * A getter for the identification number of a customer.
+     * @param id the ID
+     * @return identification number, null for mailmen and agents
+     */
+    String getIdNumber(int id) {
+        return idNumbers[id];
+    }
+
+    /**
+     * A getter for the mailbox of a customer.
+     * @param id the ID
+     * @return the mailbox, null for mailmen and agents
+     */
+    Customer getCustomer(int id) {
+        return customers[id];
+    }
+
+    /**
+     * Runs an action for every customer in the order of their IDs.
+     * @param action the action
+     */
+    void forEachCustomer(Consumer<Customer> action) {
+        int count = size;
+        Customer[] column = customers;
+        for (int id = 0; id < count; id++) {
+            if (column[id] != null) {
+                action.accept(column[id]);
+            }
+        }
+    }
+
+    /**
+     * Stores the common columns of a new user and grows the name table.
+     * @param name the login name
+     * @param firstName first name
+     * @param lastName last name
+     * @param role the role
+     * @return the ID of the user
+     */
+    private int add(String name, String firstName, String lastName, int role) {
+        int id = size;
+        if (id == names.length) {
+            int capacity = id * 2;
+            idNumbers = Arrays.copyOf(idNumbers, capacity);
+            customers = Arrays.copyOf(customers, capacity);
+            firstNames = Arrays.copyOf(firstNames, capacity);
+            lastNames = Arrays.copyOf(lastNames, capacity);
+            roles = Arrays.copyOf(roles, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        names[id] = name;
+        firstNames[id] = firstName;
+        lastNames[id] = lastName;
+        roles[id] = (byte) role;
+        if ((id + 1) * 2 > nameTable.length) {
+            nameTable = rehash(nameTable, names);
+        }
+        return id;
+    }
+
+    /**
+     * Looks up a key in a table. The column is read after the slot, so it holds the found ID.
+     * @param table the table
+     * @param key the key
+     * @param idNumber true if the keys are identification numbers, false if they are login names
+     * @return the ID, {@link #NO_USER} when the key is not in the table
+     */
+    private int find(int[] table, String key, boolean idNumber) {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            int entry = (int) SLOTS.getAcquire(table, slot);
+            if (entry == 0) {
+                return NO_USER;
+            }
+            if (key.equals((idNumber ? idNumbers : names)[entry - 1])) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Inserts a user into a table after its columns are written.
+     * @param table the table
+     * @param keys the column of the keys
+     * @param id the ID
+     */
+    private static void publish(int[] table, String[] keys, int id) {
+        int mask = table.length - 1;
+        int slot = hash(keys[id]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        SLOTS.setRelease(table, slot, id + 1);
+    }
+
+    /**
+     * Builds a table of twice the size with all entries of a table.
+     * @param table the table
+     * @param keys the column of the keys
+     * @return the new table
+     */
+    private static int[] rehash(int[] table, String[] keys) {
+        int[] grown = new int[table.length * 2];
+        int mask = grown.length - 1;
+        for (int entry : table) {
+            if (entry != 0) {
+                int slot = hash(keys[entry - 1]) & mask;
+                while (grown[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                grown[slot] = entry;
+            }
+        }
+        return grown;
+    }
+
+    /**
+     * Spreads the hash code of a key over all bits.
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -5,11 +5,38 @@ package edu.kit.kastel;
  * @author unweb
  */
 public class Validity extends Exception {
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The kind of the error.
+     */
+    private final Error error;
+
     /**
      * Constructor of the class.
+     * @param error is the error whose message is to be printed out
+     */
+    public Validity(Error error) {
+        this(error, error.getMessage());
+    }
+
+    /**
+     * Constructor of the class for an error whose message contains further informations.
+     * @param error is the kind of the error
      * @param message is the error message to be printed out
      */
-    public Validity(String message) {
+    public Validity(Error error, String message) {
         super(message);
+        this.error = error;
+    }
+
+    /**
+     * A getter for the kind of the error.
+     * @return the kind of the error
+     */
+    public Error getError() {
+        return error;
     }
 }
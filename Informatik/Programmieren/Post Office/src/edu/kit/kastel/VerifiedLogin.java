@@ -0,0 +1,55 @@
+package edu.kit.kastel;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * This class is a login a session has verified with the slow hash.
+ * It only matches the same user with the same password while the credential is unchanged and the window is open.
+ * @author unweb
+ */
+final class VerifiedLogin {
+    /**
+     * The ID of the verified user.
+     */
+    private final int user;
+    /**
+     * The credential of the user at the time of the login.
+     */
+    private final byte[] credential;
+    /**
+     * The keyed digest of the verified password.
+     */
+    private final byte[] digest;
+    /**
+     * The end of the window in nanoseconds.
+     */
+    private final long until;
+
+    /**
+     * Constructor of the class.
+     * @param user the ID of the verified user
+     * @param credential the credential of the user at the time of the login
+     * @param digest the keyed digest of the verified password
+     * @param until the end of the window in nanoseconds
+     */
+    VerifiedLogin(int user, byte[] credential, byte[] digest, long until) {
+        this.user = user;
+        this.credential = credential;
+        this.digest = digest;
+        this.until = until;
+    }
+
+    /**
+     * Checks if a login matches this verified login.
+     * @param user the ID of the user
+     * @param credential the current credential of the user
+     * @param digest the keyed digest of the given password
+     * @param now the current time in nanoseconds
+     * @return true if the login needs no further check, otherwise false
+     */
+    boolean matches(int user, byte[] credential, byte[] digest, long now) {
+        return this.user == user && now - until < 0 && Arrays.equals(this.credential, credential)
+                && MessageDigest.isEqual(this.digest, digest);
+    }
+}
@@ -0,0 +1,225 @@
+package edu.kit.kastel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Randomized check of the find command of the {@link TaskManager} against a scan over all tasks.
+ * It builds random task hierarchies, some of them within lists, and compares the printed results of random
+ * queries, case modes and limits with the printed results of the scan. The limit counts the tasks that are
+ * printed on their own, so tasks within lists and tasks below a matching task are skipped before counting.
+ * Two fixed regression cases run first. The result is written to the standard error stream.
+ * @author unweb
+ * @version 1.0
+ */
+public final class NameIndexCheck {
+    /** Characters of the random task names and queries. */
+    private static final String ALPHABET = "abAB-xYΣσς";
+    /** Priority of the random tasks, lists sort their tasks by priority. */
+    private static final String PRIORITY = "MD";
+    /** Maximum length of a random task name. */
+    private static final int MAX_NAME_LENGTH = 9;
+    /** Maximum length of a random query. */
+    private static final int MAX_QUERY_LENGTH = 5;
+    /** Maximum random limit of a query. */
+    private static final int MAX_LIMIT = 20;
+    /** Number of lists the random tasks can be assigned to. */
+    private static final int LISTS = 3;
+    /** Number of random tasks per task assigned to a list. */
+    private static final int TASKS_PER_LIST_ASSIGNMENT = 10;
+
+    /**
+     * Private constructor to prevent instantiation of the class.
+     */
+    private NameIndexCheck() {
+
+    }
+
+    /**
+     * Runs the check.
+     * Options are {@code --tasks} in the random hierarchies, {@code --queries} and the {@code --seed}.
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        int tasks = 3_000;
+        int queries = 5_000;
+        long seed = 7;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tasks" -> tasks = Integer.parseInt(args[i + 1]);
+                case "--queries" -> queries = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        TaskManager taskManager = TaskManager.getInstance();
+        List<Task> all = new ArrayList<>();
+        checkRegressions(taskManager, all);
+        Random random = new Random(seed);
+        for (int i = 0; i < LISTS; i++) {
+            taskManager.addList("List" + i);
+        }
+        int first = all.size();
+        for (int i = 0; i < tasks; i++) {
+            Task task = new Task(randomText(random, MAX_NAME_LENGTH), PRIORITY);
+            taskManager.addTask(task);
+            all.add(task);
+        }
+        for (int i = first; i < all.size(); i++) {
+            if (random.nextInt(TASKS_PER_LIST_ASSIGNMENT) == 0) {
+                taskManager.assign(all.get(i).getId(), "List" + random.nextInt(LISTS));
+            } else if (random.nextBoolean()) {
+                taskManager.assign(all.get(i).getId(), all.get(first + random.nextInt(tasks)).getId());
+            }
+        }
+        int mismatches = 0;
+        for (int q = 0; q < queries; q++) {
+            String query = randomText(random, MAX_QUERY_LENGTH);
+            boolean ignoreCase = random.nextBoolean();
+            int limit = random.nextBoolean() ? Integer.MAX_VALUE : 1 + random.nextInt(MAX_LIMIT);
+            if (!check(taskManager, all, query, ignoreCase, limit)) {
+                mismatches++;
+            }
+        }
+        System.setOut(console);
+        if (mismatches > 0) {
+            throw new IllegalStateException(mismatches + " of " + queries + " queries differ from the scan");
+        }
+        System.err.println(String.format(Locale.US, "%d tasks, %d queries, no mismatches", all.size(), queries));
+    }
+
+    /**
+     * Checks the cases where the limit used to be spent on matches that are not printed on their own,
+     * a matching task within a list and a matching task below another matching task,
+     * and a capital sigma that used to fold differently at the end of the query than within the name.
+     * @param taskManager The task manager.
+     * @param all All tasks in ascending ID order, the tasks of the cases are appended.
+     */
+    private static void checkRegressions(TaskManager taskManager, List<Task> all) {
+        Task inList = new Task("Buy");
+        Task onItsOwn = new Task("Buy");
+        taskManager.addTask(inList);
+        taskManager.addList("Shop");
+        taskManager.assign(inList.getId(), "Shop");
+        taskManager.addTask(onItsOwn);
+        all.add(inList);
+        all.add(onItsOwn);
+        Task parent = new Task("Sell");
+        Task child = new Task("Sell");
+        Task other = new Task("Sell");
+        taskManager.addTask(parent);
+        taskManager.addTask(child);
+        taskManager.assign(child.getId(), parent.getId());
+        taskManager.addTask(other);
+        all.add(parent);
+        all.add(child);
+        all.add(other);
+        if (!printed(() -> taskManager.find("Buy", false, 1)).equals(printed(() -> Message.printMatches(
+                List.of(onItsOwn))))) {
+            throw new IllegalStateException("find Buy 1 skips the task that is not in a list");
+        }
+        if (!printed(() -> taskManager.find("Sell", false, 2)).equals(printed(() -> Message.printMatches(
+                List.of(parent, other))))) {
+            throw new IllegalStateException("find Sell 2 counts the subtask of a matching task");
+        }
+        Task sigma = new Task("ABΣC");
+        taskManager.addTask(sigma);
+        all.add(sigma);
+        if (!printed(() -> taskManager.find("ABΣ", true, Integer.MAX_VALUE)).equals(printed(() -> Message.printMatches(
+                List.of(sigma))))) {
+            throw new IllegalStateException("find ABΣ -i misses the task ABΣC");
+        }
+    }
+
+    /**
+     * Compares the printed results of one query with the printed results of a scan over all tasks.
+     * @param taskManager The task manager.
+     * @param all All tasks in ascending ID order.
+     * @param query The substring to search for.
+     * @param ignoreCase Whether upper and lower case letters are considered equal.
+     * @param limit The maximum number of printed matches.
+     * @return true if both print the same.
+     */
+    private static boolean check(TaskManager taskManager, List<Task> all, String query, boolean ignoreCase,
+            int limit) {
+        List<Task> expected = new ArrayList<>();
+        for (int i = 0; i < all.size() && expected.size() < limit; i++) {
+            Task task = all.get(i);
+            if (matches(task, query, ignoreCase) && isPrintedOnItsOwn(task, query, ignoreCase)) {
+                expected.add(task);
+            }
+        }
+        return printed(() -> taskManager.find(query, ignoreCase, limit))
+                .equals(printed(() -> Message.printMatches(expected)));
+    }
+
+    /**
+     * Checks if the name of a task contains the query, without the index.
+     * @param task The task.
+     * @param query The substring to search for.
+     * @param ignoreCase Whether upper and lower case letters are considered equal.
+     * @return true if the name contains the query.
+     */
+    private static boolean matches(Task task, String query, boolean ignoreCase) {
+        return ignoreCase ? NameIndex.fold(task.getName()).contains(NameIndex.fold(query))
+                : task.getName().contains(query);
+    }
+
+    /**
+     * Checks if a matching task is printed on its own, that is neither within a list nor below a matching task.
+     * @param task The matching task.
+     * @param query The substring to search for.
+     * @param ignoreCase Whether upper and lower case letters are considered equal.
+     * @return true if the task is printed on its own.
+     */
+    private static boolean isPrintedOnItsOwn(Task task, String query, boolean ignoreCase) {
+        ToDoItem parent = task.getParent();
+        while (parent instanceof Task parentTask) {
+            if (matches(parentTask, query, ignoreCase)) {
+                return false;
+            }
+            parent = parentTask.getParent();
+        }
+        return !(parent instanceof TasksList);
+    }
+
+    /**
+     * Captures what an action prints to the standard output stream.
+     * @param action The action.
+     * @return The printed text.
+     */
+    private static String printed(Runnable action) {
+        PrintStream previous = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setOut(previous);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates a random text of the alphabet.
+     * @param random The source of randomness.
+     * @param maxLength The maximum length of the text.
+     * @return The text of at least one character.
+     */
+    private static String randomText(Random random, int maxLength) {
+        int length = 1 + random.nextInt(maxLength);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package edu.kit.kastel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark for the commands by ID of the {@link TaskManager} on a large forest of deep task hierarchies.
+ * It builds chains of tasks, where every task is assigned to the task before it, and then runs the commands
+ * tag, change-date, change-priority and toggle on random tasks at any depth.
+ * The messages of the commands are discarded, the timings are written to the standard error stream.
+ * @author unweb
+ * @version 1.0
+ */
+public final class TaskManagerBenchmark {
+    /** Number of nanoseconds of a millisecond. */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /** Number of nanoseconds of a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /** Percentile reported for the latency of the commands. */
+    private static final double PERCENTILE = 0.99;
+    /** Number of commands in the measured mix. */
+    private static final int COMMANDS_IN_MIX = 4;
+
+    /**
+     * Private constructor to prevent instantiation of the class.
+     */
+    private TaskManagerBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are {@code --tasks} in total, {@code --depth} of every chain, {@code --operations} measured
+     * and the {@code --seed} of the random task IDs.
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        int tasks = 1_000_000;
+        int depth = 1_000;
+        int operations = 1_000_000;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tasks" -> tasks = Integer.parseInt(args[i + 1]);
+                case "--depth" -> depth = Integer.parseInt(args[i + 1]);
+                case "--operations" -> operations = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        TaskManager taskManager = TaskManager.getInstance();
+        long start = System.nanoTime();
+        for (int i = 1; i <= tasks; i++) {
+            taskManager.addTask(new Task("Task" + i, "MD", "2024-05-01"));
+            if ((i - 1) % depth != 0) {
+                taskManager.assign(String.valueOf(i), String.valueOf(i - 1));
+            }
+        }
+        double buildSeconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        Random random = new Random(seed);
+        long[] latencies = new long[operations];
+        start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            String id = String.valueOf(1 + random.nextInt(tasks));
+            long begin = System.nanoTime();
+            switch (i % COMMANDS_IN_MIX) {
+                case 0 -> taskManager.tag(id, "#bench");
+                case 1 -> taskManager.changeDate(id, "2024-06-01");
+                case 2 -> taskManager.changePriority(id, "HI");
+                default -> taskManager.toggle(id);
+            }
+            latencies[i] = System.nanoTime() - begin;
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        System.setOut(console);
+        Arrays.sort(latencies);
+        System.err.println(String.format(Locale.US,
+                "%d tasks in chains of %d built in %.3f s, %d commands by ID in %.3f s, %.1f ops/s, "
+                        + "p50 %.4f ms, p99 %.4f ms, max %.4f ms",
+                tasks, depth, buildSeconds, operations, seconds, operations / seconds,
+                latencies[operations / 2] / NANOS_PER_MILLI,
+                latencies[(int) (operations * PERCENTILE)] / NANOS_PER_MILLI,
+                latencies[operations - 1] / NANOS_PER_MILLI));
+    }
+}
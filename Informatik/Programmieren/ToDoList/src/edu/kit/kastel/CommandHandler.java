@@ -1,5 +1,6 @@
 package edu.kit.kastel;
 
+import java.util.Arrays;
 import java.util.Scanner;
 
 import edu.kit.kastel.Message.SystemMessage;
@@ -33,7 +34,9 @@ public class CommandHandler {
     private static final int NUMBER_OF_ARGS_FOR_RESTORE = 2;
     private static final int NUMBER_OF_ARGS_FOR_SHOW = 2;
     private static final int NUMBER_OF_ARGS_FOR_TO_DO = 1;
-    private static final int NUMBER_OF_ARGS_FOR_FIND = 2;
+    private static final int MIN_NUMBER_OF_ARGS_FOR_FIND = 2;
+    private static final int MAX_NUMBER_OF_ARGS_FOR_FIND = 4;
+    private static final String IGNORE_CASE_OPTION = "-i";
     private static final int NUMBER_OF_ARGS_FOR_TAGGED_WITH = 2;
     private static final int NUMBER_OF_ARGS_FOR_UPCOMING = 2;
     private static final int NUMBER_OF_ARGS_FOR_BEFORE = 2;
@@ -284,29 +287,53 @@ public class CommandHandler {
     }
 
     /**
-     * Handles the {@code FIND} command to search for tasks.
+     * Handles the {@code FIND} command to search for tasks, optionally ignoring case and limiting the number of
+     * matches, e.g. {@code find report -i 20}.
      * @param parts The split user input.
      */
     private void handleFind(String[] parts) {
-        if (parts.length != NUMBER_OF_ARGS_FOR_FIND) {
+        if (parts.length < MIN_NUMBER_OF_ARGS_FOR_FIND || parts.length > MAX_NUMBER_OF_ARGS_FOR_FIND) {
             Message.printSystemMessage(Message.SystemMessage.INVALID_COMMAND);
             return;
         }
         String name = parts[1];
-        TASK_MANAGER.find(name);
+        boolean ignoreCase = false;
+        int limit = Integer.MAX_VALUE;
+        boolean hasLimit = false;
+        for (int i = 2; i < parts.length; i++) {
+            if (parts[i].equals(IGNORE_CASE_OPTION) && !ignoreCase) {
+                ignoreCase = true;
+            } else if (Validate.validateLimit(parts[i]) && !hasLimit) {
+                limit = Integer.parseInt(parts[i]);
+                hasLimit = true;
+            } else {
+                Message.printSystemMessage(Message.SystemMessage.INVALID_ARGUMENTS);
+                return;
+            }
+        }
+        TASK_MANAGER.find(name, ignoreCase, limit);
     }
 
     /**
-     * Handles the {@code TAGGED_WITH} command to list tasks with a specific tag.
+     * Handles the {@code TAGGED_WITH} command to list tasks matching a tag or a combination of tags,
+     * e.g. {@code tagged-with #a AND #b OR #c}.
      * @param parts The split user input.
      */
     private void handleTaggedWith(String[] parts) {
-        if (parts.length != NUMBER_OF_ARGS_FOR_TAGGED_WITH) {
+        if (parts.length < NUMBER_OF_ARGS_FOR_TAGGED_WITH || parts.length % 2 != 0) {
             Message.printSystemMessage(Message.SystemMessage.INVALID_COMMAND);
             return;
         }
-        String tag = parts[1];
-        TASK_MANAGER.taggedWith(tag);
+        String[] terms = Arrays.copyOfRange(parts, 1, parts.length);
+        for (int i = 0; i < terms.length; i++) {
+            boolean valid = i % 2 == 0 ? Validate.validateTag(terms[i])
+                : terms[i].equalsIgnoreCase(TagIndex.AND) || terms[i].equalsIgnoreCase(TagIndex.OR);
+            if (!valid) {
+                Message.printSystemMessage(Message.SystemMessage.INVALID_ARGUMENTS);
+                return;
+            }
+        }
+        TASK_MANAGER.taggedWith(terms);
     }
 
     /**
@@ -319,7 +346,11 @@ public class CommandHandler {
             return;
         }
         String date = parts[1];
-        TASK_MANAGER.upcoming(date); 
+        if (!Validate.validateDeadline(date)) {
+            Message.printSystemMessage(Message.SystemMessage.INVALID_DATE_FORMAT);
+            return;
+        }
+        TASK_MANAGER.upcoming(date);
     }
 
     /**
@@ -332,6 +363,10 @@ public class CommandHandler {
             return;
         }
         String date = parts[1];
+        if (!Validate.validateDeadline(date)) {
+            Message.printSystemMessage(Message.SystemMessage.INVALID_DATE_FORMAT);
+            return;
+        }
         TASK_MANAGER.before(date);
     }
 
@@ -346,6 +381,10 @@ public class CommandHandler {
         }
         String startDate = parts[1];
         String endDate = parts[2];
+        if (!Validate.validateDeadline(startDate) || !Validate.validateDeadline(endDate)) {
+            Message.printSystemMessage(Message.SystemMessage.INVALID_DATE_FORMAT);
+            return;
+        }
         TASK_MANAGER.between(startDate, endDate);
     }
 
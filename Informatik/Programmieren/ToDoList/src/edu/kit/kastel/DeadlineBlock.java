@@ -0,0 +1,112 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+
+/**
+ * A block of the {@link DeadlineIndex}: a sorted array of keys, each combining the deadline as epoch day
+ * with the task ID, and the tasks as payload at the same positions.
+ * @author unweb
+ * @version 1.0
+ */
+public final class DeadlineBlock {
+    private final long[] keys;
+    private final Task[] tasks;
+    private int size;
+
+    /**
+     * Constructs an empty block.
+     * @param capacity The maximum number of entries.
+     */
+    public DeadlineBlock(int capacity) {
+        this.keys = new long[capacity];
+        this.tasks = new Task[capacity];
+    }
+
+    /**
+     * Retrieves the number of entries.
+     * @return The number of entries.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if the block cannot take another entry.
+     * @return true if the block is full.
+     */
+    public boolean isFull() {
+        return this.size == this.keys.length;
+    }
+
+    /**
+     * Retrieves the key at a position.
+     * @param index The position.
+     * @return The key.
+     */
+    public long keyAt(int index) {
+        return this.keys[index];
+    }
+
+    /**
+     * Retrieves the task at a position.
+     * @param index The position.
+     * @return The task.
+     */
+    public Task taskAt(int index) {
+        return this.tasks[index];
+    }
+
+    /**
+     * Finds the first position whose key is not smaller than the given key.
+     * @param key The key to search for.
+     * @return The position, or the size if all keys are smaller.
+     */
+    public int lowerBound(long key) {
+        int index = Arrays.binarySearch(this.keys, 0, this.size, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Inserts an entry at its sorted position. The block must not be full.
+     * @param key The key of the entry.
+     * @param task The task of the entry.
+     */
+    public void insert(long key, Task task) {
+        int index = lowerBound(key);
+        System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+        System.arraycopy(this.tasks, index, this.tasks, index + 1, this.size - index);
+        this.keys[index] = key;
+        this.tasks[index] = task;
+        this.size++;
+    }
+
+    /**
+     * Removes the entry with the given key if it exists.
+     * @param key The key of the entry.
+     */
+    public void remove(long key) {
+        int index = Arrays.binarySearch(this.keys, 0, this.size, key);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+        System.arraycopy(this.tasks, index + 1, this.tasks, index, this.size - index - 1);
+        this.size--;
+        this.tasks[this.size] = null;
+    }
+
+    /**
+     * Moves the upper half of the entries into a new block.
+     * @return The new block holding the upper half.
+     */
+    public DeadlineBlock split() {
+        DeadlineBlock upper = new DeadlineBlock(this.keys.length);
+        int half = this.size / 2;
+        upper.size = this.size - half;
+        System.arraycopy(this.keys, half, upper.keys, 0, upper.size);
+        System.arraycopy(this.tasks, half, upper.tasks, 0, upper.size);
+        Arrays.fill(this.tasks, half, this.size, null);
+        this.size = half;
+        return upper;
+    }
+}
@@ -0,0 +1,114 @@
+package edu.kit.kastel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered index of all tasks with a deadline, sorted by the deadline as epoch day and then by task ID.
+ * The entries are kept in a list of sorted blocks of bounded size, so adding and removing a task moves
+ * at most one block, and a range query is a binary search followed by a scan over the k results.
+ * @author unweb
+ * @version 1.0
+ */
+public final class DeadlineIndex {
+    private static final int BLOCK_SIZE = 512;
+    private static final long ID_MASK = 0xFFFFFFFFL;
+    private final List<DeadlineBlock> blocks = new ArrayList<>();
+
+    /**
+     * Adds a task under its current deadline. Tasks without a deadline are not indexed.
+     * @param task The task to add.
+     */
+    public void add(Task task) {
+        if (task.getDeadline() == null) {
+            return;
+        }
+        long key = key(task.getDeadlineDay(), task);
+        if (blocks.isEmpty()) {
+            blocks.add(new DeadlineBlock(BLOCK_SIZE));
+        }
+        int blockIndex = findBlock(key);
+        DeadlineBlock block = blocks.get(blockIndex);
+        if (block.isFull()) {
+            DeadlineBlock upper = block.split();
+            blocks.add(blockIndex + 1, upper);
+            if (key >= upper.keyAt(0)) {
+                block = upper;
+            }
+        }
+        block.insert(key, task);
+    }
+
+    /**
+     * Removes a task under its current deadline.
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        if (task.getDeadline() == null || blocks.isEmpty()) {
+            return;
+        }
+        int blockIndex = findBlock(key(task.getDeadlineDay(), task));
+        DeadlineBlock block = blocks.get(blockIndex);
+        block.remove(key(task.getDeadlineDay(), task));
+        if (block.size() == 0) {
+            blocks.remove(blockIndex);
+        }
+    }
+
+    /**
+     * Lists the tasks whose deadline lies strictly between two epoch days, ordered by deadline and ID.
+     * @param afterDay The exclusive lower bound.
+     * @param beforeDay The exclusive upper bound.
+     * @return The matching tasks.
+     */
+    public List<Task> between(long afterDay, long beforeDay) {
+        List<Task> matches = new ArrayList<>();
+        if (blocks.isEmpty() || afterDay + 1 >= beforeDay) {
+            return matches;
+        }
+        long from = (afterDay + 1) << Integer.SIZE;
+        long to = beforeDay << Integer.SIZE;
+        int blockIndex = findBlock(from);
+        int index = blocks.get(blockIndex).lowerBound(from);
+        for (; blockIndex < blocks.size(); blockIndex++, index = 0) {
+            DeadlineBlock block = blocks.get(blockIndex);
+            for (; index < block.size(); index++) {
+                if (block.keyAt(index) >= to) {
+                    return matches;
+                }
+                matches.add(block.taskAt(index));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the last block whose first key is not greater than the given key, or the first block.
+     * @param key The key to search for.
+     * @return The position of the block.
+     */
+    private int findBlock(long key) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            DeadlineBlock block = blocks.get(middle);
+            if (block.keyAt(0) <= key) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Combines a deadline and a task ID into one sortable key.
+     * @param day The deadline as epoch day.
+     * @param task The task.
+     * @return The key.
+     */
+    private static long key(int day, Task task) {
+        return (long) day << Integer.SIZE | Integer.parseInt(task.getId()) & ID_MASK;
+    }
+}
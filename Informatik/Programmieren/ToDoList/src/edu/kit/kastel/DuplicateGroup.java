@@ -0,0 +1,132 @@
+package edu.kit.kastel;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds all tasks sharing one name, split into sub-buckets by deadline.
+ * Tasks without a deadline are duplicates of every other task of the group, tasks with a deadline are duplicates
+ * of the tasks with the same deadline or without a deadline.
+ * @author unweb
+ * @version 1.0
+ */
+public final class DuplicateGroup {
+    private final Set<Task> undated = new HashSet<>();
+    private final Map<String, Set<Task>> dated = new HashMap<>();
+    private final Set<String> repeatedDeadlines = new HashSet<>();
+    private int size;
+
+    /**
+     * Adds a task with its current deadline to the group.
+     * @param task The task to add.
+     */
+    public void add(Task task) {
+        size++;
+        String deadline = task.getDeadline();
+        if (deadline == null) {
+            undated.add(task);
+            return;
+        }
+        Set<Task> bucket = dated.computeIfAbsent(deadline, key -> new HashSet<>());
+        bucket.add(task);
+        if (bucket.size() == 2) {
+            repeatedDeadlines.add(deadline);
+        }
+    }
+
+    /**
+     * Removes a task with its current deadline from the group.
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        size--;
+        String deadline = task.getDeadline();
+        if (deadline == null) {
+            undated.remove(task);
+            return;
+        }
+        Set<Task> bucket = dated.get(deadline);
+        bucket.remove(task);
+        if (bucket.isEmpty()) {
+            dated.remove(deadline);
+        } else if (bucket.size() == 1) {
+            repeatedDeadlines.remove(deadline);
+        }
+    }
+
+    /**
+     * Checks if the group contains no tasks anymore.
+     * @return true if the group is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks if at least two tasks of the group are duplicates of each other.
+     * @return true if the group contains duplicates.
+     */
+    public boolean hasDuplicates() {
+        return size > 1 && (!undated.isEmpty() || !repeatedDeadlines.isEmpty());
+    }
+
+    /**
+     * Collects the duplicates of the group in the order the pairwise comparison of all tasks reports them.
+     * Each duplicate is encoded as the lowest ID among itself and its duplicates in the upper half
+     * and its own ID in the lower half, so sorting the keys yields that order.
+     * @param keys The list to append the keys to.
+     */
+    public void collectDuplicates(List<Long> keys) {
+        if (!hasDuplicates()) {
+            return;
+        }
+        int lowestUndated = lowestId(undated);
+        if (!undated.isEmpty()) {
+            int lowestOverall = lowestUndated;
+            for (Set<Task> bucket : dated.values()) {
+                int lowest = Math.min(lowestUndated, lowestId(bucket));
+                lowestOverall = Math.min(lowestOverall, lowest);
+                for (Task task : bucket) {
+                    keys.add(key(lowest, task));
+                }
+            }
+            for (Task task : undated) {
+                keys.add(key(lowestOverall, task));
+            }
+            return;
+        }
+        for (String deadline : repeatedDeadlines) {
+            Set<Task> bucket = dated.get(deadline);
+            int lowest = lowestId(bucket);
+            for (Task task : bucket) {
+                keys.add(key(lowest, task));
+            }
+        }
+    }
+
+    /**
+     * Finds the lowest ID in a bucket of tasks.
+     * @param bucket The tasks to check.
+     * @return The lowest ID, or {@link Integer#MAX_VALUE} for an empty bucket.
+     */
+    private static int lowestId(Set<Task> bucket) {
+        int lowest = Integer.MAX_VALUE;
+        for (Task task : bucket) {
+            lowest = Math.min(lowest, Integer.parseInt(task.getId()));
+        }
+        return lowest;
+    }
+
+    /**
+     * Encodes the sort key of a duplicate.
+     * @param lowest The lowest ID among the task and its duplicates.
+     * @param task The task.
+     * @return The sort key.
+     */
+    private static long key(int lowest, Task task) {
+        return (long) Math.min(lowest, Integer.parseInt(task.getId())) << Integer.SIZE | Integer.parseInt(task.getId());
+    }
+}
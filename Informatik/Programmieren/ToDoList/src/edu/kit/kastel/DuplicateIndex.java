@@ -0,0 +1,66 @@
+package edu.kit.kastel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the duplicate groups of all tasks that are not deleted, keyed by task name.
+ * The index is updated when a task is added, deleted, restored or gets a new deadline,
+ * so finding the duplicates only visits the groups that contain some.
+ * @author unweb
+ * @version 1.0
+ */
+public final class DuplicateIndex {
+    private static final long ID_MASK = 0xFFFFFFFFL;
+    private final Map<String, DuplicateGroup> groups = new HashMap<>();
+    private final Set<String> namesWithDuplicates = new LinkedHashSet<>();
+
+    /**
+     * Adds a task with its current name and deadline.
+     * @param task The task to add.
+     */
+    public void add(Task task) {
+        DuplicateGroup group = groups.computeIfAbsent(task.getName(), name -> new DuplicateGroup());
+        group.add(task);
+        if (group.hasDuplicates()) {
+            namesWithDuplicates.add(task.getName());
+        }
+    }
+
+    /**
+     * Removes a task with its current name and deadline.
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        DuplicateGroup group = groups.get(task.getName());
+        group.remove(task);
+        if (!group.hasDuplicates()) {
+            namesWithDuplicates.remove(task.getName());
+        }
+        if (group.isEmpty()) {
+            groups.remove(task.getName());
+        }
+    }
+
+    /**
+     * Lists the IDs of all duplicate tasks in the order the pairwise comparison of all tasks reports them.
+     * @return The IDs of the duplicates.
+     */
+    public List<String> findDuplicates() {
+        List<Long> keys = new ArrayList<>();
+        for (String name : namesWithDuplicates) {
+            groups.get(name).collectDuplicates(keys);
+        }
+        Collections.sort(keys);
+        List<String> duplicateIds = new ArrayList<>(keys.size());
+        for (long key : keys) {
+            duplicateIds.add(String.valueOf(key & ID_MASK));
+        }
+        return duplicateIds;
+    }
+}
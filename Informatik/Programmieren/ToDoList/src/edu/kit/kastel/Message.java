@@ -1,6 +1,11 @@
 package edu.kit.kastel;
 
-import edu.kit.kastel.utility.Date;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
 import edu.kit.kastel.utility.TypeOfPrint;
 
 /**
@@ -101,19 +106,91 @@ public final class Message {
     /**
      * Prints a ToDoItem and its hierarchy based on a specific printing condition.
      * @param item The root item (Task or List) to print.
-     * @param type The type of filter/condition to apply (e.g., FIND, UPCOMING).
-     * @param args Additional arguments required for the condition (e.g., date strings).
+     * @param type The type of filter/condition to apply (e.g., REGULAR, INCOMPLETED_ONLY).
      */
-    public static void printWithCondition(ToDoItem item, TypeOfPrint type,  Object... args) {
+    public static void printWithCondition(ToDoItem item, TypeOfPrint type) {
         if (item == null) {
             printSystemMessage(SystemMessage.INVALID_TASK_ID);
             return;
         }
         StringBuilder sb = new StringBuilder();
-        printWithConditionsRecursive(item, type, sb, BULLET_POINT, args);
+        printWithConditionsRecursive(item, type, sb, BULLET_POINT);
         System.out.println(sb.toString());
     }
 
+    /**
+     * Prints the tasks found by an index in the hierarchy of their top-level tasks, in the same layout as
+     * {@link #printWithCondition}: a matching task is printed with all of its subtasks, and a matching task
+     * below another matching task is only printed as part of it. Tasks within lists are not printed,
+     * and top-level tasks without any match print nothing.
+     * Only the matches and their ancestors are visited.
+     * @param matches The matching tasks in any order.
+     */
+    public static void printMatches(Collection<Task> matches) {
+        Set<Task> matched = new HashSet<>(matches);
+        Set<Task> onPath = new HashSet<>();
+        Set<Task> roots = new TreeSet<>(Comparator.comparingInt(task -> Integer.parseInt(task.getId())));
+        for (Task task : matched) {
+            Task root = findPrintedRoot(task, matched);
+            if (root == null) {
+                continue;
+            }
+            roots.add(root);
+            ToDoItem ancestor = task.getParent();
+            while (ancestor instanceof Task ancestorTask && onPath.add(ancestorTask)) {
+                ancestor = ancestorTask.getParent();
+            }
+        }
+        for (Task root : roots) {
+            StringBuilder sb = new StringBuilder();
+            printMatchesRecursive(root, matched, onPath, sb, BULLET_POINT);
+            System.out.println(sb.toString());
+        }
+    }
+
+    /**
+     * Finds the top-level task under which a matching task is printed.
+     * @param task The matching task.
+     * @param matched All matching tasks.
+     * @return The top-level task, or null if the task is printed as part of a matching ancestor or lies in a list.
+     */
+    private static Task findPrintedRoot(Task task, Set<Task> matched) {
+        Task root = task;
+        ToDoItem parent = task.getParent();
+        while (parent instanceof Task parentTask) {
+            if (matched.contains(parentTask)) {
+                return null;
+            }
+            root = parentTask;
+            parent = parentTask.getParent();
+        }
+        return parent instanceof TasksList ? null : root;
+    }
+
+    /**
+     * Recursively appends the matching tasks below a task, descending only towards matches.
+     * @param task The current task.
+     * @param matched All matching tasks.
+     * @param onPath The ancestors of the matching tasks.
+     * @param sb The StringBuilder to append to.
+     * @param indent The current indentation level.
+     */
+    private static void printMatchesRecursive(Task task, Set<Task> matched, Set<Task> onPath, StringBuilder sb,
+            String indent) {
+        if (matched.contains(task)) {
+            printItem(task, sb, indent);
+            for (Task subTask : task.getSubTasks()) {
+                printWithConditionsRecursive(subTask, TypeOfPrint.REGULAR, sb, indent + INDENTATION);
+            }
+            return;
+        }
+        for (Task subTask : task.getSubTasks()) {
+            if (onPath.contains(subTask) || matched.contains(subTask)) {
+                printMatchesRecursive(subTask, matched, onPath, sb, indent);
+            }
+        }
+    }
+
     /**
      * Recursively appends incomplete tasks to the string builder.
      * @param task The task to check.
@@ -155,55 +232,20 @@ public final class Message {
     }
 
     /**
-     * Recursively traverses and prints items that satisfy the specified condition.
-     * @param item The current item to check.
+     * Recursively prints an item with all of its subtasks, or only the incomplete ones.
+     * @param item The current item to print.
      * @param type The condition type.
      * @param sb The StringBuilder to append to.
      * @param indent The current indentation level.
-     * @param args Additional arguments for the condition.
      */
-    private static void printWithConditionsRecursive(ToDoItem item, TypeOfPrint type, StringBuilder sb, String indent, Object... args) {
-        boolean fullfillsCondition = true;
-        switch (type) {
-            case INCOMPLETED_ONLY -> {
-                printIncompletedRecursive((Task) item, sb, indent);
-                return;
-            }
-            case TAGGED_WITH -> {
-                String tag = (String) args[0];
-                fullfillsCondition = item instanceof Task task && tag.equals(task.getTag());
-            }
-            case FIND -> {
-                String name = (String) args[0];
-                fullfillsCondition = item instanceof Task task && task.getName().contains(name);
-            }
-            case BEFORE -> {
-                String date = (String) args[0];
-                fullfillsCondition = item instanceof Task task && Date.before(date, task);
-            }
-            case UPCOMING -> {
-                String date = (String) args[0];
-                fullfillsCondition = item instanceof Task task && Date.upcoming(date,  task);
-            }
-            case BETWEEN -> {
-                String startDate = (String) args[0];
-                String endDate = (String) args[1];
-                fullfillsCondition = item instanceof Task task && Date.between(startDate, endDate, task);
-            }
-            default -> fullfillsCondition = true;
-        }
-        if (fullfillsCondition) {
-            printItem(item, sb, indent);
-            for (Task subTask : item.getSubTasks()) {
-                printWithConditionsRecursive(subTask, TypeOfPrint.REGULAR, sb, indent + INDENTATION);
-            }
-            return;
-        }
-        if (item instanceof TasksList || item.getSubTasks() == null) {
+    private static void printWithConditionsRecursive(ToDoItem item, TypeOfPrint type, StringBuilder sb, String indent) {
+        if (type == TypeOfPrint.INCOMPLETED_ONLY) {
+            printIncompletedRecursive((Task) item, sb, indent);
             return;
         }
+        printItem(item, sb, indent);
         for (Task subTask : item.getSubTasks()) {
-            printWithConditionsRecursive(subTask, type, sb, indent);
+            printWithConditionsRecursive(subTask, TypeOfPrint.REGULAR, sb, indent + INDENTATION);
         }
     }
 
@@ -0,0 +1,148 @@
+package edu.kit.kastel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Trigram index over the names of all tasks for substring search.
+ * Every task is listed under each sequence of three characters of its folded name, so a search intersects
+ * the posting lists of the trigrams of the query and verifies only the remaining candidates.
+ * Queries shorter than three characters have no trigrams and verify every task.
+ * @author unweb
+ * @version 1.0
+ */
+public final class NameIndex {
+    private static final int GRAM_LENGTH = 3;
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final PostingList allTasks = new PostingList();
+
+    /**
+     * Adds a task under the trigrams of its name. Tasks must be added in ascending ID order.
+     * @param task The task to add.
+     */
+    public void add(Task task) {
+        int id = Integer.parseInt(task.getId());
+        allTasks.add(id);
+        for (long gram : grams(fold(task.getName()))) {
+            postings.computeIfAbsent(gram, key -> new PostingList()).add(id);
+        }
+    }
+
+    /**
+     * Finds the tasks whose name contains the query in ascending ID order, stopping after the limit is reached.
+     * Only matches that are printed on their own count, as in {@link Message#printMatches}: a task within a list
+     * or below a matching task is skipped, the latter is printed as part of its matching ancestor anyway.
+     * @param query The substring to search for.
+     * @param ignoreCase Whether upper and lower case letters are considered equal.
+     * @param limit The maximum number of printed matches.
+     * @param taskById Resolves a candidate ID to its task for verification.
+     * @return The printed matching tasks.
+     */
+    public List<Task> find(String query, boolean ignoreCase, int limit, IntFunction<Task> taskById) {
+        List<Task> matches = new ArrayList<>();
+        String foldedQuery = fold(query);
+        String needle = ignoreCase ? foldedQuery : query;
+        List<PostingList> lists = new ArrayList<>();
+        for (long gram : grams(foldedQuery)) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return matches;
+            }
+            lists.add(list);
+        }
+        if (lists.isEmpty()) {
+            lists.add(allTasks);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        PostingList smallest = lists.get(0);
+        for (int i = 0; i < smallest.size() && matches.size() < limit; i++) {
+            int id = smallest.get(i);
+            if (containedInAll(lists, id)) {
+                Task task = taskById.apply(id);
+                if (matches(task, needle, ignoreCase) && isPrintedOnItsOwn(task, needle, ignoreCase)) {
+                    matches.add(task);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Checks if the name of a task contains the query.
+     * @param task The task.
+     * @param needle The query, folded if case is ignored.
+     * @param ignoreCase Whether upper and lower case letters are considered equal.
+     * @return true if the name contains the query.
+     */
+    private static boolean matches(Task task, String needle, boolean ignoreCase) {
+        String name = ignoreCase ? fold(task.getName()) : task.getName();
+        return name.contains(needle);
+    }
+
+    /**
+     * Checks if a matching task is printed on its own, that is neither within a list nor below a matching task.
+     * @param task The matching task.
+     * @param needle The query, folded if case is ignored.
+     * @param ignoreCase Whether upper and lower case letters are considered equal.
+     * @return true if the task is printed on its own.
+     */
+    private static boolean isPrintedOnItsOwn(Task task, String needle, boolean ignoreCase) {
+        ToDoItem parent = task.getParent();
+        while (parent instanceof Task parentTask) {
+            if (matches(parentTask, needle, ignoreCase)) {
+                return false;
+            }
+            parent = parentTask.getParent();
+        }
+        return !(parent instanceof TasksList);
+    }
+
+    /**
+     * Checks if an ID of the smallest posting list is contained in all other posting lists.
+     * @param lists The posting lists, the smallest first.
+     * @param id The ID to check.
+     * @return true if every list contains the ID.
+     */
+    private static boolean containedInAll(List<PostingList> lists, int id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lower-cases a string one character at a time. Unlike {@link String#toLowerCase}, the mapping of a character
+     * does not depend on its neighbours, such as the final sigma, so a query folds the same way as the names.
+     * @param text The string.
+     * @return The folded string of the same length.
+     */
+    static String fold(String text) {
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(text.charAt(i));
+        }
+        return new String(folded);
+    }
+
+    /**
+     * Packs the distinct trigrams of a string into longs of three 16-bit characters.
+     * @param text The string.
+     * @return The distinct trigrams.
+     */
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add((long) text.charAt(i) << (2 * Character.SIZE) | (long) text.charAt(i + 1) << Character.SIZE
+                    | text.charAt(i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,54 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+
+/**
+ * Growable, ascending list of task IDs used as a posting list of the {@link NameIndex}.
+ * @author unweb
+ * @version 1.0
+ */
+public final class PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Appends an ID. IDs must be appended in ascending order, repeating the last ID has no effect.
+     * @param id The ID to append.
+     */
+    public void add(int id) {
+        if (size > 0 && ids[size - 1] == id) {
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Retrieves the number of IDs.
+     * @return The number of IDs.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the ID at a position.
+     * @param index The position.
+     * @return The ID.
+     */
+    public int get(int index) {
+        return this.ids[index];
+    }
+
+    /**
+     * Checks if the list contains an ID, using binary search.
+     * @param id The ID to check.
+     * @return true if the ID is contained.
+     */
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+}
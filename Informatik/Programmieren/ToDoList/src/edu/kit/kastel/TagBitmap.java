@@ -0,0 +1,131 @@
+package edu.kit.kastel;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of task IDs in the style of a roaring bitmap: the IDs are split by their upper 16 bits
+ * into chunks, and only chunks containing at least one ID are stored, each as a bitset of 65536 bits.
+ * Intersections and unions work chunk by chunk and word by word.
+ * @author unweb
+ * @version 1.0
+ */
+public final class TagBitmap {
+    private static final int CHUNK_BITS = 16;
+    private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) / Long.SIZE;
+    private static final int LOW_MASK = (1 << CHUNK_BITS) - 1;
+    private int[] keys = new int[0];
+    private long[][] chunks = new long[0][];
+    private int size;
+
+    /**
+     * Adds an ID to the set.
+     * @param value The non-negative ID to add.
+     */
+    public void add(int value) {
+        int key = value >>> CHUNK_BITS;
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, key, new long[WORDS_PER_CHUNK]);
+        }
+        int low = value & LOW_MASK;
+        chunks[index][low >>> 6] |= 1L << low;
+    }
+
+    /**
+     * Computes the intersection of this set and another set.
+     * @param other The other set.
+     * @return A new set with the IDs contained in both sets.
+     */
+    public TagBitmap and(TagBitmap other) {
+        TagBitmap result = new TagBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                long[] words = new long[WORDS_PER_CHUNK];
+                boolean empty = true;
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    words[w] = chunks[i][w] & other.chunks[j][w];
+                    empty &= words[w] == 0;
+                }
+                if (!empty) {
+                    result.insertChunk(result.size, keys[i], words);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the union of this set and another set.
+     * @param other The other set.
+     * @return A new set with the IDs contained in either set.
+     */
+    public TagBitmap or(TagBitmap other) {
+        TagBitmap result = new TagBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && keys[i] < other.keys[j]) {
+                result.insertChunk(result.size, keys[i], chunks[i].clone());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.insertChunk(result.size, other.keys[j], other.chunks[j].clone());
+                j++;
+            } else {
+                long[] words = new long[WORDS_PER_CHUNK];
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    words[w] = chunks[i][w] | other.chunks[j][w];
+                }
+                result.insertChunk(result.size, keys[i], words);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies an action to every ID of the set in ascending order.
+     * @param action The action to apply.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int base = keys[i] << CHUNK_BITS;
+            for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                long word = chunks[i][w];
+                while (word != 0) {
+                    action.accept(base + w * Long.SIZE + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts a chunk at a position of the sorted chunk arrays.
+     * @param index The position.
+     * @param key The upper 16 bits of the IDs in the chunk.
+     * @param words The bitset of the chunk.
+     */
+    private void insertChunk(int index, int key, long[] words) {
+        if (size == keys.length) {
+            int capacity = Math.max(1, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            chunks = Arrays.copyOf(chunks, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(chunks, index, chunks, index + 1, size - index);
+        keys[index] = key;
+        chunks[index] = words;
+        size++;
+    }
+}
@@ -0,0 +1,65 @@
+package edu.kit.kastel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.kit.kastel.utility.TagTable;
+
+/**
+ * Inverted index from tag ID to the bitmap of the IDs of all tasks carrying that tag.
+ * Tag expressions are evaluated as bitmap operations, with AND binding stronger than OR.
+ * @author unweb
+ * @version 1.0
+ */
+public final class TagIndex {
+    /** Operator of an intersection in a tag expression. */
+    public static final String AND = "AND";
+    /** Operator of a union in a tag expression. */
+    public static final String OR = "OR";
+    private final List<TagBitmap> postings = new ArrayList<>();
+
+    /**
+     * Records that a task carries a tag.
+     * @param tagId The ID of the tag.
+     * @param task The tagged task.
+     */
+    public void add(int tagId, Task task) {
+        while (postings.size() <= tagId) {
+            postings.add(new TagBitmap());
+        }
+        postings.get(tagId).add(Integer.parseInt(task.getId()));
+    }
+
+    /**
+     * Evaluates a tag expression of alternating tags and operators, e.g. {@code #a AND #b OR #c}.
+     * @param terms The tags at even positions and the operators at odd positions.
+     * @return The IDs of the tasks matching the expression.
+     */
+    public TagBitmap evaluate(String[] terms) {
+        TagBitmap result = new TagBitmap();
+        TagBitmap conjunction = posting(terms[0]);
+        for (int i = 1; i + 1 < terms.length; i += 2) {
+            TagBitmap next = posting(terms[i + 1]);
+            if (terms[i].equalsIgnoreCase(AND)) {
+                conjunction = conjunction.and(next);
+            } else {
+                result = result.or(conjunction);
+                conjunction = next;
+            }
+        }
+        return result.or(conjunction);
+    }
+
+    /**
+     * Retrieves the bitmap of a tag.
+     * @param tag The tag string.
+     * @return The bitmap, empty if no task carries the tag.
+     */
+    private TagBitmap posting(String tag) {
+        int tagId = TagTable.find(tag);
+        if (tagId == TagTable.UNKNOWN_TAG || tagId >= postings.size()) {
+            return new TagBitmap();
+        }
+        return postings.get(tagId);
+    }
+}
@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
+import edu.kit.kastel.utility.Date;
 import edu.kit.kastel.utility.PriorityTable;
+import edu.kit.kastel.utility.TagTable;
 import edu.kit.kastel.utility.Validate;
 
 
@@ -19,8 +21,10 @@ public class Task implements ToDoItem {
     private final String name;
     private String priority;
     private String deadline;
-    private String tag;
+    private int deadlineDay;
+    private int[] tagIds = TagTable.NO_TAGS;
     private final String id;
+    private ToDoItem parent;
     private boolean completed;
     private boolean isDeleted;
 
@@ -36,6 +40,7 @@ public class Task implements ToDoItem {
         taskCounter++;
         this.id = "" + taskCounter;
         this.deadline = deadline;
+        this.deadlineDay = Date.toEpochDay(deadline);
         isDeleted = false;
     }
 
@@ -64,6 +69,7 @@ public class Task implements ToDoItem {
             this.deadline = null;
         } else if (Validate.validateDeadline(eitherPriorityOrDeadline)) {
             this.deadline = eitherPriorityOrDeadline;
+            this.deadlineDay = Date.toEpochDay(eitherPriorityOrDeadline);
             this.priority = null;
         } 
         taskCounter++;
@@ -78,17 +84,24 @@ public class Task implements ToDoItem {
 
     @Override
     public String getTag() {
-        return this.tag;
+        return TagTable.join(this.tagIds);
     }
 
     @Override
-    public void setTag(String tag) {
+    public int[] getTagIds() {
+        return this.tagIds;
+    }
+
+    @Override
+    public int setTag(String tag) {
         if (!Validate.validateTag(tag)) {
-            Message.printSystemMessage(Message.SystemMessage.INVALID_TAG, this.tag);
-            return;
+            Message.printSystemMessage(Message.SystemMessage.INVALID_TAG, tag);
+            return -1;
         }
-        this.tag = tag;
-        Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_TAGGED, this.id, this.tag);
+        int tagId = TagTable.intern(tag);
+        this.tagIds = TagTable.withTag(this.tagIds, tagId);
+        Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_TAGGED, this.id, tag);
+        return tagId;
     }
 
     @Override
@@ -97,6 +110,11 @@ public class Task implements ToDoItem {
         sortSubTasksByPriority();
     }
 
+    @Override
+    public void removeSubTask(Task task) {
+        this.subTasks.remove(task);
+    }
+
     @Override
     public void sortSubTasksByPriority() {
         subTasks.sort(Comparator.comparingInt(t -> PriorityTable.getPriorityValue(t.getPriority())));
@@ -132,6 +150,30 @@ public class Task implements ToDoItem {
         return this.deadline;
     }
 
+    /**
+     * Retrieves the item this task is assigned to.
+     * @return The parent task or list, or null for a top-level task.
+     */
+    public ToDoItem getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Sets the item this task is assigned to.
+     * @param parent The new parent task or list, or null for a top-level task.
+     */
+    public void setParent(ToDoItem parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Retrieves the deadline of the task as the number of days since 1970-01-01.
+     * @return The epoch day of the deadline, only meaningful if the deadline is set.
+     */
+    public int getDeadlineDay() {
+        return this.deadlineDay;
+    }
+
     /**
      * Checks if the task is marked as completed.
      * @return true if completed, false otherwise.
@@ -169,6 +211,7 @@ public class Task implements ToDoItem {
             return;
         }
         this.deadline = newDeadline;
+        this.deadlineDay = Date.toEpochDay(newDeadline);
         Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_CHANGED_DEADLINE, this.id, this.deadline);
     }
 
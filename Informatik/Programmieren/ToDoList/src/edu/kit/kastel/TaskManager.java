@@ -1,21 +1,36 @@
 package edu.kit.kastel;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import edu.kit.kastel.utility.Date;
 import edu.kit.kastel.utility.TypeOfPrint;
-import edu.kit.kastel.utility.Validate;
 
 
 /**
  * Singleton class responsible for managing tasks, lists, and their operations.
+ * Every task and list is indexed by its ID over the whole hierarchy, so commands by ID find items at any depth
+ * in constant time. Tasks keep a pointer to their parent, so assigning a nested task detaches it from its old parent.
+ * Tasks that are not deleted are grouped by name and deadline as they change, so duplicates are found without
+ * comparing all pairs of tasks. Tasks with a deadline are kept sorted by deadline, so date queries are range scans.
+ * Tagged tasks are kept in an inverted index per tag, so tag queries are bitmap operations.
+ * Task names are indexed by their trigrams, so a name search only verifies tasks sharing all trigrams of the query.
  * @author unweb
  * @version 1.0
  */
 public final class TaskManager {
     private static TaskManager instance;
-    private final List<ToDoItem> items = new ArrayList<>();
-    private final List<Task> allTasks = new ArrayList<>();
+    private final Set<ToDoItem> items = new LinkedHashSet<>();
+    private final DuplicateIndex duplicates = new DuplicateIndex();
+    private final DeadlineIndex deadlines = new DeadlineIndex();
+    private final TagIndex tags = new TagIndex();
+    private final NameIndex names = new NameIndex();
+    private final Map<String, ToDoItem> itemsById = new HashMap<>();
 
     /**
      * Private constructor to enforce Singleton pattern.
@@ -40,7 +55,10 @@ public final class TaskManager {
      */
     public void addTask(Task newTask) {
         items.add(newTask);
-        allTasks.add(newTask);
+        duplicates.add(newTask);
+        deadlines.add(newTask);
+        names.add(newTask);
+        itemsById.put(newTask.getId(), newTask);
     }
 
     /**
@@ -50,35 +68,45 @@ public final class TaskManager {
     public void addList(String listName) {
         TasksList newList = new TasksList(listName);
         items.add(newList);
+        itemsById.putIfAbsent(listName, newList);
     }
 
     /**
-     * Assigns a tag to the item identified by the given ID.
+     * Adds a tag to the item identified by the given ID.
      * @param id The ID of the item to tag.
      * @param tag The tag string to apply.
      */
     public void tag(String id, String tag) {
-        for (ToDoItem item : items) {
-            if (item.getId().equals(id)) {
-                item.setTag(tag);
-                break;
-            }
+        ToDoItem item = findToDoItem(id);
+        if (item == null) {
+            return;
+        }
+        int tagId = item.setTag(tag);
+        if (item instanceof Task task && tagId >= 0) {
+            tags.add(tagId, task);
         }
     }
 
     /**
      * Moves a task to become a subtask of another item.
+     * A task cannot be assigned to itself or to one of its own subtasks.
      * @param underId The ID of the task to be moved.
      * @param upperId The ID of the new parent item.
      */
     public void assign(String underId, String upperId) {
         ToDoItem upperItem = findToDoItem(upperId);
-        ToDoItem underItem = findToDoItem(underId);
-        if (upperItem != null && underItem != null && underItem instanceof Task) {
-            upperItem.addSubTask((Task) underItem);
-            Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_ASSIGNED, underItem.getId(), upperItem.getId());
-            items.remove(underItem);
+        Task underTask = findTask(underId);
+        if (upperItem == null || underTask == null || isInHierarchy(underTask, upperItem)) {
+            return;
+        }
+        if (underTask.getParent() == null) {
+            items.remove(underTask);
+        } else {
+            underTask.getParent().removeSubTask(underTask);
         }
+        upperItem.addSubTask(underTask);
+        underTask.setParent(upperItem);
+        Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_ASSIGNED, underTask.getId(), upperItem.getId());
     }
 
     /**
@@ -99,9 +127,18 @@ public final class TaskManager {
      */
     public void changeDate(String id, String newDate) {
         Task task = findTask(id);
-        if (task != null) {
+        if (task == null) {
+            return;
+        }
+        deadlines.remove(task);
+        if (task.isDeleted()) {
             task.setDeadline(newDate);
+        } else {
+            duplicates.remove(task);
+            task.setDeadline(newDate);
+            duplicates.add(task);
         }
+        deadlines.add(task);
     }
 
     /**
@@ -123,6 +160,11 @@ public final class TaskManager {
     public void delete(String id) {
         Task task = findTask(id);
         if (task != null) {
+            forEachInHierarchy(task, subTask -> {
+                if (!subTask.isDeleted()) {
+                    duplicates.remove(subTask);
+                }
+            });
             task.setDeleted(true);
         }
     }
@@ -134,6 +176,11 @@ public final class TaskManager {
     public void restore(String id) {
         Task task = findTask(id);
         if (task != null) {
+            forEachInHierarchy(task, subTask -> {
+                if (subTask.isDeleted()) {
+                    duplicates.add(subTask);
+                }
+            });
             task.setDeleted(false);
         }
     }
@@ -157,33 +204,32 @@ public final class TaskManager {
     }
 
     /**
-     * Prints all items associated with a specific tag.
-     * @param tag The tag to filter by.
+     * Prints all tasks matching a tag expression of alternating tags and operators, e.g. {@code #a AND #b OR #c}.
+     * @param terms The tags at even positions and the operators {@code AND} and {@code OR} at odd positions.
      */
-    public void taggedWith(String tag) {
-        for (ToDoItem item : items) {
-            Message.printWithCondition(item, TypeOfPrint.TAGGED_WITH, tag);
-        }
+    public void taggedWith(String[] terms) {
+        List<Task> matches = new ArrayList<>();
+        tags.evaluate(terms).forEach(id -> matches.add(findTask(String.valueOf(id))));
+        Message.printMatches(matches);
     }
 
     /**
-     * Searches for and prints items containing the specified name.
+     * Searches for and prints tasks whose name contains the specified substring.
      * @param name The name substring to search for.
+     * @param ignoreCase Whether upper and lower case letters are considered equal.
+     * @param limit The maximum number of matching tasks printed on their own, taken in ascending ID order.
      */
-    public void find(String name) {
-        for (ToDoItem item : items) {
-            Message.printWithCondition(item, TypeOfPrint.FIND, name);
-        }
+    public void find(String name, boolean ignoreCase, int limit) {
+        Message.printMatches(names.find(name, ignoreCase, limit, id -> findTask(String.valueOf(id))));
     }
 
     /**
-     * Prints tasks due within the upcoming week relative to the date.
+     * Prints tasks due within the upcoming week relative to the date, excluding the date itself.
      * @param date The current reference date.
      */
     public void upcoming(String date) {
-        for (ToDoItem item : items) {
-            Message.printWithCondition(item, TypeOfPrint.UPCOMING, date);
-        }
+        int day = Date.toEpochDay(date);
+        Message.printMatches(deadlines.between(day, (long) day + Date.UPCOMING_DAYS));
     }
 
     /**
@@ -191,57 +237,63 @@ public final class TaskManager {
      * @param date The reference deadline date.
      */
     public void before(String date) {
-        for (ToDoItem item : items) {
-            Message.printWithCondition(item, TypeOfPrint.BEFORE, date);
-        }
+        Message.printMatches(deadlines.between(Integer.MIN_VALUE - 1L, Date.toEpochDay(date)));
     }
 
     /**
-     * Prints tasks due between the specified start and end dates.
+     * Prints tasks due strictly between the specified start and end dates.
      * @param startDate The start of the date range.
      * @param endDate The end of the date range.
      */
     public void between(String startDate, String endDate) {
-        for (ToDoItem item : items) {
-            Message.printWithCondition(item, TypeOfPrint.BETWEEN, startDate, endDate);
-        }
+        Message.printMatches(deadlines.between(Date.toEpochDay(startDate), Date.toEpochDay(endDate)));
     }
 
     /**
-     * Identifies and reports potentially duplicate tasks.
+     * Identifies and reports potentially duplicate tasks among the tasks that are not deleted.
      */
     public void duplicate() {
-        List<String> duplicateIds = new ArrayList<>();
-        for (int i = 0; i < allTasks.size(); i++) {
-            Task task1 = allTasks.get(i);
-            for (int j = i + 1; j < allTasks.size(); j++) {
-                Task task2 = allTasks.get(j);
-                if (Validate.validateDuplicateTask(task1, task2)) {
-                    if (!duplicateIds.contains(task1.getId())) {
-                        duplicateIds.add(task1.getId());
-                    }
-                    if (!duplicateIds.contains(task2.getId())) {
-                        duplicateIds.add(task2.getId());
-                    }
-                }
-            }
-        }
+        List<String> duplicateIds = duplicates.findDuplicates();
         String duplicatesStr = String.join(", ", duplicateIds);
         Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_FIND_DUPLICATES, duplicateIds.size(), duplicatesStr);
     }
 
     /**
-     * Helper method to find a ToDoItem by its unique ID.
+     * Helper method to find a ToDoItem at any depth by its unique ID.
      * @param id The ID to search for.
      * @return The found ToDoItem or null if not found.
      */
     private ToDoItem findToDoItem(String id) {
-        for (ToDoItem item : items) {
-            if (item.getId().equals(id)) {
-                return item;
+        return itemsById.get(id);
+    }
+
+    /**
+     * Helper method to apply an action to a task and all of its subtasks.
+     * @param task The root of the hierarchy.
+     * @param action The action to apply.
+     */
+    private void forEachInHierarchy(Task task, Consumer<Task> action) {
+        action.accept(task);
+        for (Task subTask : task.getSubTasks()) {
+            forEachInHierarchy(subTask, action);
+        }
+    }
+
+    /**
+     * Helper method to check if an item is the task itself or one of its subtasks, following the parent pointers.
+     * @param task The root of the hierarchy.
+     * @param item The item to check.
+     * @return true if the item lies within the hierarchy of the task.
+     */
+    private boolean isInHierarchy(Task task, ToDoItem item) {
+        ToDoItem current = item;
+        while (current instanceof Task currentTask) {
+            if (currentTask == task) {
+                return true;
             }
+            current = currentTask.getParent();
         }
-        return null;
+        return false;
     }
 
     /**
@@ -5,6 +5,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import edu.kit.kastel.utility.PriorityTable;
+import edu.kit.kastel.utility.TagTable;
 import edu.kit.kastel.utility.Validate;
 
 
@@ -16,7 +17,7 @@ import edu.kit.kastel.utility.Validate;
 public class TasksList implements ToDoItem {
     private final List<Task> tasks;
     private final String listName;
-    private String tag;
+    private int[] tagIds = TagTable.NO_TAGS;
 
     /**
      * Constructs a new TasksList with the specified name.
@@ -34,17 +35,24 @@ public class TasksList implements ToDoItem {
 
     @Override
     public String getTag() {
-        return this.tag;
+        return TagTable.join(this.tagIds);
     }
 
     @Override
-    public void setTag(String tag) {
+    public int[] getTagIds() {
+        return this.tagIds;
+    }
+
+    @Override
+    public int setTag(String tag) {
         if (!Validate.validateTag(tag)) {
-            Message.printSystemMessage(Message.SystemMessage.INVALID_TAG, this.tag);
-            return;
+            Message.printSystemMessage(Message.SystemMessage.INVALID_TAG, tag);
+            return -1;
         }
-        this.tag = tag;
-        Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_TAGGED, this.listName, this.tag);
+        int tagId = TagTable.intern(tag);
+        this.tagIds = TagTable.withTag(this.tagIds, tagId);
+        Message.printSystemMessage(Message.SystemMessage.SUCESSFULLY_TAGGED, this.listName, tag);
+        return tagId;
     }
 
     @Override
@@ -53,6 +61,11 @@ public class TasksList implements ToDoItem {
         sortSubTasksByPriority();
     }
 
+    @Override
+    public void removeSubTask(Task task) {
+        this.tasks.remove(task);
+    }
+
     @Override
     public void sortSubTasksByPriority() {
         tasks.sort(Comparator.comparingInt(t -> PriorityTable.getPriorityValue(t.getPriority())));
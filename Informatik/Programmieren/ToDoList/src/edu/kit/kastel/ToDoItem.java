@@ -21,23 +21,36 @@ public interface ToDoItem {
     String getName();
 
     /**
-     * Assigns a specific tag string to this item.
+     * Adds a tag string to the tags of this item.
      * @param tag The tag to apply.
+     * @return The interned ID of the tag, or -1 if the tag is invalid.
      */
-    void setTag(String tag);
+    int setTag(String tag);
 
     /**
-     * Retrieves the currently assigned tag.
-     * @return The tag string or null if none exists.
+     * Retrieves the assigned tags for display.
+     * @return The tag strings separated by commas, or null if none exists.
      */
     String getTag();
 
+    /**
+     * Retrieves the assigned tags as interned IDs.
+     * @return The sorted tag IDs.
+     */
+    int[] getTagIds();
+
     /**
      * Appends a child task to this item's hierarchy.
      * @param task The task to add as a child.
      */
     void addSubTask(Task task);
 
+    /**
+     * Detaches a direct child task from this item's hierarchy.
+     * @param task The task to remove as a child.
+     */
+    void removeSubTask(Task task);
+
     /**
      * Sorts the collection of direct subtasks based on their priority values.
      */
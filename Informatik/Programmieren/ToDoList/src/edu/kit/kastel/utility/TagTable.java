@@ -0,0 +1,88 @@
+package edu.kit.kastel.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Utility class interning tag strings to dense integer IDs, so items store their tags as sorted ID arrays.
+ * @author unweb
+ * @version 1.0
+ */
+public final class TagTable {
+    /** The tag set of an item without tags. */
+    public static final int[] NO_TAGS = new int[0];
+    /** The ID returned for a tag that has never been used. */
+    public static final int UNKNOWN_TAG = -1;
+    private static final String SEPARATOR = ", ";
+    private static final Map<String, Integer> IDS = new HashMap<>();
+    private static final List<String> NAMES = new ArrayList<>();
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private TagTable() {
+    }
+
+    /**
+     * Retrieves the ID of a tag, assigning the next free ID to a new tag.
+     * @param tag The tag string.
+     * @return The ID of the tag.
+     */
+    public static int intern(String tag) {
+        Integer id = IDS.get(tag);
+        if (id != null) {
+            return id;
+        }
+        NAMES.add(tag);
+        IDS.put(tag, NAMES.size() - 1);
+        return NAMES.size() - 1;
+    }
+
+    /**
+     * Looks up the ID of a tag without assigning one.
+     * @param tag The tag string.
+     * @return The ID of the tag, or {@link #UNKNOWN_TAG} if the tag has never been used.
+     */
+    public static int find(String tag) {
+        return IDS.getOrDefault(tag, UNKNOWN_TAG);
+    }
+
+    /**
+     * Adds a tag ID to a sorted tag set.
+     * @param tagIds The sorted tag set.
+     * @param id The tag ID to add.
+     * @return The tag set itself if it already contains the ID, otherwise a new sorted tag set.
+     */
+    public static int[] withTag(int[] tagIds, int id) {
+        int index = Arrays.binarySearch(tagIds, id);
+        if (index >= 0) {
+            return tagIds;
+        }
+        int insertion = -index - 1;
+        int[] grown = new int[tagIds.length + 1];
+        System.arraycopy(tagIds, 0, grown, 0, insertion);
+        grown[insertion] = id;
+        System.arraycopy(tagIds, insertion, grown, insertion + 1, tagIds.length - insertion);
+        return grown;
+    }
+
+    /**
+     * Joins the tags of a tag set for display.
+     * @param tagIds The sorted tag set.
+     * @return The tag strings separated by commas, or null if the set is empty.
+     */
+    public static String join(int[] tagIds) {
+        if (tagIds.length == 0) {
+            return null;
+        }
+        StringJoiner joiner = new StringJoiner(SEPARATOR);
+        for (int id : tagIds) {
+            joiner.add(NAMES.get(id));
+        }
+        return joiner.toString();
+    }
+}
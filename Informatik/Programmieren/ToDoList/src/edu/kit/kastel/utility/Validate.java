@@ -59,6 +59,15 @@ public final class Validate {
         return id != null && id.matches("\\d+");
     }
 
+    /**
+     * Validates that a result limit is a positive number within the integer range.
+     * @param limit The limit string to check.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean validateLimit(String limit) {
+        return limit != null && limit.matches("[1-9]\\d{0,8}");
+    }
+
     /**
      * Validates that a list name consists only of alphabetic characters.
      * @param listName The list name to check.